@@ -0,0 +1,245 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Struct-of-arrays inventory: quantities in an int[], prices as centavos in a long[], and IDs and
+// names as UTF-8 in one shared byte arena. The ID index is an open-addressing table of row numbers,
+// so no object exists per row. Stale arena bytes from edits and deletes are reclaimed by
+// repacking once they make up more than half the arena.
+class ColumnarInventoryStore implements InventoryStore {
+    private static final int LENGTH_BITS = 24;
+    private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+    private static final VarHandle QUANTITY = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private int size;
+    private int[] quantities = new int[16];
+    private long[] prices = new long[16];
+    private long[] idRefs = new long[16];
+    private long[] nameRefs = new long[16];
+    private int[] keyHashes = new int[16];
+
+    private byte[] arena = new byte[1024];
+    private int arenaSize;
+    private long arenaGarbage;
+
+    // Linear-probing table holding row + 1, 0 for an empty slot
+    private int[] slots = new int[32];
+
+    @Override public int size() { return size; }
+    @Override public int getQuantity(int row) { return quantities[check(row)]; }
+    @Override public long getPriceCentavos(int row) { return prices[check(row)]; }
+    @Override public String getId(int row) { return decode(idRefs[check(row)]); }
+    @Override public String getName(int row) { return decode(nameRefs[check(row)]); }
+
+    // Optimistic readers may run this while a writer rehashes, so it probes one snapshot of the
+    // table and gives up after a full lap; the caller's stamp check discards what it saw then
+    @Override
+    public int indexOf(String id) {
+        String key = InventoryStore.key(id);
+        int hash = key.hashCode();
+        int[] table = slots;
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        for (int probes = 0; probes < table.length && table[slot] != 0; probes++, slot = (slot + 1) & mask) {
+            int row = table[slot] - 1;
+            if (keyHashes[row] == hash && idMatches(idRefs[row], key)) return row;
+        }
+        return -1;
+    }
+
+    @Override
+    public int add(InventoryItem item) {
+        if (size == quantities.length) grow();
+        int row = size++;
+        write(row, item);
+        insertSlot(row);
+        return row;
+    }
+
+    @Override
+    public void set(int row, InventoryItem item) {
+        check(row);
+        removeSlot(row);
+        arenaGarbage += length(idRefs[row]) + length(nameRefs[row]);
+        write(row, item);
+        insertSlot(row);
+        maybeRepack();
+    }
+
+    @Override
+    public int remove(int row) {
+        check(row);
+        removeSlot(row);
+        arenaGarbage += length(idRefs[row]) + length(nameRefs[row]);
+        int last = --size;
+        int moved = -1;
+        if (row != last) {
+            int slot = findSlot(last);
+            quantities[row] = quantities[last];
+            prices[row] = prices[last];
+            idRefs[row] = idRefs[last];
+            nameRefs[row] = nameRefs[last];
+            keyHashes[row] = keyHashes[last];
+            slots[slot] = row + 1;
+            moved = last;
+        }
+        maybeRepack();
+        return moved;
+    }
+
+    // A volatile write of the quantity slot; the array is only replaced by add(), which callers exclude
+    @Override
+    public void setQuantity(int row, int quantity) {
+        QUANTITY.setVolatile(quantities, check(row), quantity);
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        arenaSize = 0;
+        arenaGarbage = 0;
+        Arrays.fill(slots, 0);
+    }
+
+    private void write(int row, InventoryItem item) {
+        quantities[row] = item.getQuantity();
+        prices[row] = InventoryStore.toCentavos(item.getPrice());
+        idRefs[row] = append(item.getId());
+        nameRefs[row] = append(item.getName());
+        keyHashes[row] = InventoryStore.key(item.getId()).hashCode();
+    }
+
+    private int check(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Row " + row + ", size " + size);
+        return row;
+    }
+
+    private void grow() {
+        int capacity = quantities.length * 2;
+        quantities = Arrays.copyOf(quantities, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        idRefs = Arrays.copyOf(idRefs, capacity);
+        nameRefs = Arrays.copyOf(nameRefs, capacity);
+        keyHashes = Arrays.copyOf(keyHashes, capacity);
+    }
+
+    // ---- byte arena ----
+
+    private long append(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > LENGTH_MASK) throw new IllegalArgumentException("Value too long: " + bytes.length + " bytes");
+        if (arenaSize + bytes.length > arena.length) {
+            long needed = (long) arenaSize + bytes.length;
+            if (needed > Integer.MAX_VALUE - 8) throw new IllegalStateException("Inventory string arena is full");
+            arena = Arrays.copyOf(arena, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, arena.length * 2L)));
+        }
+        System.arraycopy(bytes, 0, arena, arenaSize, bytes.length);
+        long ref = ((long) arenaSize << LENGTH_BITS) | bytes.length;
+        arenaSize += bytes.length;
+        return ref;
+    }
+
+    private String decode(long ref) {
+        return new String(arena, (int) (ref >>> LENGTH_BITS), length(ref), StandardCharsets.UTF_8);
+    }
+
+    // Whether the ID at ref folds to key, compared in the arena without decoding it. Each ASCII
+    // byte folds to one char, so up to the first other byte the comparison is exact; past one,
+    // folding can change lengths or turn non-ASCII into ASCII (the Kelvin sign into 'k'), so
+    // those IDs are decoded and folded properly.
+    private boolean idMatches(long ref, String key) {
+        byte[] bytes = arena;
+        int start = (int) (ref >>> LENGTH_BITS);
+        int length = length(ref);
+        for (int i = 0; i < length; i++) {
+            int b = bytes[start + i];
+            if (b < 0) return InventoryStore.key(decode(ref)).equals(key);
+            if (i >= key.length()) return false;
+            if (b >= 'A' && b <= 'Z') b += 'a' - 'A';
+            if (b != key.charAt(i)) return false;
+        }
+        return length == key.length();
+    }
+
+    private static int length(long ref) {
+        return (int) (ref & LENGTH_MASK);
+    }
+
+    private void maybeRepack() {
+        if (arenaGarbage < 4096 || arenaGarbage * 2 < arenaSize) return;
+        byte[] packed = new byte[Math.max(1024, arenaSize - (int) arenaGarbage)];
+        int position = 0;
+        for (int row = 0; row < size; row++) {
+            idRefs[row] = copy(idRefs[row], packed, position);
+            position += length(idRefs[row]);
+            nameRefs[row] = copy(nameRefs[row], packed, position);
+            position += length(nameRefs[row]);
+        }
+        arena = packed;
+        arenaSize = position;
+        arenaGarbage = 0;
+    }
+
+    private long copy(long ref, byte[] target, int position) {
+        int length = length(ref);
+        System.arraycopy(arena, (int) (ref >>> LENGTH_BITS), target, position, length);
+        return ((long) position << LENGTH_BITS) | length;
+    }
+
+    // ---- ID index ----
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private void insertSlot(int row) {
+        if ((size + 1) * 2 > slots.length) {
+            rehash(slots.length * 2);
+            return;
+        }
+        int mask = slots.length - 1;
+        int slot = mix(keyHashes[row]) & mask;
+        while (slots[slot] != 0) slot = (slot + 1) & mask;
+        slots[slot] = row + 1;
+    }
+
+    private int findSlot(int row) {
+        int mask = slots.length - 1;
+        int slot = mix(keyHashes[row]) & mask;
+        while (slots[slot] != row + 1) {
+            if (slots[slot] == 0) throw new IllegalStateException("Row " + row + " missing from ID index");
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Backward-shift deletion keeps probe chains intact without tombstones
+    private void removeSlot(int row) {
+        int mask = slots.length - 1;
+        int hole = findSlot(row);
+        slots[hole] = 0;
+        for (int slot = (hole + 1) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int home = mix(keyHashes[slots[slot] - 1]) & mask;
+            boolean movable = hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot);
+            if (movable) {
+                slots[hole] = slots[slot];
+                slots[slot] = 0;
+                hole = slot;
+            }
+        }
+    }
+
+    // Rebuilds the table for the current rows (including the row just written), filling it
+    // before it replaces the old one so a concurrent lookup never sees it half built
+    private void rehash(int capacity) {
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int row = 0; row < size; row++) {
+            int slot = mix(keyHashes[row]) & mask;
+            while (table[slot] != 0) slot = (slot + 1) & mask;
+            table[slot] = row + 1;
+        }
+        slots = table;
+    }
+}
@@ -0,0 +1,326 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+// Parallel parser for large "id,name,quantity,price" files.
+// The file is memory-mapped and cut at line boundaries into one segment per task; each
+// segment is parsed straight from the mapped bytes on its own thread. Results are handed
+// to the sink in file order, one segment at a time, on the calling thread. Only a segment
+// per thread is parsed ahead of the sink, so the heap holds a few segments' items at most
+// whatever the file's size.
+class CsvBulkParser {
+    private static final long MIN_SEGMENT = 1 << 20;
+    private static final long MAX_SEGMENT = Integer.MAX_VALUE - (1 << 16);
+    // Bounds the items one segment produces
+    private static final long SEGMENT_TARGET_LIMIT = 32 << 20;
+    private static final double[] POWERS_OF_TEN = new double[23];
+    private static final byte[] HEADER = "id,name,quantity,".getBytes(StandardCharsets.US_ASCII);
+    private static final int STREAM_CHUNK = 65_536;
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private CsvBulkParser() {}
+
+    // Lines are "id,name,quantity,price"; extra columns are allowed unless exactColumns is set.
+    // Short lines are dropped silently, lines with bad numbers are logged and dropped. A header
+    // row ("ID,...") is skipped.
+    public static void parse(Path file, boolean exactColumns, Consumer<List<InventoryItem>> sink,
+                             LongConsumer bytesParsed) throws IOException {
+        parse(file, exactColumns, sink, bytesParsed, new LongAdder());
+    }
+
+    // As above, counting the lines dropped for bad numbers in invalidLines
+    public static void parse(Path file, boolean exactColumns, Consumer<List<InventoryItem>> sink,
+                             LongConsumer bytesParsed, LongAdder invalidLines) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) return;
+            long[] bounds = segmentBounds(channel, size);
+            int threads = Math.min(Runtime.getRuntime().availableProcessors(), bounds.length - 1);
+            ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "csv-parser");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                int count = bounds.length - 1, ahead = threads + 1;
+                Deque<Future<List<InventoryItem>>> inFlight = new ArrayDeque<>(ahead);
+                int submitted = 0;
+                for (int i = 0; i < count; i++) {
+                    while (submitted < count && submitted < i + ahead) {
+                        long start = bounds[submitted], end = bounds[submitted + 1];
+                        inFlight.add(pool.submit(() -> parseSegment(channel, start, end, exactColumns, invalidLines)));
+                        submitted++;
+                    }
+                    sink.accept(inFlight.poll().get());
+                    bytesParsed.accept(bounds[i + 1]);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Parse cancelled");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException io) throw io;
+                if (cause instanceof RuntimeException re) throw re;
+                throw new IOException(cause);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    // Sequential variant for pipes: same rules, read a block at a time and handed to the sink in
+    // chunks of up to STREAM_CHUNK items. Doesn't close the stream.
+    public static void parse(InputStream in, boolean exactColumns, Consumer<List<InventoryItem>> sink,
+                             LongConsumer bytesParsed, LongAdder invalidLines) throws IOException {
+        byte[] block = new byte[1 << 20];
+        byte[] line = new byte[256];
+        int[] commas = new int[4];
+        List<InventoryItem> items = new ArrayList<>();
+        int length = 0;
+        long consumed = 0;
+        boolean atStart = true;
+        for (boolean eof = false; !eof; ) {
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Parse cancelled");
+            int read = in.read(block, length, block.length - length);
+            eof = read < 0;
+            int end = eof ? length : length + read;
+            int start = 0;
+            for (int i = eof ? end : length; i <= end; i++) {
+                // At the end of input an unterminated last line counts as a line too
+                if (i == end ? !eof || start == end : block[i] != '\n') continue;
+                int lineLength = i - start;
+                if (lineLength > 0 && block[start + lineLength - 1] == '\r') lineLength--;
+                boolean header = atStart && !exactColumns && isHeader(block, start, lineLength);
+                atStart = false;
+                if (!header) {
+                    if (lineLength > line.length) line = new byte[Math.max(lineLength, line.length * 2)];
+                    System.arraycopy(block, start, line, 0, lineLength);
+                    InventoryItem item = parseLine(line, lineLength, commas, exactColumns, invalidLines);
+                    if (item != null) items.add(item);
+                }
+                start = i + 1;
+            }
+            start = Math.min(start, end);
+            consumed += start;
+            length = end - start;
+            System.arraycopy(block, start, block, 0, length);
+            if (length == block.length) block = Arrays.copyOf(block, block.length * 2);
+            if (items.size() >= STREAM_CHUNK || (eof && !items.isEmpty())) {
+                sink.accept(items);
+                items = new ArrayList<>();
+                bytesParsed.accept(consumed);
+            }
+        }
+    }
+
+    public static List<InventoryItem> parseAll(Path file, boolean exactColumns) throws IOException {
+        List<InventoryItem> all = new ArrayList<>();
+        parse(file, exactColumns, all::addAll, bytes -> { });
+        return all;
+    }
+
+    // Splits into roughly 4 segments per core, but at most SEGMENT_TARGET_LIMIT bytes (plus the
+    // rest of a line), each ending just after a newline
+    private static long[] segmentBounds(FileChannel channel, long size) throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long target = Math.max(MIN_SEGMENT, size / (cores * 4L));
+        target = Math.min(target, SEGMENT_TARGET_LIMIT);
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        java.nio.ByteBuffer probe = java.nio.ByteBuffer.allocate(8192);
+        long position = 0;
+        while (position + target < size) {
+            long scan = position + target;
+            long next = -1;
+            while (next < 0 && scan < size) {
+                probe.clear();
+                int n = channel.read(probe, scan);
+                if (n <= 0) break;
+                for (int i = 0; i < n; i++) {
+                    if (probe.get(i) == '\n') {
+                        next = scan + i + 1;
+                        break;
+                    }
+                }
+                scan += n;
+            }
+            if (next < 0 || next >= size) break;
+            if (next - position > MAX_SEGMENT) throw new IOException("Line longer than " + MAX_SEGMENT + " bytes");
+            bounds.add(next);
+            position = next;
+        }
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) result[i] = bounds.get(i);
+        return result;
+    }
+
+    private static List<InventoryItem> parseSegment(FileChannel channel, long start, long end,
+                                                    boolean exactColumns, LongAdder invalidLines) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        List<InventoryItem> items = new ArrayList<>((int) Math.min(1 << 20, (end - start) / 24));
+        byte[] line = new byte[256];
+        int[] commas = new int[4];
+        int limit = buffer.limit();
+        int position = 0;
+        int lines = 0;
+        while (position < limit) {
+            if ((++lines & 0xFFFF) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Parse cancelled");
+            }
+            int lineEnd = position;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') lineEnd++;
+            int length = lineEnd - position;
+            if (length > 0 && buffer.get(lineEnd - 1) == '\r') length--;
+            if (length > line.length) line = new byte[Math.max(length, line.length * 2)];
+            buffer.get(position, line, 0, length);
+            position = lineEnd + 1;
+
+            if (start == 0 && lines == 1 && !exactColumns && isHeader(line, 0, length)) continue;
+            InventoryItem item = parseLine(line, length, commas, exactColumns, invalidLines);
+            if (item != null) items.add(item);
+        }
+        return items;
+    }
+
+    // Exports start with "ID,Name,Quantity,..."; no item line can, as its quantity wouldn't parse
+    private static boolean isHeader(byte[] line, int from, int length) {
+        if (length < HEADER.length) return false;
+        for (int i = 0; i < HEADER.length; i++) {
+            if ((line[from + i] | 0x20) != HEADER[i]) return false;
+        }
+        return true;
+    }
+
+    private static InventoryItem parseLine(byte[] line, int length, int[] commas, boolean exactColumns,
+                                           LongAdder invalidLines) {
+        if (!exactColumns && length > 0 && startsQuoted(line, length)) return parseQuotedLine(line, length, invalidLines);
+        int found = 0;
+        for (int i = 0; i < length; i++) {
+            if (line[i] == ',') {
+                if (found == 3) {
+                    if (exactColumns) return null;
+                    found = 4;
+                    commas[3] = i;
+                    break;
+                }
+                commas[found++] = i;
+            }
+        }
+        if (found < 3) return null;
+        int priceEnd = found == 4 ? commas[3] : length;
+        try {
+            int quantity = parseInt(line, commas[1] + 1, commas[2]);
+            double price = parseDouble(line, commas[2] + 1, priceEnd);
+            return new InventoryItem(
+                new String(line, 0, commas[0], StandardCharsets.UTF_8),
+                new String(line, commas[0] + 1, commas[1] - commas[0] - 1, StandardCharsets.UTF_8),
+                quantity, price);
+        } catch (NumberFormatException e) {
+            invalidLines.increment();
+            System.err.println("Skipping invalid line: " + new String(line, 0, length, StandardCharsets.UTF_8));
+            return null;
+        }
+    }
+
+    // Exports quote the ID or name when it holds a comma or quote; snapshots (exactColumns)
+    // are never quoted, so they keep the plain path
+    private static boolean startsQuoted(byte[] line, int length) {
+        if (line[0] == '"') return true;
+        for (int i = 0; i < length; i++) {
+            if (line[i] == ',') return i + 1 < length && line[i + 1] == '"';
+        }
+        return false;
+    }
+
+    // RFC 4180 within one line: a field opening with a quote runs to the closing quote, with
+    // "" standing for a quote; other fields run to the next comma
+    private static InventoryItem parseQuotedLine(byte[] line, int length, LongAdder invalidLines) {
+        String[] fields = new String[4];
+        int found = 0, i = 0;
+        ByteArrayOutputStream field = new ByteArrayOutputStream();
+        while (found < 4 && i <= length) {
+            field.reset();
+            if (i < length && line[i] == '"') {
+                for (i++; i < length; i++) {
+                    if (line[i] == '"') {
+                        if (i + 1 < length && line[i + 1] == '"') i++; else break;
+                    }
+                    field.write(line[i]);
+                }
+                i++;
+                while (i < length && line[i] != ',') i++;
+            } else {
+                int start = i;
+                while (i < length && line[i] != ',') i++;
+                field.write(line, start, i - start);
+            }
+            fields[found++] = new String(field.toByteArray(), StandardCharsets.UTF_8);
+            i++;
+        }
+        if (found < 4) return null;
+        try {
+            return new InventoryItem(fields[0], fields[1], Integer.parseInt(fields[2].trim()),
+                Double.parseDouble(fields[3].trim()));
+        } catch (NumberFormatException e) {
+            invalidLines.increment();
+            System.err.println("Skipping invalid line: " + new String(line, 0, length, StandardCharsets.UTF_8));
+            return null;
+        }
+    }
+
+    // Plain digits are parsed in place; anything else goes through Integer.parseInt for identical errors
+    private static int parseInt(byte[] b, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (b[i] == '-' || b[i] == '+')) negative = b[i++] == '-';
+        if (i == to || to - i > 9) return Integer.parseInt(ascii(b, from, to));
+        int value = 0;
+        for (; i < to; i++) {
+            int digit = b[i] - '0';
+            if (digit < 0 || digit > 9) return Integer.parseInt(ascii(b, from, to));
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    // Fast path for up to 15 significant digits: mantissa and 10^k are both exact doubles,
+    // so one division is correctly rounded and matches Double.parseDouble
+    private static double parseDouble(byte[] b, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (b[i] == '-' || b[i] == '+')) negative = b[i++] == '-';
+        long mantissa = 0;
+        int digits = 0, fraction = -1;
+        for (; i < to; i++) {
+            byte c = b[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fraction >= 0) fraction++;
+            } else if (c == '.' && fraction < 0) {
+                fraction = 0;
+            } else {
+                return Double.parseDouble(ascii(b, from, to));
+            }
+        }
+        if (digits == 0 || digits > 15 || fraction > 22) return Double.parseDouble(ascii(b, from, to));
+        double value = fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private static String ascii(byte[] b, int from, int to) {
+        return new String(b, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,150 @@
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+// Writes "ID,Name,Quantity,Price,Total Value" CSV (RFC 4180 quoting, UTF-8, LF line ends) for
+// InventoryService.exportCsv. Rows are encoded straight from the store into a byte array,
+// without String.format or per-field Strings, and handed to the file (or gzip) a chunk at a
+// time, so a large export runs at disk speed.
+class CsvExporter implements Closeable {
+    static final String HEADER = "ID,Name,Quantity,Price,Total Value";
+    private static final int GZIP_BUFFER = 1 << 16;
+
+    private final OutputStream out;
+    private byte[] chunk = new byte[1 << 20];
+    private int length;
+
+    CsvExporter(Path file, boolean gzip) throws IOException {
+        this(Channels.newOutputStream(FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)), gzip);
+    }
+
+    // Writes to any stream, e.g. stdout; close() closes it
+    CsvExporter(OutputStream stream, boolean gzip) throws IOException {
+        out = gzip ? new GZIPOutputStream(stream, GZIP_BUFFER) : stream;
+        ascii(HEADER);
+        newline();
+    }
+
+    // Gzip when the name says so
+    static boolean isGzipName(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz");
+    }
+
+    // Appends one row to the pending chunk; call while the store is safe to read
+    void encode(InventoryStore store, int row) {
+        int quantity = store.getQuantity(row);
+        long centavos = store.getPriceCentavos(row);
+        field(store.getId(row));
+        put((byte) ',');
+        field(store.getName(row));
+        put((byte) ',');
+        number(quantity);
+        put((byte) ',');
+        amount(centavos);
+        put((byte) ',');
+        amount(quantity * centavos);
+        newline();
+    }
+
+    // Writes the pending chunk; call outside the store lock
+    void flush() throws IOException {
+        out.write(chunk, 0, length);
+        length = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    // ---- encoding ----
+
+    // Quoted only when it holds a comma, quote or line break; quotes are doubled
+    private void field(String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (quote) put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '"') put((byte) '"');
+                put((byte) c);
+            } else {
+                utf8(value, i);
+                break;
+            }
+        }
+        if (quote) put((byte) '"');
+    }
+
+    // Slow path from the first non-ASCII character on
+    private void utf8(String value, int from) {
+        String rest = value.substring(from);
+        if (rest.indexOf('"') >= 0) rest = rest.replace("\"", "\"\"");
+        byte[] bytes = rest.getBytes(StandardCharsets.UTF_8);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, chunk, length, bytes.length);
+        length += bytes.length;
+    }
+
+    // Centavos as pesos with two decimals, e.g. 123456 -> 1234.56
+    private void amount(long centavos) {
+        if (centavos < 0) {
+            put((byte) '-');
+            centavos = -centavos;
+        }
+        number(centavos / 100);
+        long cents = centavos % 100;
+        put((byte) '.');
+        put((byte) ('0' + cents / 10));
+        put((byte) ('0' + cents % 10));
+    }
+
+    private void number(long value) {
+        if (value < 0) {
+            put((byte) '-');
+            value = -value;
+        }
+        ensure(20);
+        int start = length;
+        do {
+            chunk[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            byte t = chunk[i];
+            chunk[i] = chunk[j];
+            chunk[j] = t;
+        }
+    }
+
+    private void ascii(String text) {
+        for (int i = 0; i < text.length(); i++) put((byte) text.charAt(i));
+    }
+
+    private void newline() {
+        put((byte) '\n');
+    }
+
+    private void put(byte b) {
+        if (length == chunk.length) ensure(1);
+        chunk[length++] = b;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > chunk.length) chunk = Arrays.copyOf(chunk, Math.max(chunk.length * 2, length + extra));
+    }
+}
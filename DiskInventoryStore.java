@@ -0,0 +1,433 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Inventory rows kept in files instead of the heap. Snapshot and CSV are read a few segments
+// at a time, so the heap a load needs doesn't grow with the inventory either.
+// Rows are fixed 128-byte records addressed by row number, so the table reads only the pages
+// of the rows it shows. The ID index is an on-disk linear-probing hash table of
+// (key hash, row + 1) slots, so a lookup or edit touches one or two index pages plus the row's
+// page. Both files go through a bounded LRU page cache. IDs and names that don't fit in the
+// record spill into an overflow file. Edits and removals leave garbage there, so once most of
+// it is garbage the live bytes are copied to a second file that takes its place.
+//
+// The files are a working set, not a save format: the journal and snapshot stay the source of
+// truth. Every start rebuilds the files by replaying them, which takes as long as loading a
+// heap store does; this store saves heap, not startup time. The files are removed when the
+// store is closed (with the directory, if the store created it).
+class DiskInventoryStore implements InventoryStore, Closeable {
+    private static final int RECORD_SIZE = 128, PAGE_SIZE = 8192;
+    private static final int QUANTITY = 0, PRICE = 4, KEY_HASH = 12, ID_LENGTH = 16, NAME_LENGTH = 20,
+        OVERFLOW = 24, INLINE = 32, INLINE_BYTES = RECORD_SIZE - INLINE;
+    private static final int SLOT_SIZE = 8;
+    // Overflow files smaller than this aren't worth compacting
+    private static final long MIN_OVERFLOW_COMPACTION = 1 << 20;
+
+    private final Path directory;
+    private final boolean temporary;
+    private final PagedFile records;
+    private final PagedFile index;
+    private FileChannel overflow;
+    // Which of overflow-0.bin and overflow-1.bin is in use
+    private int overflowFile;
+    private long overflowSize;
+    // The part of overflowSize that rows still point to
+    private long overflowLive;
+    private int size;
+    private long capacity = 1024;
+
+    public DiskInventoryStore(Path directory, long cacheBytes) throws IOException {
+        this(directory, cacheBytes, false);
+    }
+
+    // temporary: the directory is the store's own and is deleted on close
+    private DiskInventoryStore(Path directory, long cacheBytes, boolean temporary) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.temporary = temporary;
+        int pages = (int) Math.max(16, cacheBytes / PAGE_SIZE);
+        records = new PagedFile(open(directory.resolve("records.bin")), PAGE_SIZE, pages - pages / 4);
+        index = new PagedFile(open(directory.resolve("index.bin")), PAGE_SIZE, pages / 4);
+        overflow = open(overflowPath(0));
+    }
+
+    // -Dinventory.store.dir (default: a new temp directory) and -Dinventory.cacheMB (default 64)
+    public static DiskInventoryStore fromProperties() {
+        try {
+            String dir = System.getProperty("inventory.store.dir");
+            long cacheMb = Long.getLong("inventory.cacheMB", 64);
+            if (dir != null) return new DiskInventoryStore(Paths.get(dir), cacheMb << 20);
+            return new DiskInventoryStore(Files.createTempDirectory("inventory-store"), cacheMb << 20, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    @Override public boolean isDiskBacked() { return true; }
+    @Override public synchronized int size() { return size; }
+    @Override public synchronized int getQuantity(int row) { return records.getInt(check(row) + QUANTITY); }
+    @Override public synchronized long getPriceCentavos(int row) { return records.getLong(check(row) + PRICE); }
+    @Override public synchronized String getId(int row) { return readString(check(row), true); }
+    @Override public synchronized String getName(int row) { return readString(check(row), false); }
+
+    @Override
+    public synchronized int indexOf(String id) {
+        String key = InventoryStore.key(id);
+        int hash = key.hashCode();
+        long mask = capacity - 1;
+        for (long slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int row = index.getInt(slot * SLOT_SIZE + 4) - 1;
+            if (row < 0) return -1;
+            if (index.getInt(slot * SLOT_SIZE) == hash && InventoryStore.key(getId(row)).equals(key)) return row;
+        }
+    }
+
+    @Override
+    public synchronized int add(InventoryItem item) {
+        int row = size;
+        // Counted only once written and indexed, so a failed write leaves no half-written row
+        write(row, item);
+        insertSlot(row, row + 1);
+        size = row + 1;
+        return row;
+    }
+
+    @Override
+    public synchronized void set(int row, InventoryItem item) {
+        long position = check(row);
+        removeSlot(row);
+        overflowLive -= spilledBytes(position);
+        write(row, item);
+        insertSlot(row, size);
+        compactOverflow();
+    }
+
+    @Override
+    public synchronized int remove(int row) {
+        long position = check(row);
+        removeSlot(row);
+        overflowLive -= spilledBytes(position);
+        int last = --size;
+        if (row != last) {
+            long slot = findSlot(last);
+            byte[] record = new byte[RECORD_SIZE];
+            records.get(position(last), record, 0, RECORD_SIZE);
+            records.put(position(row), record, 0, RECORD_SIZE);
+            index.putInt(slot * SLOT_SIZE + 4, row + 1);
+        }
+        compactOverflow();
+        return row == last ? -1 : last;
+    }
+
+    @Override
+    public synchronized void clear() {
+        size = 0;
+        capacity = 1024;
+        overflowSize = 0;
+        overflowLive = 0;
+        try {
+            records.clear();
+            index.clear();
+            overflow.truncate(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void setQuantity(int row, int quantity) {
+        records.putInt(check(row) + QUANTITY, quantity);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        records.close();
+        index.close();
+        overflow.close();
+        // The files are deleted on close, so only the directory is left
+        if (temporary) Files.deleteIfExists(directory);
+    }
+
+    // Length of the overflow file, garbage included
+    synchronized long overflowBytes() {
+        return overflowSize;
+    }
+
+    private long check(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Row " + row + ", size " + size);
+        return position(row);
+    }
+
+    private static long position(int row) {
+        return (long) row * RECORD_SIZE;
+    }
+
+    // ---- records ----
+
+    private void write(int row, InventoryItem item) {
+        long position = position(row);
+        byte[] id = item.getId().getBytes(StandardCharsets.UTF_8);
+        byte[] name = item.getName().getBytes(StandardCharsets.UTF_8);
+        records.putInt(position + QUANTITY, item.getQuantity());
+        records.putLong(position + PRICE, InventoryStore.toCentavos(item.getPrice()));
+        records.putInt(position + KEY_HASH, InventoryStore.key(item.getId()).hashCode());
+        records.putInt(position + ID_LENGTH, id.length);
+        records.putInt(position + NAME_LENGTH, name.length);
+        if (id.length + name.length <= INLINE_BYTES) {
+            records.putLong(position + OVERFLOW, -1);
+            records.put(position + INLINE, id, 0, id.length);
+            records.put(position + INLINE + id.length, name, 0, name.length);
+        } else {
+            records.putLong(position + OVERFLOW, overflowSize);
+            ByteBuffer bytes = ByteBuffer.allocate(id.length + name.length).put(id).put(name).flip();
+            try {
+                while (bytes.hasRemaining()) overflowSize += overflow.write(bytes, overflowSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            overflowLive += id.length + name.length;
+        }
+    }
+
+    private String readString(long position, boolean id) {
+        int idLength = records.getInt(position + ID_LENGTH);
+        int length = id ? idLength : records.getInt(position + NAME_LENGTH);
+        int offset = id ? 0 : idLength;
+        byte[] bytes = new byte[length];
+        long spilled = records.getLong(position + OVERFLOW);
+        if (spilled < 0) {
+            records.get(position + INLINE + offset, bytes, 0, length);
+        } else {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            try {
+                while (buffer.hasRemaining()) {
+                    if (overflow.read(buffer, spilled + offset + buffer.position()) < 0) throw new EOFException("Overflow file truncated");
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long spilledBytes(long position) {
+        if (records.getLong(position + OVERFLOW) < 0) return 0;
+        return records.getInt(position + ID_LENGTH) + records.getInt(position + NAME_LENGTH);
+    }
+
+    // Once at least half the overflow file is garbage, copies what rows still use to the other
+    // file. Pointers are only moved after the copy, so a failed copy leaves the rows as they were.
+    private void compactOverflow() {
+        if (overflowSize < MIN_OVERFLOW_COMPACTION || overflowSize < 2 * overflowLive) return;
+        try {
+            int next = 1 - overflowFile;
+            FileChannel target = open(overflowPath(next));
+            long written = 0;
+            try {
+                for (int row = 0; row < size; row++) {
+                    long position = position(row), spilled = records.getLong(position + OVERFLOW);
+                    if (spilled < 0) continue;
+                    ByteBuffer bytes = ByteBuffer.allocate((int) spilledBytes(position));
+                    while (bytes.hasRemaining()) {
+                        if (overflow.read(bytes, spilled + bytes.position()) < 0) throw new EOFException("Overflow file truncated");
+                    }
+                    bytes.flip();
+                    while (bytes.hasRemaining()) written += target.write(bytes, written);
+                }
+            } catch (IOException | RuntimeException e) {
+                target.close();
+                throw e;
+            }
+            // Same order as the copy, so each row's new offset is the running total
+            long offset = 0;
+            for (int row = 0; row < size; row++) {
+                long position = position(row);
+                if (records.getLong(position + OVERFLOW) < 0) continue;
+                records.putLong(position + OVERFLOW, offset);
+                offset += spilledBytes(position);
+            }
+            overflow.close();
+            overflow = target;
+            overflowFile = next;
+            overflowSize = written;
+            overflowLive = written;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path overflowPath(int file) {
+        return directory.resolve("overflow-" + file + ".bin");
+    }
+
+    // ---- ID index ----
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    // rows: the number of rows including this one
+    private void insertSlot(int row, int rows) {
+        if ((rows + 1L) * 2 > capacity) {
+            rehash(capacity * 2, rows);
+            return;
+        }
+        int hash = records.getInt(position(row) + KEY_HASH);
+        long mask = capacity - 1;
+        long slot = mix(hash) & mask;
+        while (index.getInt(slot * SLOT_SIZE + 4) != 0) slot = (slot + 1) & mask;
+        index.putInt(slot * SLOT_SIZE, hash);
+        index.putInt(slot * SLOT_SIZE + 4, row + 1);
+    }
+
+    private long findSlot(int row) {
+        long mask = capacity - 1;
+        long slot = mix(records.getInt(position(row) + KEY_HASH)) & mask;
+        while (index.getInt(slot * SLOT_SIZE + 4) != row + 1) {
+            if (index.getInt(slot * SLOT_SIZE + 4) == 0) throw new IllegalStateException("Row " + row + " missing from ID index");
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Backward-shift deletion, as in ColumnarInventoryStore
+    private void removeSlot(int row) {
+        long mask = capacity - 1;
+        long hole = findSlot(row);
+        index.putInt(hole * SLOT_SIZE + 4, 0);
+        for (long slot = (hole + 1) & mask; index.getInt(slot * SLOT_SIZE + 4) != 0; slot = (slot + 1) & mask) {
+            int hash = index.getInt(slot * SLOT_SIZE);
+            long home = mix(hash) & mask;
+            boolean movable = hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot);
+            if (movable) {
+                index.putInt(hole * SLOT_SIZE, hash);
+                index.putInt(hole * SLOT_SIZE + 4, index.getInt(slot * SLOT_SIZE + 4));
+                index.putInt(slot * SLOT_SIZE + 4, 0);
+                hole = slot;
+            }
+        }
+    }
+
+    // Rebuilds the table for the current rows (including the row just written)
+    private void rehash(long newCapacity, int rows) {
+        try {
+            index.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        capacity = newCapacity;
+        long mask = capacity - 1;
+        for (int row = 0; row < rows; row++) {
+            int hash = records.getInt(position(row) + KEY_HASH);
+            long slot = mix(hash) & mask;
+            while (index.getInt(slot * SLOT_SIZE + 4) != 0) slot = (slot + 1) & mask;
+            index.putInt(slot * SLOT_SIZE, hash);
+            index.putInt(slot * SLOT_SIZE + 4, row + 1);
+        }
+    }
+}
+
+// Fixed-size pages of a file cached in memory, least recently used evicted first (and written
+// back if dirty). Reads past the end of the file see zeros. Accesses must not cross a page
+// boundary. Not thread-safe; DiskInventoryStore synchronizes around it.
+class PagedFile implements Closeable {
+    private static class Page {
+        final ByteBuffer bytes;
+        boolean dirty;
+
+        Page(int size) { bytes = ByteBuffer.allocate(size); }
+    }
+
+    private final FileChannel channel;
+    private final int pageSize;
+    private final int maxPages;
+    private final LinkedHashMap<Long, Page> pages = new LinkedHashMap<>(64, 0.75f, true);
+
+    PagedFile(FileChannel channel, int pageSize, int maxPages) {
+        this.channel = channel;
+        this.pageSize = pageSize;
+        this.maxPages = Math.max(2, maxPages);
+    }
+
+    int getInt(long position) {
+        return page(position).bytes.getInt(offset(position));
+    }
+
+    long getLong(long position) {
+        return page(position).bytes.getLong(offset(position));
+    }
+
+    void get(long position, byte[] target, int from, int length) {
+        page(position).bytes.get(offset(position), target, from, length);
+    }
+
+    void putInt(long position, int value) {
+        Page page = page(position);
+        page.bytes.putInt(offset(position), value);
+        page.dirty = true;
+    }
+
+    void putLong(long position, long value) {
+        Page page = page(position);
+        page.bytes.putLong(offset(position), value);
+        page.dirty = true;
+    }
+
+    void put(long position, byte[] source, int from, int length) {
+        Page page = page(position);
+        page.bytes.put(offset(position), source, from, length);
+        page.dirty = true;
+    }
+
+    // Drops every page and empties the file
+    void clear() throws IOException {
+        pages.clear();
+        channel.truncate(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        pages.clear();
+        channel.close();
+    }
+
+    private int offset(long position) {
+        return (int) (position % pageSize);
+    }
+
+    private Page page(long position) {
+        long number = position / pageSize;
+        Page page = pages.get(number);
+        if (page != null) return page;
+        try {
+            if (pages.size() >= maxPages) evict();
+            page = new Page(pageSize);
+            long start = number * pageSize;
+            while (page.bytes.hasRemaining() && channel.read(page.bytes, start + page.bytes.position()) > 0) { }
+            page.bytes.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        pages.put(number, page);
+        return page;
+    }
+
+    private void evict() throws IOException {
+        Iterator<Map.Entry<Long, Page>> eldest = pages.entrySet().iterator();
+        Map.Entry<Long, Page> entry = eldest.next();
+        eldest.remove();
+        Page page = entry.getValue();
+        if (!page.dirty) return;
+        ByteBuffer bytes = page.bytes.duplicate().clear();
+        long start = entry.getKey() * pageSize;
+        while (bytes.hasRemaining()) channel.write(bytes, start + bytes.position());
+    }
+}
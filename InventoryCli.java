@@ -0,0 +1,282 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+// Headless entry point for scripts and cron jobs. It never touches AWT or Swing, so it starts
+// quickly and runs on servers without a display. A file argument of "-" means stdin or stdout,
+// so commands can be piped; summaries go to stdout only when it isn't carrying CSV.
+//   import FILE|-                               replace the inventory with a CSV file
+//   merge FILE|- [--delete-missing]             upsert by ID; exit status 1 if lines were rejected
+//   export [FILE|-] [--query EXPR] [--limit N] [--gzip]
+//   query EXPR [--limit N]                      matching items as CSV on stdout
+//   adjust ID DELTA [--allow-negative]          prints the new quantity
+//   adjust - [--allow-negative]                 "id,delta" lines from stdin, "id,quantity" out
+//   stats [--by-prefix N]                       totals as tab-separated lines
+//   history ID [--days N]                       the item's movements over the last N days (30)
+//   flows [ID] [--days N]                       daily inflow and outflow per item as CSV
+// Uses the same files and -Dinventory.* settings as the GUI; run with -Dinventory.shared=true
+// next to a GUI that has the inventory open. With no arguments the GUI starts instead.
+class InventoryCli {
+    private static final Set<String> FLAGS = Set.of("delete-missing", "gzip", "allow-negative");
+    private static final Set<String> OPTIONS = Set.of("query", "limit", "by-prefix", "days");
+    private static final String USAGE = String.join("\n",
+        "Usage: java InventoryCli COMMAND [ARGS]",
+        "  import FILE|-",
+        "  merge FILE|- [--delete-missing]",
+        "  export [FILE|-] [--query EXPR] [--limit N] [--gzip]",
+        "  query EXPR [--limit N]",
+        "  adjust ID DELTA [--allow-negative]",
+        "  adjust - [--allow-negative]",
+        "  stats [--by-prefix N]",
+        "  history ID [--days N]",
+        "  flows [ID] [--days N]");
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ISO_LOCAL_DATE_TIME.withZone(ZoneId.systemDefault());
+
+    private final List<String> args = new ArrayList<>();
+    private final Map<String, String> options = new HashMap<>();
+
+    private InventoryCli(String[] argv) {
+        for (int i = 0; i < argv.length; i++) {
+            String arg = argv[i];
+            if (!arg.startsWith("--")) {
+                args.add(arg);
+            } else if (FLAGS.contains(arg.substring(2))) {
+                options.put(arg.substring(2), "true");
+            } else if (OPTIONS.contains(arg.substring(2)) && i + 1 < argv.length) {
+                options.put(arg.substring(2), argv[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (args.isEmpty()) throw new IllegalArgumentException("No command given");
+    }
+
+    public static void main(String[] argv) {
+        if (argv.length == 0) {
+            InventorySystem.main(argv);
+            return;
+        }
+        System.setProperty("java.awt.headless", "true");
+        int status;
+        try {
+            status = new InventoryCli(argv).run();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            status = 2;
+        } catch (IOException | UncheckedIOException | NoSuchElementException | IllegalStateException e) {
+            System.err.println("Error: " + e.getMessage());
+            status = 1;
+        }
+        System.exit(status);
+    }
+
+    private int run() throws IOException {
+        String command = args.get(0);
+        switch (command) {
+            case "import", "merge", "export", "query", "adjust", "stats", "history", "flows" -> { }
+            default -> throw new IllegalArgumentException("Unknown command " + command);
+        }
+        // One command touches each row at most once, so scanning beats building indexes first
+        InventoryService service = InventoryService.openDefault(false);
+        boolean bulkWrite = command.equals("import") || command.equals("merge");
+        try {
+            // A replacing import doesn't need what it replaces, and history doesn't need the items
+            if (command.equals("import") || command.equals("history") || command.equals("flows")) {
+                service.open();
+            } else {
+                service.load(bytes -> { });
+            }
+            return switch (command) {
+                case "import" -> importCsv(service);
+                case "merge" -> merge(service);
+                case "export" -> export(service);
+                case "query" -> query(service);
+                case "adjust" -> adjust(service);
+                case "history" -> history(service);
+                case "flows" -> flows(service);
+                default -> stats(service);
+            };
+        } finally {
+            // Folding the journal rewrites the whole snapshot; only worth it after a bulk change
+            service.close(bulkWrite);
+        }
+    }
+
+    private int importCsv(InventoryService service) throws IOException {
+        String file = arg(1, "FILE");
+        long rejected = file.equals("-")
+            ? service.importCsv(System.in, bytes -> { })
+            : service.importCsv(Paths.get(file), bytes -> { });
+        System.out.println("Imported " + service.size() + " items" + (rejected > 0 ? ", " + rejected + " rejected" : ""));
+        return 0;
+    }
+
+    private int merge(InventoryService service) throws IOException {
+        String file = arg(1, "FILE");
+        boolean deleteMissing = flag("delete-missing");
+        InventoryService.MergeResult result = file.equals("-")
+            ? service.mergeCsv(System.in, deleteMissing, bytes -> { })
+            : service.mergeCsv(Paths.get(file), deleteMissing, bytes -> { });
+        System.out.println(result);
+        return result.rejected() > 0 ? 1 : 0;
+    }
+
+    private int export(InventoryService service) throws IOException {
+        String file = args.size() > 1 ? args.get(1) : "-";
+        InventoryQuery query = options.containsKey("query") ? InventoryQuery.parse(options.get("query")) : null;
+        int limit = intOption("limit", Integer.MAX_VALUE);
+        if (file.equals("-")) {
+            service.exportCsv(query, limit, stdout(), flag("gzip"), rows -> { });
+            return 0;
+        }
+        Path path = Paths.get(file);
+        boolean gzip = flag("gzip") || CsvExporter.isGzipName(path);
+        long[] written = {0};
+        boolean complete = false;
+        try {
+            service.exportCsv(query, limit, Files.newOutputStream(path), gzip, rows -> written[0] = rows);
+            complete = true;
+        } finally {
+            if (!complete) Files.deleteIfExists(path);
+        }
+        System.out.println("Exported " + written[0] + " items to " + path);
+        return 0;
+    }
+
+    private int query(InventoryService service) throws IOException {
+        InventoryQuery query = InventoryQuery.parse(arg(1, "EXPR"));
+        service.exportCsv(query, intOption("limit", Integer.MAX_VALUE), stdout(), false, rows -> { });
+        return 0;
+    }
+
+    private int adjust(InventoryService service) throws IOException {
+        boolean rejectBelowZero = !flag("allow-negative");
+        String id = arg(1, "ID");
+        if (!id.equals("-")) {
+            int delta = parseDelta(arg(2, "DELTA"));
+            try {
+                System.out.println(service.adjustQuantity(id, delta, rejectBelowZero));
+                return 0;
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+        }
+        int failed = 0;
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isBlank()) continue;
+            int comma = line.lastIndexOf(',');
+            try {
+                if (comma < 0) throw new IllegalArgumentException("expected id,delta");
+                String itemId = line.substring(0, comma).trim();
+                out.println(itemId + "," + service.adjustQuantity(itemId, parseDelta(line.substring(comma + 1)), rejectBelowZero));
+            } catch (IllegalArgumentException | NoSuchElementException e) {
+                out.flush();
+                System.err.println("Skipping \"" + line + "\": " + e.getMessage());
+                failed++;
+            }
+        }
+        out.flush();
+        return failed > 0 ? 1 : 0;
+    }
+
+    private int stats(InventoryService service) {
+        InventoryService.Totals totals = service.totals();
+        System.out.println("items\t" + totals.items());
+        System.out.println("units\t" + totals.units());
+        System.out.println("value\t" + pesos(totals.valueCentavos()));
+        System.out.println("low stock\t" + service.lowStockCount());
+        if (options.containsKey("by-prefix")) {
+            int length = intOption("by-prefix", 1);
+            StringBuilder out = new StringBuilder("\nprefix\titems\tunits\tvalue\n");
+            service.report(store -> InventoryReports.byIdPrefix(store, length)).forEach((prefix, group) ->
+                out.append(prefix).append('\t').append(group.items).append('\t').append(group.units)
+                    .append('\t').append(pesos(group.valueCentavos)).append('\n'));
+            System.out.print(out);
+        }
+        return 0;
+    }
+
+    private int history(InventoryService service) throws IOException {
+        String id = arg(1, "ID");
+        long now = System.currentTimeMillis();
+        List<MovementHistory.Movement> movements = service.movements(id, now - Duration.ofDays(intOption("days", 30)).toMillis(), now);
+        StringBuilder out = new StringBuilder("time,kind,change,quantity,price\n");
+        for (MovementHistory.Movement m : movements) {
+            out.append(TIME.format(Instant.ofEpochMilli(m.time()))).append(',').append(m.kind()).append(',')
+                .append(m.change()).append(',').append(m.quantity()).append(',').append(pesos(m.priceCentavos())).append('\n');
+        }
+        System.out.print(out);
+        return 0;
+    }
+
+    private int flows(InventoryService service) throws IOException {
+        LocalDate today = LocalDate.now();
+        LocalDate from = today.minusDays(intOption("days", 30) - 1);
+        SortedMap<String, List<MovementHistory.Flow>> flows = args.size() > 1
+            ? new TreeMap<>(Map.of(args.get(1), service.flows(args.get(1), from, today)))
+            : service.flows(from, today);
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        out.println("id,day,inflow,outflow,movements");
+        flows.forEach((id, days) -> {
+            for (MovementHistory.Flow flow : days) {
+                out.println(csv(id) + "," + flow.day() + "," + flow.inflow() + "," + flow.outflow() + "," + flow.movements());
+            }
+        });
+        out.flush();
+        return 0;
+    }
+
+    // ---- arguments ----
+
+    private String arg(int index, String name) {
+        if (index >= args.size()) throw new IllegalArgumentException(args.get(0) + " needs " + name);
+        return args.get(index);
+    }
+
+    private boolean flag(String name) {
+        return options.containsKey(name);
+    }
+
+    private int intOption(String name, int defaultValue) {
+        String value = options.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad --" + name + ": " + value);
+        }
+    }
+
+    private static int parseDelta(String text) {
+        try {
+            return Integer.parseInt(text.trim().startsWith("+") ? text.trim().substring(1) : text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad delta: " + text.trim());
+        }
+    }
+
+    // Unbuffered; CsvExporter does its own buffering
+    private static OutputStream stdout() {
+        return new FileOutputStream(FileDescriptor.out);
+    }
+
+    // Quoted as CsvExporter quotes fields
+    private static String csv(String field) {
+        if (field.chars().noneMatch(c -> c == ',' || c == '"' || c == '\n' || c == '\r')) return field;
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    private static String pesos(long centavos) {
+        long abs = Math.abs(centavos);
+        return (centavos < 0 ? "-" : "") + abs / 100 + "." + (abs % 100 < 10 ? "0" : "") + abs % 100;
+    }
+}
@@ -0,0 +1,231 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Optional HTTP/JSON API over an InventoryService, for scanners and POS terminals:
+//   GET  /items/{id}                       one item, 404 if unknown
+//   GET  /items?q=text[&limit=n]           ID/name search
+//   GET  /items?query=price>500[&limit=n]  structured query, same syntax as the search box
+//   POST /items/{id}/adjust?delta=n        atomic stock change, returns the new quantity;
+//                                          add &allowNegative=true to permit backorders
+// Enabled in the GUI with -Dinventory.http.port=8080 (bound to loopback unless
+// -Dinventory.http.host is set), or run headless with: java InventoryHttpServer [port]
+class InventoryHttpServer implements Closeable {
+    private static final int DEFAULT_LIMIT = 100, MAX_LIMIT = 10_000;
+
+    static {
+        // Without TCP_NODELAY small responses wait on delayed ACKs, capping keep-alive clients at ~25 req/s each
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final InventoryService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public InventoryHttpServer(InventoryService service, String host, int port) throws IOException {
+        this.service = service;
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 1024);
+        this.executor = requestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/items", this::handle);
+        server.start();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        InventoryService service = InventoryService.openDefault();
+        service.load(bytes -> {});
+        InventoryHttpServer server = new InventoryHttpServer(service,
+            System.getProperty("inventory.http.host", "127.0.0.1"), port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            try {
+                service.close();
+            } catch (IOException e) {
+                System.err.println("Error saving data: " + e.getMessage());
+            }
+        }));
+        System.out.println("Serving " + service.size() + " items on port " + server.getPort());
+    }
+
+    // Starts a server when -Dinventory.http.port is set, otherwise returns null
+    public static InventoryHttpServer startFromProperty(InventoryService service) throws IOException {
+        String port = System.getProperty("inventory.http.port");
+        if (port == null || port.isBlank()) return null;
+        try {
+            return new InventoryHttpServer(service,
+                System.getProperty("inventory.http.host", "127.0.0.1"), Integer.parseInt(port.trim()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad inventory.http.port: " + port);
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    // One virtual thread per request where the JDK has them (21+), otherwise a pool of platform threads
+    private static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(Math.max(16, Runtime.getRuntime().availableProcessors() * 4), r -> {
+                Thread t = new Thread(r, "inventory-http-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String[] path = exchange.getRequestURI().getRawPath().substring("/items".length()).split("/");
+            Map<String, String> params = params(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+            try {
+                if (path.length <= 1 && method.equals("GET")) {
+                    list(exchange, params);
+                } else if (path.length == 2 && method.equals("GET")) {
+                    InventoryItem item = service.get(decode(path[1]));
+                    if (item == null) {
+                        send(exchange, 404, error("No item with ID " + decode(path[1])));
+                    } else {
+                        send(exchange, 200, json(new StringBuilder(), item).toString());
+                    }
+                } else if (path.length == 3 && path[2].equals("adjust") && method.equals("POST")) {
+                    adjust(exchange, decode(path[1]), params);
+                } else {
+                    send(exchange, path.length <= 3 ? 405 : 404, error("Unsupported request"));
+                }
+            } catch (NoSuchElementException e) {
+                send(exchange, 404, error(e.getMessage()));
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, error(e.getMessage()));
+            } catch (IOException | UncheckedIOException e) {
+                send(exchange, 500, error("Error saving data: " + e.getMessage()));
+            } catch (IllegalStateException e) {
+                send(exchange, 500, error("Internal error: " + e.getMessage()));
+            }
+        }
+    }
+
+    private void list(HttpExchange exchange, Map<String, String> params) throws IOException {
+        int limit = Math.min(MAX_LIMIT, intParam(params, "limit", DEFAULT_LIMIT));
+        List<InventoryItem> items;
+        if (params.containsKey("query")) {
+            items = service.query(params.get("query"), limit);
+        } else {
+            items = service.search(params.getOrDefault("q", ""), limit);
+        }
+        StringBuilder body = new StringBuilder("[");
+        for (InventoryItem item : items) {
+            if (body.length() > 1) body.append(',');
+            json(body, item);
+        }
+        send(exchange, 200, body.append(']').toString());
+    }
+
+    private void adjust(HttpExchange exchange, String id, Map<String, String> params) throws IOException {
+        if (!params.containsKey("delta")) throw new IllegalArgumentException("delta is required");
+        int delta = intParam(params, "delta", 0);
+        int quantity;
+        try {
+            quantity = service.adjustQuantity(id, delta, !"true".equals(params.get("allowNegative")));
+        } catch (IllegalArgumentException e) {
+            send(exchange, 409, error(e.getMessage()));
+            return;
+        }
+        StringBuilder body = new StringBuilder("{\"id\":");
+        string(body, id).append(",\"quantity\":").append(quantity).append('}');
+        send(exchange, 200, body.toString());
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static Map<String, String> params(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq < 0) {
+                params.put(decode(pair), "");
+            } else {
+                params.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+            }
+        }
+        return params;
+    }
+
+    private static String decode(String text) {
+        return URLDecoder.decode(text, StandardCharsets.UTF_8);
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad " + name + ": " + value);
+        }
+    }
+
+    // Price is written from centavos so it always has exactly two decimals
+    private static StringBuilder json(StringBuilder out, InventoryItem item) {
+        long centavos = InventoryStore.toCentavos(item.getPrice());
+        out.append("{\"id\":");
+        string(out, item.getId()).append(",\"name\":");
+        string(out, item.getName()).append(",\"quantity\":").append(item.getQuantity())
+            .append(",\"price\":").append(centavos / 100).append('.')
+            .append(centavos % 100 < 10 ? "0" : "").append(centavos % 100).append('}');
+        return out;
+    }
+
+    private static String error(String message) {
+        return string(new StringBuilder("{\"error\":"), message).append('}').toString();
+    }
+
+    private static StringBuilder string(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        return out.append('"');
+    }
+}
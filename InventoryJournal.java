@@ -0,0 +1,903 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+
+// Write-ahead journal for inventory mutations.
+// Every add/update/delete/adjustment is appended as one framed record, and a bulk change as a
+// BATCH record followed by its records, replayed all or nothing; a background task
+// periodically folds the journal into the binary snapshot so the journal stays short.
+// A CSV snapshot from older versions is read until the first binary snapshot replaces it.
+//
+// Each journal file starts with its generation, and the snapshot records the generation it
+// folded in last. Adjustments are deltas, so a file must never be replayed on top of a snapshot
+// that already holds it; a compaction that crashed after writing the snapshot but before
+// deleting the folded file leaves exactly that, and the generations tell replay to skip it.
+//
+// The files belong to one instance at a time unless every instance runs in shared mode
+// (-Dinventory.shared=true). The lock file's first byte is then held shared by each instance,
+// and each commit holds its second byte: before appending, the committer reads whatever other
+// instances appended since it last looked and queues it for the service to apply row by row,
+// so no commit is made against a stale view. A watcher does the same when another instance
+// commits in between. Compaction rewrites the files under everyone, so in shared mode it only
+// runs when no other instance is open.
+class InventoryJournal implements Closeable {
+    enum SyncPolicy { EVERY_WRITE, BATCHED, ON_CLOSE }
+    enum Op { ADD, UPDATE, DELETE, CLEAR, ADJUST }
+
+    // One replayed mutation; oldId is the replaced, deleted or adjusted ID, item is null for
+    // DELETE, CLEAR and ADJUST, delta is the quantity change of an ADJUST
+    record Change(Op op, String oldId, InventoryItem item, int delta) {
+        Change(Op op, String oldId, InventoryItem item) { this(op, oldId, item, 0); }
+        static Change add(InventoryItem item) { return new Change(Op.ADD, null, item); }
+        static Change adjust(String id, int delta) { return new Change(Op.ADJUST, id, null, delta); }
+    }
+
+    private static final byte OP_ADD = 1, OP_UPDATE = 2, OP_DELETE = 3, OP_CLEAR = 4, OP_ADJUST = 5, OP_BATCH = 6,
+        OP_GENERATION = 7;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long SYNC_INTERVAL_MS = 1000;
+    private static final long COMPACT_INTERVAL_MS = 30_000;
+    private static final int COMPACT_THRESHOLD = 1000;
+    private static final long POLL_INTERVAL_MS = 2000;
+
+    private final Path snapshotFile;
+    private final Path legacySnapshotFile;
+    private final Path journalFile;
+    private final Path compactingFile;
+    private final SyncPolicy policy;
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(128);
+    private final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+    private ScheduledExecutorService scheduler;
+    private FileChannel channel;
+    private boolean unsynced;
+    private int recordsSinceCompaction;
+    private long replayLimit = -1;
+    private boolean inBatch;
+    // Generation of the live journal file
+    private int generation;
+
+    private final boolean shared;
+    private final Path lockFile;
+    private FileChannel lockChannel;
+    // Shared in shared mode, exclusive otherwise and while compacting
+    private FileLock presenceLock;
+    // Commits: commitLock orders them within this process, the file lock across processes.
+    // Taken before compactionLock is released and before the monitor, never after.
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private FileLock commitFileLock;
+    // Shared mode: how far this instance has read the journal, and what other instances
+    // committed up to there that the service hasn't applied yet (guarded by commitLock)
+    private volatile long position;
+    private final List<Change> foreign = new ArrayList<>();
+    private volatile Runnable foreignListener = () -> { };
+    private volatile WatchService watchService;
+
+    public InventoryJournal(File snapshotFile, File journalFile, SyncPolicy policy) {
+        this(snapshotFile, journalFile, policy, false);
+    }
+
+    public InventoryJournal(File snapshotFile, File journalFile, SyncPolicy policy, boolean shared) {
+        this.snapshotFile = snapshotFile.toPath();
+        String name = snapshotFile.getName();
+        this.legacySnapshotFile = this.snapshotFile.resolveSibling(
+            (name.contains(".") ? name.substring(0, name.lastIndexOf('.')) : name) + ".csv");
+        this.journalFile = journalFile.toPath();
+        this.compactingFile = Paths.get(journalFile.getPath() + ".compacting");
+        this.lockFile = Paths.get(journalFile.getPath() + ".lock");
+        this.policy = policy;
+        this.shared = shared;
+    }
+
+    // -Dinventory.shared=true lets several instances use the same files
+    public static boolean sharedFromProperty() {
+        return Boolean.getBoolean("inventory.shared");
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    public static SyncPolicy policyFromProperty() {
+        String value = System.getProperty("inventory.sync", SyncPolicy.BATCHED.name());
+        try {
+            return SyncPolicy.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown inventory.sync policy '" + value + "', using BATCHED");
+            return SyncPolicy.BATCHED;
+        }
+    }
+
+    public long replaySize() throws IOException {
+        long size = 0;
+        for (Path file : List.of(currentSnapshot(), compactingFile, journalFile)) {
+            if (Files.exists(file)) size += Files.size(file);
+        }
+        return size;
+    }
+
+    // Replays snapshot, any half-finished compaction and the live journal, in that order.
+    // Compaction is held off until the replay finishes, and records appended after open() are
+    // not replayed.
+    public void replay(Consumer<Change> sink, LongConsumer bytesRead) throws IOException {
+        compactionLock.lock();
+        try {
+            CountingInputStream.Total total = new CountingInputStream.Total(bytesRead);
+            readSnapshot(sink, total);
+            if (!compactingFolded()) readJournal(compactingFile, 0, Long.MAX_VALUE, sink, total);
+            long limit;
+            synchronized (this) {
+                limit = replayLimit >= 0 ? replayLimit : Long.MAX_VALUE;
+            }
+            readJournal(journalFile, 0, limit, sink, total);
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    public void open() throws IOException {
+        synchronized (this) {
+            if (channel != null) return;
+        }
+        acquirePresence();
+        commitLock.lock();
+        try {
+            FileLock commit = shared ? lockChannel.lock(1, 1, false) : null;
+            try {
+                openJournal();
+            } finally {
+                if (commit != null) commit.release();
+            }
+        } catch (IOException | RuntimeException e) {
+            releasePresence();
+            throw e;
+        } finally {
+            commitLock.unlock();
+        }
+        if (shared) startWatcher();
+    }
+
+    private synchronized void openJournal() throws IOException {
+        // Cut off a torn tail so new records aren't appended behind it, where replay would stop
+        // (or count them into an incomplete batch)
+        truncateTornTail(0, change -> { });
+        boolean empty = !Files.exists(journalFile) || Files.size(journalFile) == 0;
+        generation = empty ? 0 : generationOf(journalFile);
+        channel = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        // A new file (or one a compaction crashed before writing to) follows everything folded or
+        // waiting to be; files from before generations were recorded stay at 0
+        if (empty) {
+            writeGeneration(Math.max(snapshotGeneration(), generationOf(compactingFile)) + 1);
+            flushBuffer();
+        }
+        replayLimit = channel.size();
+        position = replayLimit;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "inventory-journal");
+            t.setDaemon(true);
+            return t;
+        });
+        if (policy == SyncPolicy.BATCHED) {
+            scheduler.scheduleWithFixedDelay(this::syncQuietly,
+                SYNC_INTERVAL_MS, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (needsCompaction()) compactQuietly();
+        }, COMPACT_INTERVAL_MS, COMPACT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordAdd(InventoryItem item) throws IOException {
+        lock();
+        try {
+            writeAdd(item);
+        } finally {
+            unlock();
+        }
+    }
+
+    public void recordUpdate(String oldId, InventoryItem item) throws IOException {
+        lock();
+        try {
+            writeUpdate(oldId, item);
+        } finally {
+            unlock();
+        }
+    }
+
+    public void recordDelete(String id) throws IOException {
+        lock();
+        try {
+            writeDelete(id);
+        } finally {
+            unlock();
+        }
+    }
+
+    // Stock movements are stored as deltas, so concurrent adjustments to one item replay
+    // to the same total whatever order their records land in
+    public void recordAdjust(String id, int delta) throws IOException {
+        lock();
+        try {
+            writeAdjust(id, delta);
+        } finally {
+            unlock();
+        }
+    }
+
+    public void recordClear() throws IOException {
+        lock();
+        try {
+            writeClear();
+        } finally {
+            unlock();
+        }
+    }
+
+    // Appends the changes as one unit: replay sees all of them or, after a crash mid-write, none.
+    // EVERY_WRITE syncs once for the whole batch.
+    public void recordBatch(List<Change> changes) throws IOException {
+        lock();
+        try {
+            writeBatch(changes);
+        } finally {
+            unlock();
+        }
+    }
+
+    // ---- sharing ----
+
+    // Shared mode: takes the commit lock, first queueing anything other instances committed since
+    // this instance last looked (see takeForeign()). Records appended while it is held reach the
+    // file by unlock(). Reentrant; does nothing in single-instance mode.
+    public void lock() throws IOException {
+        if (!shared) return;
+        commitLock.lock();
+        if (commitLock.getHoldCount() > 1 || lockChannel == null) return;
+        boolean locked = false;
+        try {
+            commitFileLock = lockChannel.lock(1, 1, false);
+            catchUp();
+            locked = true;
+        } finally {
+            if (!locked) {
+                if (commitFileLock != null) commitFileLock.release();
+                commitFileLock = null;
+                commitLock.unlock();
+            }
+        }
+    }
+
+    public void unlock() throws IOException {
+        if (!shared) return;
+        boolean notify = false;
+        try {
+            if (commitLock.getHoldCount() == 1 && commitFileLock != null) {
+                try {
+                    synchronized (this) {
+                        flushBuffer();
+                        if (channel != null) position = channel.size();
+                    }
+                } finally {
+                    commitFileLock.release();
+                    commitFileLock = null;
+                    notify = !foreign.isEmpty();
+                }
+            }
+        } finally {
+            commitLock.unlock();
+        }
+        if (notify) foreignListener.run();
+    }
+
+    // Other instances' changes read so far, oldest first; the caller applies them
+    public List<Change> takeForeign() {
+        commitLock.lock();
+        try {
+            if (foreign.isEmpty()) return List.of();
+            List<Change> changes = new ArrayList<>(foreign);
+            foreign.clear();
+            return changes;
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    // Runs (on whichever thread read them) when other instances' changes are waiting in takeForeign()
+    public void onForeignChanges(Runnable listener) {
+        foreignListener = listener;
+    }
+
+    // Reads other instances' new records, if any
+    public void poll() throws IOException {
+        if (!shared || !Files.exists(journalFile) || Files.size(journalFile) == position) return;
+        lock();
+        unlock();
+    }
+
+    private void catchUp() throws IOException {
+        long size = Files.exists(journalFile) ? Files.size(journalFile) : 0;
+        if (size == position) return;
+        if (size < position) throw new IOException("The journal was rewritten by another instance; restart to reload");
+        position = truncateTornTail(position, foreign::add);
+    }
+
+    // Reads the journal from the given offset and cuts off anything after the last complete
+    // record: under the commit lock that can only be a crashed writer's
+    private long truncateTornTail(long from, Consumer<Change> sink) throws IOException {
+        if (!Files.exists(journalFile)) return 0;
+        long committed = readJournal(journalFile, from, Long.MAX_VALUE, sink, new CountingInputStream.Total(bytes -> { }));
+        if (committed < Files.size(journalFile)) {
+            try (FileChannel truncate = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+                truncate.truncate(committed);
+            }
+        }
+        return committed;
+    }
+
+    private void acquirePresence() throws IOException {
+        lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            presenceLock = shared ? lockChannel.lock(0, 1, true) : lockChannel.tryLock(0, 1, false);
+        } catch (OverlappingFileLockException e) {
+            presenceLock = null;
+        }
+        if (presenceLock == null) {
+            lockChannel.close();
+            lockChannel = null;
+            throw new IOException("The inventory is open in another instance"
+                + (shared ? "" : "; start every instance with -Dinventory.shared=true to share it"));
+        }
+    }
+
+    private void releasePresence() throws IOException {
+        if (lockChannel == null) return;
+        lockChannel.close();
+        lockChannel = null;
+        presenceLock = null;
+    }
+
+    // Trades the shared presence lock for an exclusive one if no other instance is open
+    private boolean tryExclusive() throws IOException {
+        presenceLock.release();
+        FileLock exclusive = lockChannel.tryLock(0, 1, false);
+        presenceLock = exclusive != null ? exclusive : lockChannel.lock(0, 1, true);
+        return exclusive != null;
+    }
+
+    private void startWatcher() throws IOException {
+        Path dir = journalFile.toAbsolutePath().getParent();
+        watchService = dir.getFileSystem().newWatchService();
+        dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread watcher = new Thread(() -> watch(watchService), "inventory-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    // Commits by other instances show up as changes to the journal. Network file systems often
+    // don't report those, so its size is also checked every couple of seconds.
+    private void watch(WatchService watchService) {
+        try {
+            while (true) {
+                WatchKey key = watchService.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+                try {
+                    poll();
+                } catch (IOException e) {
+                    System.err.println("Reading other instances' changes failed: " + e.getMessage());
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closing
+        }
+    }
+
+    // ---- appending ----
+
+    private synchronized void writeAdd(InventoryItem item) throws IOException {
+        beginRecord(OP_ADD);
+        writeItem(item);
+        endRecord();
+    }
+
+    private synchronized void writeUpdate(String oldId, InventoryItem item) throws IOException {
+        beginRecord(OP_UPDATE);
+        recordOut.writeUTF(oldId);
+        writeItem(item);
+        endRecord();
+    }
+
+    private synchronized void writeDelete(String id) throws IOException {
+        beginRecord(OP_DELETE);
+        recordOut.writeUTF(id);
+        endRecord();
+    }
+
+    private synchronized void writeAdjust(String id, int delta) throws IOException {
+        beginRecord(OP_ADJUST);
+        recordOut.writeUTF(id);
+        recordOut.writeInt(delta);
+        endRecord();
+    }
+
+    // First record of every new journal file; flushed with the records after it
+    private void writeGeneration(int next) throws IOException {
+        beginRecord(OP_GENERATION);
+        recordOut.writeInt(next);
+        endRecord();
+        recordsSinceCompaction--;
+        generation = next;
+    }
+
+    private synchronized void writeClear() throws IOException {
+        beginRecord(OP_CLEAR);
+        endRecord();
+    }
+
+    private synchronized void writeBatch(List<Change> changes) throws IOException {
+        beginRecord(OP_BATCH);
+        recordOut.writeInt(changes.size());
+        inBatch = true;
+        try {
+            endRecord();
+            for (Change change : changes) {
+                switch (change.op()) {
+                    case ADD -> writeAdd(change.item());
+                    case UPDATE -> writeUpdate(change.oldId(), change.item());
+                    case DELETE -> writeDelete(change.oldId());
+                    case CLEAR -> writeClear();
+                    case ADJUST -> writeAdjust(change.oldId(), change.delta());
+                }
+            }
+        } finally {
+            inBatch = false;
+        }
+        if (policy == SyncPolicy.EVERY_WRITE) sync();
+    }
+
+    public synchronized void sync() throws IOException {
+        if (channel == null) return;
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.SAVE);
+        try {
+            flushBuffer();
+            if (unsynced) {
+                channel.force(false);
+                unsynced = false;
+            }
+        } finally {
+            InventoryMetrics.stop(InventoryMetrics.Operation.SAVE, started);
+        }
+    }
+
+    // Folds the journal into a fresh snapshot. Appends keep going to a new journal meanwhile.
+    // In shared mode this is skipped while other instances are open.
+    public void compact() throws IOException {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.COMPACT);
+        compactionLock.lock();
+        boolean exclusive = false;
+        if (shared) commitLock.lock();
+        try {
+            if (shared) {
+                if (lockChannel == null || !(exclusive = tryExclusive())) return;
+            }
+            synchronized (this) {
+                if (channel == null) return;
+                if (!Files.exists(compactingFile)) {
+                    flushBuffer();
+                    channel.force(false);
+                    channel.close();
+                    Files.move(journalFile, compactingFile, StandardCopyOption.ATOMIC_MOVE);
+                    channel = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    unsynced = false;
+                    writeGeneration(generation + 1);
+                    flushBuffer();
+                    replayLimit = channel.size();
+                    position = replayLimit;
+                }
+                recordsSinceCompaction = 0;
+            }
+            // Left over from a compaction that crashed after installing the snapshot: only the
+            // deletion is missing
+            if (!compactingFolded()) fold(Math.max(snapshotGeneration(), generationOf(compactingFile)));
+            Files.delete(compactingFile);
+            if (!legacySnapshotFile.equals(snapshotFile) && Files.exists(legacySnapshotFile)) {
+                Files.move(legacySnapshotFile, Paths.get(legacySnapshotFile + ".bak"), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            if (exclusive) {
+                presenceLock.release();
+                presenceLock = lockChannel.lock(0, 1, true);
+            }
+            if (shared) commitLock.unlock();
+            compactionLock.unlock();
+            InventoryMetrics.stop(InventoryMetrics.Operation.COMPACT, started);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        close(true);
+    }
+
+    // compact=false leaves folding the journal to a later run, for short-lived callers
+    public void close(boolean compact) throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        if (watchService != null) watchService.close();
+        compactionLock.lock();
+        try {
+            synchronized (this) {
+                if (channel == null) return;
+                flushBuffer();
+                channel.force(false);
+            }
+            if (compact) compact();
+            synchronized (this) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            compactionLock.unlock();
+            releasePresence();
+        }
+    }
+
+    private synchronized boolean needsCompaction() {
+        return recordsSinceCompaction >= COMPACT_THRESHOLD || Files.exists(compactingFile);
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            System.err.println("Journal sync failed: " + e.getMessage());
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException e) {
+            System.err.println("Journal compaction failed: " + e.getMessage());
+        }
+    }
+
+    private void beginRecord(byte op) throws IOException {
+        if (channel == null) throw new IOException("Journal is not open");
+        recordBytes.reset();
+        recordOut.writeByte(op);
+    }
+
+    private void writeItem(InventoryItem item) throws IOException {
+        recordOut.writeUTF(item.getId());
+        recordOut.writeUTF(item.getName());
+        recordOut.writeInt(item.getQuantity());
+        recordOut.writeDouble(item.getPrice());
+    }
+
+    // Frame: payload length, CRC32 of payload, payload
+    private void endRecord() throws IOException {
+        recordOut.flush();
+        byte[] payload = recordBytes.toByteArray();
+        crc.reset();
+        crc.update(payload);
+        int frameSize = 8 + payload.length;
+        if (buffer.remaining() < frameSize) flushBuffer();
+        if (frameSize > buffer.capacity()) {
+            ByteBuffer large = ByteBuffer.allocate(frameSize);
+            large.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+            while (large.hasRemaining()) channel.write(large);
+            unsynced = true;
+        } else {
+            buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        }
+        recordsSinceCompaction++;
+        if (policy == SyncPolicy.EVERY_WRITE && !inBatch) sync();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (buffer.position() == 0) return;
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+        unsynced = true;
+    }
+
+    private Path currentSnapshot() {
+        return Files.exists(snapshotFile) || !Files.exists(legacySnapshotFile) ? snapshotFile : legacySnapshotFile;
+    }
+
+    private void readSnapshot(Consumer<Change> sink, CountingInputStream.Total total) throws IOException {
+        Path file = currentSnapshot();
+        if (!Files.exists(file)) return;
+        long[] reported = {0};
+        Consumer<List<InventoryItem>> items = list -> {
+            for (InventoryItem item : list) sink.accept(Change.add(item));
+        };
+        LongConsumer bytes = position -> {
+            total.add(position - reported[0]);
+            reported[0] = position;
+        };
+        if (file.equals(snapshotFile)) {
+            InventorySnapshot.read(file, items, bytes);
+        } else {
+            CsvBulkParser.parse(file, true, items, bytes);
+        }
+    }
+
+    // Writes the snapshot with the compacting file folded in. Only the file's net change per ID
+    // is held; the old snapshot streams through those into the new one, so the heap needed
+    // follows the journal's length rather than the inventory's size.
+    private void fold(int folded) throws IOException {
+        Fold fold = new Fold();
+        CountingInputStream.Total total = new CountingInputStream.Total(bytes -> { });
+        readJournal(compactingFile, 0, Long.MAX_VALUE, fold::apply, total);
+        Path temp = Paths.get(snapshotFile + ".tmp");
+        try (InventorySnapshot.Writer out = new InventorySnapshot.Writer(temp, folded)) {
+            // After a clear nothing of the old snapshot survives
+            if (!fold.cleared) {
+                readSnapshot(change -> {
+                    InventoryItem item = fold.applyTo(change.item());
+                    if (item == null) return;
+                    try {
+                        out.add(item);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, total);
+            }
+            for (InventoryItem item : fold.added()) out.add(item);
+            out.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // The net effect of a run of changes on each ID they touch: a replacement for the snapshot's
+    // item (null if deleted), or a delta for its quantity. Matches replaying them, so adjusting
+    // an ID the snapshot lacks does nothing and a clear empties the snapshot.
+    private static final class Fold {
+        private final Map<String, Pending> pending = new LinkedHashMap<>();
+        boolean cleared;
+
+        private static final class Pending {
+            boolean replaced;
+            InventoryItem item;
+            int delta;
+            // The snapshot had the ID
+            boolean seen;
+        }
+
+        void apply(Change change) {
+            switch (change.op()) {
+                case ADD -> replace(change.item().getId(), change.item());
+                case UPDATE -> {
+                    if (!key(change.oldId()).equals(key(change.item().getId()))) replace(change.oldId(), null);
+                    replace(change.item().getId(), change.item());
+                }
+                case DELETE -> replace(change.oldId(), null);
+                case CLEAR -> {
+                    pending.clear();
+                    cleared = true;
+                }
+                case ADJUST -> {
+                    Pending p = pending.get(key(change.oldId()));
+                    if (p == null) {
+                        if (cleared) return;
+                        p = new Pending();
+                        pending.put(key(change.oldId()), p);
+                    }
+                    if (!p.replaced) {
+                        p.delta += change.delta();
+                    } else if (p.item != null) {
+                        p.item = withQuantity(p.item, p.item.getQuantity() + change.delta());
+                    }
+                }
+            }
+        }
+
+        // The snapshot's item as the changes leave it, null if they delete it
+        InventoryItem applyTo(InventoryItem item) {
+            Pending p = pending.get(key(item.getId()));
+            if (p == null) return item;
+            p.seen = true;
+            if (p.replaced) return p.item;
+            return p.delta == 0 ? item : withQuantity(item, item.getQuantity() + p.delta);
+        }
+
+        // Items the changes add that the snapshot didn't have
+        List<InventoryItem> added() {
+            List<InventoryItem> items = new ArrayList<>();
+            for (Pending p : pending.values()) {
+                if (!p.seen && p.replaced && p.item != null) items.add(p.item);
+            }
+            return items;
+        }
+
+        private void replace(String id, InventoryItem item) {
+            Pending p = pending.computeIfAbsent(key(id), k -> new Pending());
+            p.replaced = true;
+            p.item = item;
+            p.delta = 0;
+        }
+
+        private static InventoryItem withQuantity(InventoryItem item, int quantity) {
+            return new InventoryItem(item.getId(), item.getName(), quantity, item.getPrice());
+        }
+    }
+
+    // The generation of the last journal folded into the snapshot; 0 for none, a CSV snapshot or
+    // one written before generations were recorded
+    private int snapshotGeneration() throws IOException {
+        return Files.exists(snapshotFile) ? InventorySnapshot.generation(snapshotFile) : 0;
+    }
+
+    // Whether the compacting file is already in the snapshot. Files from before generations
+    // were recorded (0) can't tell, and are folded as they always were.
+    private boolean compactingFolded() throws IOException {
+        int folded = generationOf(compactingFile);
+        return folded > 0 && folded <= snapshotGeneration();
+    }
+
+    // A journal's generation from its first record, 0 if it has none
+    private static int generationOf(Path file) throws IOException {
+        if (!Files.exists(file)) return 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64))) {
+            int length = in.readInt(), expected = in.readInt();
+            if (length != 5) return 0;
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32 check = new CRC32();
+            check.update(payload);
+            if ((int) check.getValue() != expected || payload[0] != OP_GENERATION) return 0;
+            return ByteBuffer.wrap(payload, 1, 4).getInt();
+        } catch (EOFException e) {
+            return 0;
+        }
+    }
+
+    // Reads from offset from, which must be a record boundary, and stops at the first torn or
+    // corrupt frame, which can only be the tail of a crashed write. Returns the length up to the
+    // end of the last complete record or batch.
+    private long readJournal(Path file, long from, long limit, Consumer<Change> sink, CountingInputStream.Total total) throws IOException {
+        if (!Files.exists(file)) return 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new CountingInputStream(Files.newInputStream(file), total), BUFFER_SIZE))) {
+            in.skipNBytes(from);
+            CRC32 check = new CRC32();
+            long position = from;
+            // Records of a batch are held back until the batch is complete
+            List<Change> batch = new ArrayList<>();
+            int batchRemaining = 0;
+            long committed = from;
+            while (position < limit) {
+                checkInterrupted();
+                int length, expected;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    expected = in.readInt();
+                    if (length <= 0 || length > (1 << 24)) break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                check.reset();
+                check.update(payload);
+                if ((int) check.getValue() != expected) {
+                    System.err.println("Journal " + file.getFileName() + " has a corrupt record, ignoring the rest");
+                    break;
+                }
+                position += 8 + length;
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                if (payload[0] == OP_GENERATION) {
+                    // Read by generationOf(); nothing to replay
+                    if (batchRemaining == 0) committed = position;
+                } else if (payload[0] == OP_BATCH) {
+                    record.readByte();
+                    batch.clear();
+                    batchRemaining = record.readInt();
+                    if (batchRemaining == 0) committed = position;
+                } else if (batchRemaining > 0) {
+                    batch.add(decode(record));
+                    if (--batchRemaining == 0) {
+                        batch.forEach(sink);
+                        committed = position;
+                    }
+                } else {
+                    sink.accept(decode(record));
+                    committed = position;
+                }
+            }
+            if (batchRemaining > 0) {
+                System.err.println("Journal " + file.getFileName() + " ends in an incomplete batch of "
+                    + (batch.size() + batchRemaining) + " changes, ignoring it");
+            }
+            return committed;
+        }
+    }
+
+    private static Change decode(DataInputStream record) throws IOException {
+        return switch (record.readByte()) {
+            case OP_ADD -> Change.add(readItem(record));
+            case OP_UPDATE -> new Change(Op.UPDATE, record.readUTF(), readItem(record));
+            case OP_DELETE -> new Change(Op.DELETE, record.readUTF(), null);
+            case OP_CLEAR -> new Change(Op.CLEAR, null, null);
+            case OP_ADJUST -> Change.adjust(record.readUTF(), record.readInt());
+            default -> throw new IOException("Unknown journal record type");
+        };
+    }
+
+    private static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Replay cancelled");
+    }
+
+    private static InventoryItem readItem(DataInputStream in) throws IOException {
+        return new InventoryItem(in.readUTF(), in.readUTF(), in.readInt(), in.readDouble());
+    }
+
+    private static String key(String id) {
+        return id.toLowerCase(Locale.ROOT);
+    }
+}
+
+// Reports cumulative bytes read across a sequence of streams
+class CountingInputStream extends FilterInputStream {
+    static class Total {
+        private final LongConsumer listener;
+        private long bytes;
+
+        Total(LongConsumer listener) { this.listener = listener; }
+
+        void add(long n) {
+            bytes += n;
+            listener.accept(bytes);
+        }
+    }
+
+    private final Total total;
+
+    CountingInputStream(InputStream in, Total total) {
+        super(in);
+        this.total = total;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) total.add(1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws IOException {
+        int n = super.read(buf, off, len);
+        if (n > 0) total.add(n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        total.add(skipped);
+        return skipped;
+    }
+}
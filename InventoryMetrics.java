@@ -0,0 +1,298 @@
+import javax.management.*;
+import javax.swing.SwingUtilities;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+// Latency histograms per operation plus an EDT stall watchdog, published as JMX MBeans
+// (domain "inventory") and optionally as a periodic log line.
+//
+//   -Dinventory.metrics=true                   record and publish
+//   -Dinventory.metrics.stallMillis=200        EDT stall threshold
+//   -Dinventory.metrics.logSeconds=60          print a summary line to stderr this often
+//
+// Disabled is the default; ENABLED is a static final, so start()/stop() compile down to nothing.
+//
+//   long started = InventoryMetrics.start(Operation.ADD);
+//   try { ... } finally { InventoryMetrics.stop(Operation.ADD, started); }
+final class InventoryMetrics {
+    enum Operation { ADD, UPDATE, DELETE, ADJUST, LOAD, SAVE, COMPACT, IMPORT, EXPORT, SEARCH, FILTER, REPAINT, REPORT, HISTORY }
+
+    static final boolean ENABLED = Boolean.getBoolean("inventory.metrics");
+    private static final long STALL_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("inventory.metrics.stallMillis", 200));
+    private static final int RECENT_STALLS = 20;
+
+    private static final LatencyHistogram[] histograms = new LatencyHistogram[Operation.values().length];
+    private static final LatencyHistogram stalls = new LatencyHistogram();
+    private static final Deque<String> recentStalls = new ArrayDeque<>();
+    private static long lastStall;
+    // The operation running on the EDT, named in stall reports
+    private static volatile Thread edt;
+    private static volatile Operation edtOperation;
+    private static volatile ScheduledExecutorService scheduler;
+
+    static {
+        for (int i = 0; i < histograms.length; i++) histograms[i] = new LatencyHistogram();
+        if (ENABLED) publish();
+    }
+
+    private InventoryMetrics() {}
+
+    static long start(Operation operation) {
+        if (!ENABLED) return 0;
+        if (Thread.currentThread() == edt) edtOperation = operation;
+        return System.nanoTime();
+    }
+
+    static void stop(Operation operation, long started) {
+        if (!ENABLED) return;
+        histograms[operation.ordinal()].record(System.nanoTime() - started);
+        if (Thread.currentThread() == edt && edtOperation == operation) edtOperation = null;
+    }
+
+    // Posts a probe to the EDT every quarter threshold; a probe that waits longer than the
+    // threshold is a stall, blamed on the instrumented operation (or top frame) running meanwhile
+    static synchronized void watchEdt() {
+        if (!ENABLED || edt != null) return;
+        if (SwingUtilities.isEventDispatchThread()) {
+            edt = Thread.currentThread();
+        } else {
+            try {
+                SwingUtilities.invokeAndWait(() -> edt = Thread.currentThread());
+            } catch (Exception e) {
+                return;
+            }
+        }
+        long period = Math.max(1, TimeUnit.NANOSECONDS.toMillis(STALL_NANOS) / 4);
+        AtomicLong posted = new AtomicLong();
+        scheduler().scheduleWithFixedDelay(() -> {
+            long since = posted.get();
+            if (since != 0) {
+                long waited = System.nanoTime() - since;
+                if (waited >= STALL_NANOS) noteStall(since, waited);
+                return;
+            }
+            posted.set(System.nanoTime());
+            SwingUtilities.invokeLater(() -> {
+                long waited = System.nanoTime() - posted.getAndSet(0);
+                if (waited >= STALL_NANOS) stalls.record(waited);
+            });
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // ---- reporting ----
+
+    // Called repeatedly while one stall lasts; keeps a single entry per stall, naming whatever
+    // was running when it was last seen
+    private static void noteStall(long since, long waitedNanos) {
+        Operation operation = edtOperation;
+        String culprit = operation != null ? operation.name().toLowerCase(Locale.ROOT) : topFrame(edt);
+        String entry = String.format(Locale.ROOT, "%tT %s blocked the EDT for %d+ ms",
+            new Date(System.currentTimeMillis() - waitedNanos / 1_000_000), culprit, waitedNanos / 1_000_000);
+        synchronized (recentStalls) {
+            if (since == lastStall) recentStalls.pollLast();
+            lastStall = since;
+            recentStalls.addLast(entry);
+            while (recentStalls.size() > RECENT_STALLS) recentStalls.pollFirst();
+        }
+    }
+
+    private static String topFrame(Thread thread) {
+        StackTraceElement[] frames = thread == null ? new StackTraceElement[0] : thread.getStackTrace();
+        if (frames.length == 0) return "unknown";
+        // The innermost application frame, else the innermost frame
+        for (StackTraceElement frame : frames) {
+            if (frame.getClassName().indexOf('.') < 0) return frame.getClassName() + "." + frame.getMethodName();
+        }
+        return frames[0].getClassName() + "." + frames[0].getMethodName();
+    }
+
+    static String summary() {
+        StringBuilder line = new StringBuilder("inventory metrics:");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = histograms[operation.ordinal()];
+            if (histogram.count() == 0) continue;
+            line.append(String.format(Locale.ROOT, " %s n=%d p50=%.0fus p99=%.0fus max=%.0fus;",
+                operation.name().toLowerCase(Locale.ROOT), histogram.count(),
+                histogram.percentile(0.5) / 1e3, histogram.percentile(0.99) / 1e3, histogram.max() / 1e3));
+        }
+        line.append(" edt stalls=").append(stalls.count());
+        return line.toString();
+    }
+
+    private static ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "inventory-metrics");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return scheduler;
+    }
+
+    private static synchronized void publish() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Operation operation : Operation.values()) {
+                LatencyHistogram histogram = histograms[operation.ordinal()];
+                register(server, "inventory:type=Operation,name=" + operation.name().toLowerCase(Locale.ROOT),
+                    "Latency of " + operation.name().toLowerCase(Locale.ROOT) + " operations", histogram.attributes());
+            }
+            Map<String, Supplier<Object>> watchdog = new LinkedHashMap<>(stalls.attributes());
+            watchdog.put("ThresholdMillis", () -> TimeUnit.NANOSECONDS.toMillis(STALL_NANOS));
+            watchdog.put("RecentStalls", () -> {
+                synchronized (recentStalls) {
+                    return recentStalls.toArray(new String[0]);
+                }
+            });
+            register(server, "inventory:type=EdtWatchdog", "Event dispatch thread stalls", watchdog);
+        } catch (JMException e) {
+            System.err.println("Could not register inventory MBeans: " + e.getMessage());
+        }
+        long logSeconds = Long.getLong("inventory.metrics.logSeconds", 0);
+        if (logSeconds > 0) {
+            scheduler().scheduleAtFixedRate(() -> System.err.println(summary()), logSeconds, logSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void register(MBeanServer server, String name, String description,
+                                 Map<String, Supplier<Object>> attributes) throws JMException {
+        ObjectName objectName = new ObjectName(name);
+        if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+        server.registerMBean(new ReadOnlyMBean(description, attributes), objectName);
+    }
+
+    // Lock-free log-linear histogram of nanosecond latencies: 8 sub-buckets per power of two,
+    // so percentiles are accurate to within 12.5%
+    static final class LatencyHistogram {
+        private static final int SUB_BITS = 3, SUB_BUCKETS = 1 << SUB_BITS;
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final AtomicLong count = new AtomicLong(), total = new AtomicLong(), max = new AtomicLong();
+
+        void record(long nanos) {
+            long value = Math.max(1, nanos);
+            buckets.incrementAndGet(bucket(value));
+            count.incrementAndGet();
+            total.addAndGet(value);
+            long seen;
+            while (value > (seen = max.get()) && !max.compareAndSet(seen, value)) { }
+        }
+
+        long count() { return count.get(); }
+        long max() { return max.get(); }
+
+        double mean() {
+            long n = count.get();
+            return n == 0 ? 0 : (double) total.get() / n;
+        }
+
+        // Upper bound of the bucket holding the given quantile
+        long percentile(double quantile) {
+            long n = count.get();
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(quantile * n), seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return Math.min(upperBound(i), max.get());
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) buckets.set(i, 0);
+            count.set(0);
+            total.set(0);
+            max.set(0);
+        }
+
+        Map<String, Supplier<Object>> attributes() {
+            Map<String, Supplier<Object>> attributes = new LinkedHashMap<>();
+            attributes.put("Count", this::count);
+            attributes.put("MeanMicros", () -> mean() / 1e3);
+            attributes.put("P50Micros", () -> percentile(0.5) / 1e3);
+            attributes.put("P99Micros", () -> percentile(0.99) / 1e3);
+            attributes.put("P999Micros", () -> percentile(0.999) / 1e3);
+            attributes.put("MaxMicros", () -> max() / 1e3);
+            return attributes;
+        }
+
+        private static int bucket(long value) {
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            if (exponent < SUB_BITS) return (int) value;
+            return exponent * SUB_BUCKETS + (int) ((value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+        }
+
+        private static long upperBound(int bucket) {
+            int exponent = bucket / SUB_BUCKETS;
+            if (exponent < SUB_BITS) return bucket;
+            long sub = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+        }
+    }
+
+    // A DynamicMBean over getters, with a "reset" operation when the attributes come from a histogram
+    private static final class ReadOnlyMBean implements DynamicMBean {
+        private final String description;
+        private final Map<String, Supplier<Object>> attributes;
+
+        ReadOnlyMBean(String description, Map<String, Supplier<Object>> attributes) {
+            this.description = description;
+            this.attributes = attributes;
+        }
+
+        @Override
+        public Object getAttribute(String name) throws AttributeNotFoundException {
+            Supplier<Object> getter = attributes.get(name);
+            if (getter == null) throw new AttributeNotFoundException(name);
+            return getter.get();
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            AttributeList list = new AttributeList();
+            for (String name : names) {
+                Supplier<Object> getter = attributes.get(name);
+                if (getter != null) list.add(new Attribute(name, getter.get()));
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList list) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+            if (!action.equals("reset")) throw new ReflectionException(new NoSuchMethodException(action));
+            for (LatencyHistogram histogram : histograms) histogram.reset();
+            stalls.reset();
+            synchronized (recentStalls) {
+                recentStalls.clear();
+            }
+            return null;
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> infos = new ArrayList<>();
+            for (Map.Entry<String, Supplier<Object>> entry : attributes.entrySet()) {
+                Object sample = entry.getValue().get();
+                infos.add(new MBeanAttributeInfo(entry.getKey(), sample.getClass().getName(), entry.getKey(), true, false, false));
+            }
+            MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Clears all inventory metrics",
+                new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION);
+            return new MBeanInfo(InventoryMetrics.class.getName(), description,
+                infos.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[] {reset}, null);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Structured filter typed into the search box in query mode, e.g.
+//   quantity between 0 and 10 and price > ₱500
+//   total value top 100
+// Clauses are joined with "and"; at most one top/bottom clause is allowed.
+class InventoryQuery {
+    record Range(RangeIndex.Field field, long min, long max) {}
+
+    private static final String FIELD = "(quantity|qty|price|total value|total|value)";
+    private static final String NUMBER = "(-?[0-9][0-9,]*(?:\\.[0-9]+)?|-?\\.[0-9]+)";
+    private static final Pattern BETWEEN = Pattern.compile(FIELD + "\\s+between\\s+" + NUMBER + "\\s+and\\s+" + NUMBER);
+    private static final Pattern COMPARE = Pattern.compile(FIELD + "\\s*(<=|>=|<|>|=)\\s*" + NUMBER);
+    private static final Pattern TOP_PREFIX = Pattern.compile("(top|bottom)\\s+([0-9]+)\\s+(?:by\\s+)?" + FIELD);
+    private static final Pattern TOP_SUFFIX = Pattern.compile(FIELD + "\\s+(top|bottom)\\s+([0-9]+)");
+
+    private final List<Range> ranges = new ArrayList<>();
+    private RangeIndex.Field topField;
+    private int topCount = -1;
+    private boolean highest;
+
+    private InventoryQuery() {}
+
+    public static InventoryQuery parse(String text) {
+        InventoryQuery query = new InventoryQuery();
+        String normalized = text.trim().toLowerCase(Locale.ROOT).replace("₱", "").replaceAll("\\s+", " ");
+        // Pull out "between x and y" first so its "and" isn't taken as a clause separator
+        Matcher between = BETWEEN.matcher(normalized);
+        StringBuilder rest = new StringBuilder();
+        while (between.find()) {
+            RangeIndex.Field field = field(between.group(1));
+            long a = amount(field, between.group(2)), b = amount(field, between.group(3));
+            query.ranges.add(new Range(field, Math.min(a, b), Math.max(a, b)));
+            between.appendReplacement(rest, "");
+        }
+        between.appendTail(rest);
+        for (String clause : rest.toString().split("\\band\\b")) {
+            clause = clause.trim();
+            if (clause.isEmpty()) continue;
+            Matcher m;
+            if ((m = COMPARE.matcher(clause)).matches()) {
+                RangeIndex.Field field = field(m.group(1));
+                long v = amount(field, m.group(3));
+                query.ranges.add(switch (m.group(2)) {
+                    case "<" -> new Range(field, Long.MIN_VALUE, v - 1);
+                    case "<=" -> new Range(field, Long.MIN_VALUE, v);
+                    case ">" -> new Range(field, v + 1, Long.MAX_VALUE);
+                    case ">=" -> new Range(field, v, Long.MAX_VALUE);
+                    default -> new Range(field, v, v);
+                });
+            } else if ((m = TOP_PREFIX.matcher(clause)).matches()) {
+                query.setTop(field(m.group(3)), m.group(1), m.group(2));
+            } else if ((m = TOP_SUFFIX.matcher(clause)).matches()) {
+                query.setTop(field(m.group(1)), m.group(2), m.group(3));
+            } else {
+                throw new IllegalArgumentException("Can't understand \"" + clause + "\"");
+            }
+        }
+        if (query.ranges.isEmpty() && query.topCount < 0) throw new IllegalArgumentException("Empty query");
+        return query;
+    }
+
+    // Row-local queries can be re-checked one row at a time; top-N ones depend on every row
+    public boolean isRowLocal() {
+        return topCount < 0;
+    }
+
+    public boolean matches(InventoryStore store, int row) {
+        for (Range range : ranges) {
+            long value = RangeIndex.value(store, row, range.field());
+            if (value < range.min() || value > range.max()) return false;
+        }
+        return true;
+    }
+
+    public BitSet evaluate(InventoryStore store, RangeIndex index) {
+        BitSet rows = null;
+        for (Range range : ranges) {
+            BitSet matched = index.range(range.field(), range.min(), range.max());
+            if (rows == null) {
+                rows = matched;
+            } else {
+                rows.and(matched);
+            }
+        }
+        if (topCount >= 0) {
+            BitSet candidates = rows;
+            rows = index.top(topField, topCount, highest, row -> candidates == null || candidates.get(row));
+        }
+        return rows;
+    }
+
+    private void setTop(RangeIndex.Field field, String direction, String count) {
+        if (topCount >= 0) throw new IllegalArgumentException("Only one top/bottom clause is allowed");
+        topField = field;
+        highest = direction.equals("top");
+        try {
+            topCount = Integer.parseInt(count);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad count: " + count);
+        }
+    }
+
+    private static RangeIndex.Field field(String name) {
+        return switch (name) {
+            case "quantity", "qty" -> RangeIndex.Field.QUANTITY;
+            case "price" -> RangeIndex.Field.PRICE;
+            default -> RangeIndex.Field.TOTAL;
+        };
+    }
+
+    // Quantities are whole units; money is converted to centavos
+    private static long amount(RangeIndex.Field field, String text) {
+        BigDecimal value = new BigDecimal(text.replace(",", ""));
+        try {
+            return field == RangeIndex.Field.QUANTITY
+                ? value.longValueExact()
+                : value.movePointRight(2).setScale(0, java.math.RoundingMode.HALF_UP).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(field == RangeIndex.Field.QUANTITY
+                ? "Quantity must be a whole number: " + text
+                : "Amount out of range: " + text);
+        }
+    }
+}
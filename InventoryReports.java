@@ -0,0 +1,156 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+// Groupings over the whole store, computed with fork/join: the rows are split into ranges,
+// each leaf folds its range into a result of its own, and results are merged pairwise on the
+// way back up, so no leaf shares state with another. Amounts are summed in centavos, exactly.
+// Run these through InventoryService.report() so the store holds still while they read it.
+// A disk-backed store serializes its reads, so it is folded in a single pass instead.
+class InventoryReports {
+    private static final int LEAF_ROWS = 16_384;
+
+    private InventoryReports() {}
+
+    // Item count, units and total value of one group
+    static final class Group {
+        long items, units, valueCentavos;
+
+        void add(InventoryStore store, int row) {
+            int quantity = store.getQuantity(row);
+            items++;
+            units += quantity;
+            valueCentavos += quantity * store.getPriceCentavos(row);
+        }
+
+        Group merge(Group other) {
+            items += other.items;
+            units += other.units;
+            valueCentavos += other.valueCentavos;
+            return this;
+        }
+    }
+
+    // What a histogram or top-N ranks rows by
+    enum Metric {
+        QUANTITY, PRICE, VALUE;
+
+        long of(InventoryStore store, int row) {
+            return switch (this) {
+                case QUANTITY -> store.getQuantity(row);
+                case PRICE -> store.getPriceCentavos(row);
+                case VALUE -> store.getQuantity(row) * store.getPriceCentavos(row);
+            };
+        }
+    }
+
+    private interface RowFolder<R> {
+        void fold(R result, InventoryStore store, int row);
+    }
+
+    // ---- reports ----
+
+    // Groups by the first length characters of the ID, upper-cased, in prefix order
+    static SortedMap<String, Group> byIdPrefix(InventoryStore store, int length) {
+        if (length < 1) throw new IllegalArgumentException("Prefix length must be at least 1");
+        return fold(store, TreeMap::new, (groups, s, row) -> {
+            String id = s.getId(row);
+            String prefix = id.substring(0, Math.min(length, id.length())).toUpperCase(Locale.ROOT);
+            groups.computeIfAbsent(prefix, k -> new Group()).add(s, row);
+        }, (a, b) -> {
+            b.forEach((prefix, group) -> a.merge(prefix, group, Group::merge));
+            return a;
+        });
+    }
+
+    // Groups by metric into edges.length + 1 buckets: below edges[0], [edges[i-1], edges[i]),
+    // and at or above the last edge. Edges are ascending, in centavos for PRICE and VALUE.
+    static Group[] histogram(InventoryStore store, Metric metric, long[] edges) {
+        for (int i = 1; i < edges.length; i++) {
+            if (edges[i] <= edges[i - 1]) throw new IllegalArgumentException("Bucket edges must be ascending");
+        }
+        return fold(store, () -> {
+            Group[] buckets = new Group[edges.length + 1];
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new Group();
+            return buckets;
+        }, (buckets, s, row) -> {
+            int bucket = Arrays.binarySearch(edges, metric.of(s, row));
+            buckets[bucket >= 0 ? bucket + 1 : -bucket - 1].add(s, row);
+        }, (a, b) -> {
+            for (int i = 0; i < a.length; i++) a[i].merge(b[i]);
+            return a;
+        });
+    }
+
+    // The n rows with the largest metric, largest first; ties go to the lower row
+    static int[] top(InventoryStore store, Metric metric, int n) {
+        if (n <= 0) return new int[0];
+        // Each leaf keeps a min-heap of its best n as {value, row}; merging keeps the best n of both
+        Comparator<long[]> worstFirst = Comparator.<long[]>comparingLong(e -> e[0]).thenComparing(e -> -e[1]);
+        PriorityQueue<long[]> best = fold(store, () -> new PriorityQueue<>(worstFirst), (heap, s, row) -> {
+            offer(heap, new long[] {metric.of(s, row), row}, n, worstFirst);
+        }, (a, b) -> {
+            for (long[] entry : b) offer(a, entry, n, worstFirst);
+            return a;
+        });
+        long[][] entries = best.toArray(new long[0][]);
+        Arrays.sort(entries, worstFirst.reversed());
+        int[] rows = new int[entries.length];
+        for (int i = 0; i < rows.length; i++) rows[i] = (int) entries[i][1];
+        return rows;
+    }
+
+    private static void offer(PriorityQueue<long[]> heap, long[] entry, int n, Comparator<long[]> worstFirst) {
+        if (heap.size() < n) {
+            heap.add(entry);
+        } else if (worstFirst.compare(entry, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+
+    // ---- fork/join ----
+
+    private static <R> R fold(InventoryStore store, Supplier<R> empty, RowFolder<R> folder, BinaryOperator<R> merge) {
+        int size = store.size();
+        if (store.isDiskBacked() || size <= LEAF_ROWS) {
+            R result = empty.get();
+            for (int row = 0; row < size; row++) folder.fold(result, store, row);
+            return result;
+        }
+        return ForkJoinPool.commonPool().invoke(new FoldTask<>(store, 0, size, empty, folder, merge));
+    }
+
+    private static class FoldTask<R> extends RecursiveTask<R> {
+        private final InventoryStore store;
+        private final int from, to;
+        private final Supplier<R> empty;
+        private final RowFolder<R> folder;
+        private final BinaryOperator<R> merge;
+
+        FoldTask(InventoryStore store, int from, int to, Supplier<R> empty, RowFolder<R> folder, BinaryOperator<R> merge) {
+            this.store = store;
+            this.from = from;
+            this.to = to;
+            this.empty = empty;
+            this.folder = folder;
+            this.merge = merge;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= LEAF_ROWS) {
+                R result = empty.get();
+                for (int row = from; row < to; row++) folder.fold(result, store, row);
+                return result;
+            }
+            int middle = (from + to) >>> 1;
+            FoldTask<R> left = new FoldTask<>(store, from, middle, empty, folder, merge);
+            left.fork();
+            R right = new FoldTask<>(store, middle, to, empty, folder, merge).compute();
+            return merge.apply(left.join(), right);
+        }
+    }
+}
@@ -0,0 +1,1293 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+// Headless inventory core: storage, ID/search/range indexes, journal and validation.
+// Writes are serialized on a single writer thread (the EDT when a UI is attached, otherwise an
+// internal thread); calls from other threads are handed to it and wait for the result. Reads
+// from any thread use an optimistic StampedLock read and retry under the read lock if a write
+// got in the way. Listeners run on the writer thread as each change is applied, so they see the
+// store exactly as the event describes it; they may read but must not write back.
+// Stock adjustments skip the writer: each checks and sets the quantity in place under the shared
+// read lock and its row's monitor, so only the writer's structural changes exclude them. They
+// still take turns appending their journal record (and movement), which comes before the set
+// so a failed write leaves nothing to undo; only the rest overlaps across items. Their index
+// updates and row events are batched onto the writer afterwards.
+class InventoryService implements Closeable {
+    private static final int FIRST_CHUNK = 500, MAX_CHUNK = 20_000;
+    private static final int EXPORT_CHUNK = 8192;
+    private static final int ADJUST_LOCKS = 64;
+
+    // Row numbers refer to store(); moved is the former row that now fills a removed row, or -1
+    interface Listener {
+        void rowsInserted(int first, int last);
+        void rowUpdated(int row);
+        void rowRemoved(int row, int moved);
+        void dataReset();
+
+        // A bulk edit or delete changed many rows at once; rows may have moved, re-read them all
+        void rowsChanged();
+
+        // The row's quantity reached its reorder point: it was added at or below it, or an edit,
+        // adjustment or threshold change took it there. May arrive before rowsInserted for the row.
+        default void reorderPointReached(int row) {}
+    }
+
+    private interface WriteOp<T> {
+        T run() throws IOException;
+    }
+
+    private final InventoryStore store;
+    private final SearchIndex searchIndex;
+    private final RangeIndex rangeIndex;
+    private final ReorderIndex reorderIndex;
+    private final InventoryJournal journal;
+    private final Path reorderFile;
+    // Null when movements aren't recorded
+    private final MovementHistory history;
+    private final StampedLock lock = new StampedLock();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private int pendingInsertFrom = -1;
+    // Set while a bulk change runs: row events are replaced by one rowsChanged
+    private boolean bulk;
+    // Counts removals and resets, after which a row number may name a different item
+    private long rowsRemoved;
+    // Running totals, kept exact in centavos; adders because adjustments update them concurrently
+    private final LongAdder totalUnits = new LongAdder();
+    private final LongAdder totalValue = new LongAdder();
+    // Net quantity change per row since the range index last saw it
+    private final ConcurrentHashMap<Integer, Integer> adjustedRows = new ConcurrentHashMap<>();
+    private final AtomicBoolean adjustFlushScheduled = new AtomicBoolean();
+    // Serialize adjustments of the same row; rows map onto them by their low bits
+    private final Object[] adjustLocks = new Object[ADJUST_LOCKS];
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    // Set while loadSaved() replays
+    private volatile boolean replaying;
+    private volatile Executor writer;
+    private volatile BooleanSupplier onWriterThread;
+    private ExecutorService ownWriter;
+
+    public InventoryService(InventoryStore store, InventoryJournal journal) {
+        this(store, journal, null);
+    }
+
+    // reorderFile keeps per-item reorder points; null keeps them in memory only
+    public InventoryService(InventoryStore store, InventoryJournal journal, File reorderFile) {
+        this(store, journal, reorderFile, !store.isDiskBacked());
+    }
+
+    // indexed = false skips the search, range and reorder indexes: loading is several times faster
+    // and every query scans instead, which suits a process that runs one command and exits
+    public InventoryService(InventoryStore store, InventoryJournal journal, File reorderFile, boolean indexed) {
+        this(store, journal, reorderFile, null, indexed);
+    }
+
+    // history records every local change as a stock movement; null records none
+    public InventoryService(InventoryStore store, InventoryJournal journal, File reorderFile,
+                            MovementHistory history, boolean indexed) {
+        this.store = store;
+        this.journal = journal;
+        this.reorderFile = reorderFile != null ? reorderFile.toPath() : null;
+        this.history = history;
+        this.searchIndex = new SearchIndex(store, indexed);
+        this.rangeIndex = new RangeIndex(store, indexed);
+        Arrays.setAll(adjustLocks, i -> new Object());
+        this.reorderIndex = new ReorderIndex(store, indexed);
+        Thread[] writerThread = new Thread[1];
+        ownWriter = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "inventory-writer");
+            t.setDaemon(true);
+            writerThread[0] = t;
+            return t;
+        });
+        writer = ownWriter;
+        onWriterThread = () -> Thread.currentThread() == writerThread[0];
+        journal.onForeignChanges(this::scheduleRefresh);
+    }
+
+    // inventory.dat + inventory.journal + inventory.reorder + inventory.history/ in the working
+    // directory, store from -Dinventory.store, shared with other instances if -Dinventory.shared is set
+    public static InventoryService openDefault() {
+        return openDefault(true);
+    }
+
+    // As above; indexed = false as in the constructor (a disk-backed store is never indexed)
+    public static InventoryService openDefault(boolean indexed) {
+        InventoryStore store = InventoryStore.fromProperty();
+        boolean shared = InventoryJournal.sharedFromProperty();
+        return new InventoryService(store, new InventoryJournal(
+            new File("inventory.dat"), new File("inventory.journal"), InventoryJournal.policyFromProperty(), shared),
+            new File("inventory.reorder"), MovementHistory.fromProperties(shared), indexed && !store.isDiskBacked());
+    }
+
+    // Route writes to another thread, e.g. useWriter(SwingUtilities::invokeLater, SwingUtilities::isEventDispatchThread)
+    public synchronized void useWriter(Executor executor, BooleanSupplier isWriterThread) {
+        writer = executor;
+        onWriterThread = isWriterThread;
+        if (ownWriter != null) {
+            ownWriter.shutdown();
+            ownWriter = null;
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Direct row access for the writer thread, e.g. a table model on the EDT
+    public InventoryStore store() {
+        return store;
+    }
+
+    // ---- reads ----
+
+    public int size() {
+        return read(store::size);
+    }
+
+    public InventoryItem get(String id) {
+        return read(() -> {
+            int row = store.indexOf(id.trim());
+            return row < 0 ? null : store.get(row);
+        });
+    }
+
+    public List<InventoryItem> search(String text, int limit) {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.SEARCH);
+        try {
+            return lockedRead(() -> items(searchIndex.search(text), limit));
+        } finally {
+            InventoryMetrics.stop(InventoryMetrics.Operation.SEARCH, started);
+        }
+    }
+
+    public List<InventoryItem> query(String text, int limit) {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.SEARCH);
+        try {
+            InventoryQuery query = InventoryQuery.parse(text);
+            return lockedRead(() -> items(query.evaluate(store, rangeIndex), limit));
+        } finally {
+            InventoryMetrics.stop(InventoryMetrics.Operation.SEARCH, started);
+        }
+    }
+
+    // Row-level variants for the writer thread
+    public BitSet searchRows(String text) {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.SEARCH);
+        try {
+            return searchIndex.search(text);
+        } finally {
+            InventoryMetrics.stop(InventoryMetrics.Operation.SEARCH, started);
+        }
+    }
+
+    public boolean rowMatches(int row, String lowerCaseText) {
+        return searchIndex.matches(row, lowerCaseText);
+    }
+
+    public BitSet queryRows(InventoryQuery query) {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.SEARCH);
+        try {
+            BitSet rows = query.evaluate(store, rangeIndex);
+            return rows != null ? rows : new BitSet();
+        } finally {
+            InventoryMetrics.stop(InventoryMetrics.Operation.SEARCH, started);
+        }
+    }
+
+    // ---- reorder points ----
+
+    // The item's own reorder point, or null when it uses defaultReorderPoint()
+    public Integer reorderPoint(String id) {
+        return read(() -> reorderIndex.explicitThreshold(id.trim()));
+    }
+
+    public int defaultReorderPoint() {
+        return reorderIndex.defaultThreshold();
+    }
+
+    public int lowStockCount() {
+        return read(reorderIndex::countAtOrBelow);
+    }
+
+    // Items at or below their reorder point, furthest below first
+    public List<InventoryItem> lowStock(int limit) {
+        return lockedRead(() -> {
+            List<InventoryItem> items = new ArrayList<>();
+            for (int row : reorderIndex.atOrBelow(limit)) items.add(store.get(row));
+            return items;
+        });
+    }
+
+    // Row-level variants for the writer thread
+    public int[] lowStockRows(int limit) {
+        return reorderIndex.atOrBelow(limit);
+    }
+
+    public record Totals(int items, long units, long valueCentavos) {}
+
+    // Item count, units on hand and their value, maintained as rows change rather than summed
+    public Totals totals() {
+        return read(() -> new Totals(store.size(), totalUnits.sum(), totalValue.sum()));
+    }
+
+    // Runs a whole-inventory report (see InventoryReports) under the read lock, so the rows don't
+    // change while it reads them; writes wait until it finishes
+    public <T> T report(Function<InventoryStore, T> report) {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.REPORT);
+        try {
+            return lockedRead(() -> report.apply(store));
+        } finally {
+            InventoryMetrics.stop(InventoryMetrics.Operation.REPORT, started);
+        }
+    }
+
+    public boolean isLowStock(int row) {
+        return reorderIndex.isAtOrBelow(row);
+    }
+
+    // ---- movement history ----
+    // Answered from the history alone, without the inventory lock; empty when it isn't recorded
+
+    // The item's movements with from <= time <= to (epoch millis), oldest first
+    public List<MovementHistory.Movement> movements(String id, long from, long to) throws IOException {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.HISTORY);
+        try {
+            if (history == null) return List.of();
+            catchUpHistory();
+            return history.movements(id, from, to);
+        } finally {
+            InventoryMetrics.stop(InventoryMetrics.Operation.HISTORY, started);
+        }
+    }
+
+    // The item's inflow and outflow per day from..to, days without movements left out
+    public List<MovementHistory.Flow> flows(String id, LocalDate from, LocalDate to) throws IOException {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.HISTORY);
+        try {
+            if (history == null) return List.of();
+            catchUpHistory();
+            return history.flows(id, from, to);
+        } finally {
+            InventoryMetrics.stop(InventoryMetrics.Operation.HISTORY, started);
+        }
+    }
+
+    // As above for every item that moved, by ID
+    public SortedMap<String, List<MovementHistory.Flow>> flows(LocalDate from, LocalDate to) throws IOException {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.HISTORY);
+        try {
+            if (history == null) return new TreeMap<>();
+            catchUpHistory();
+            return history.flows(from, to);
+        } finally {
+            InventoryMetrics.stop(InventoryMetrics.Operation.HISTORY, started);
+        }
+    }
+
+    // Shared mode: picks up the movements other instances recorded since this one last wrote
+    private void catchUpHistory() throws IOException {
+        if (!journal.isShared()) return;
+        journal.lock();
+        try {
+            history.catchUp();
+        } finally {
+            journal.unlock();
+        }
+    }
+
+    // ---- writes ----
+
+    public InventoryItem add(InventoryItem item) throws IOException {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.ADD);
+        try {
+            validate(item);
+            return write(() -> {
+                if (store.indexOf(item.getId()) >= 0) throw new IllegalArgumentException("ID already exists");
+                journal.recordAdd(item);
+                recordMovement(InventoryJournal.Change.add(item));
+                insert(item);
+                return item;
+            });
+        } finally {
+            InventoryMetrics.stop(InventoryMetrics.Operation.ADD, started);
+        }
+    }
+
+    // Replaces the item stored under id; the new item may carry a different ID
+    public InventoryItem update(String id, InventoryItem item) throws IOException {
+        return update(id, null, item);
+    }
+
+    // As above, but only if the item still holds the values in expected (the ones the edit started
+    // from); otherwise someone else changed it meanwhile and ConcurrentModificationException says so
+    public InventoryItem update(String id, InventoryItem expected, InventoryItem item) throws IOException {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.UPDATE);
+        try {
+            validate(item);
+            return write(() -> {
+                int row = requireRow(id);
+                if (expected != null && !matches(row, expected)) {
+                    throw new ConcurrentModificationException(store.getId(row) + " was changed elsewhere while you were editing it"
+                        + " (now " + store.getName(row) + ", quantity " + store.getQuantity(row) + ")");
+                }
+                int clash = store.indexOf(item.getId());
+                if (clash >= 0 && clash != row) throw new IllegalArgumentException("ID already exists");
+                String oldId = store.getId(row);
+                journal.recordUpdate(oldId, item);
+                recordMovement(new InventoryJournal.Change(InventoryJournal.Op.UPDATE, oldId, item));
+                replace(row, item);
+                if (!oldId.equals(item.getId()) && reorderIndex.hasThreshold(item.getId())) saveReorderPoints();
+                return item;
+            });
+        } finally {
+            InventoryMetrics.stop(InventoryMetrics.Operation.UPDATE, started);
+        }
+    }
+
+    public InventoryItem delete(String id) throws IOException {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.DELETE);
+        try {
+            return write(() -> {
+                int row = requireRow(id);
+                InventoryItem removed = store.get(row);
+                journal.recordDelete(removed.getId());
+                recordMovement(new InventoryJournal.Change(InventoryJournal.Op.DELETE, removed.getId(), null));
+                removeRow(row);
+                if (reorderIndex.hasThreshold(removed.getId())) {
+                    reorderIndex.setThreshold(removed.getId(), null);
+                    saveReorderPoints();
+                }
+                return removed;
+            });
+        } finally {
+            InventoryMetrics.stop(InventoryMetrics.Operation.DELETE, started);
+        }
+    }
+
+    // Adds delta to the item's quantity and returns the new quantity, rejecting negative results
+    public int adjustQuantity(String id, int delta) throws IOException {
+        return adjustQuantity(id, delta, true);
+    }
+
+    public int adjustQuantity(String id, int delta, boolean rejectBelowZero) throws IOException {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.ADJUST);
+        try {
+            int quantity;
+            if (journal.isShared()) {
+                // Another instance may have changed the quantity since this one last looked;
+                // the writer applies its changes first, so the check sees them
+                quantity = write(() -> adjustRow(requireRow(id), delta, rejectBelowZero));
+            } else {
+                long stamp = lock.readLock();
+                try {
+                    quantity = adjustRow(requireRow(id), delta, rejectBelowZero);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            if (adjustFlushScheduled.compareAndSet(false, true)) {
+                writer.execute(() -> {
+                    try {
+                        write(() -> null);
+                    } catch (IOException e) {
+                        // A no-op write only flushes adjustments and cannot fail
+                    }
+                });
+            }
+            return quantity;
+        } finally {
+            InventoryMetrics.stop(InventoryMetrics.Operation.ADJUST, started);
+        }
+    }
+
+    // Runs under the read or write lock. Writers are held off by the lock and other adjustments
+    // of the row by its monitor, so nothing can change the quantity between the check and the
+    // set, and the journaled delta is exactly the change made.
+    private int adjustRow(int row, int delta, boolean rejectBelowZero) throws IOException {
+        synchronized (adjustLocks[row & (ADJUST_LOCKS - 1)]) {
+            int current = store.getQuantity(row);
+            long next = (long) current + delta;
+            if (next > Integer.MAX_VALUE || next < Integer.MIN_VALUE || (rejectBelowZero && next < 0)) {
+                throw new IllegalArgumentException("Quantity would become " + next);
+            }
+            int quantity = (int) next;
+            journal.lock();
+            try {
+                if (history != null) history.catchUp();
+                // Journaled first: if that fails nothing has changed yet
+                journal.recordAdjust(store.getId(row), delta);
+                store.setQuantity(row, quantity);
+                addTotals(row, delta);
+                adjustedRows.merge(row, delta, Integer::sum);
+                if (history != null) {
+                    history.record(store.getId(row), MovementHistory.Kind.ADJUST, delta, quantity, store.getPriceCentavos(row));
+                    history.commit();
+                }
+            } finally {
+                journal.unlock();
+            }
+            return quantity;
+        }
+    }
+
+    // ---- bulk changes ----
+    // Each validates every item first, then writes one journal batch, applies it in one pass
+    // and fires one rowsChanged event. Unknown IDs reject the whole change.
+
+    public int deleteAll(Collection<String> ids) throws IOException {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.DELETE);
+        try {
+            return write(() -> {
+                List<InventoryJournal.Change> changes = new ArrayList<>(ids.size());
+                BitSet seen = new BitSet();
+                for (String id : ids) {
+                    int row = requireRow(id);
+                    if (seen.get(row)) continue;
+                    seen.set(row);
+                    changes.add(new InventoryJournal.Change(InventoryJournal.Op.DELETE, store.getId(row), null));
+                }
+                journal.recordBatch(changes);
+                recordMovements(changes);
+                applyBulk(changes);
+                dropThresholds(changes);
+                return changes.size();
+            });
+        } finally {
+            InventoryMetrics.stop(InventoryMetrics.Operation.DELETE, started);
+        }
+    }
+
+    // Replaces each listed item with edit(item), which must return a new item with the same ID
+    public int updateAll(Collection<String> ids, UnaryOperator<InventoryItem> edit) throws IOException {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.UPDATE);
+        try {
+            return write(() -> {
+                List<InventoryJournal.Change> changes = new ArrayList<>(ids.size());
+                BitSet seen = new BitSet();
+                for (String id : ids) {
+                    int row = requireRow(id);
+                    if (seen.get(row)) continue;
+                    seen.set(row);
+                    String storedId = store.getId(row);
+                    InventoryItem edited = edit.apply(store.get(row));
+                    if (!edited.getId().equals(storedId)) throw new IllegalArgumentException("Bulk edits can't change IDs");
+                    validate(edited);
+                    changes.add(new InventoryJournal.Change(InventoryJournal.Op.UPDATE, storedId, edited));
+                }
+                journal.recordBatch(changes);
+                recordMovements(changes);
+                applyBulk(changes);
+                return changes.size();
+            });
+        } finally {
+            InventoryMetrics.stop(InventoryMetrics.Operation.UPDATE, started);
+        }
+    }
+
+    // Edits for updateAll()
+    public static UnaryOperator<InventoryItem> setPrice(double price) {
+        return item -> new InventoryItem(item.getId(), item.getName(), item.getQuantity(), price);
+    }
+
+    public static UnaryOperator<InventoryItem> adjustQuantityBy(int delta) {
+        return item -> withQuantity(item, (long) item.getQuantity() + delta);
+    }
+
+    // Rounds to the nearest unit, e.g. -10 takes 15 to 14 (13.5 rounded)
+    public static UnaryOperator<InventoryItem> adjustQuantityByPercent(double percent) {
+        return item -> withQuantity(item, Math.round(item.getQuantity() * (1 + percent / 100)));
+    }
+
+    private static InventoryItem withQuantity(InventoryItem item, long quantity) {
+        if (quantity < 0 || quantity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Quantity of " + item.getId() + " would become " + quantity);
+        }
+        return new InventoryItem(item.getId(), item.getName(), (int) quantity, item.getPrice());
+    }
+
+    // Sets the item's reorder point; null reverts it to the default
+    public void setReorderPoint(String id, Integer threshold) throws IOException {
+        if (threshold != null && threshold < 0) throw new IllegalArgumentException("Reorder point cannot be negative");
+        write(() -> {
+            int row = requireRow(id);
+            Integer previous = reorderIndex.explicitThreshold(store.getId(row));
+            boolean reached = reorderIndex.thresholdChanged(row, threshold);
+            try {
+                saveReorderPoints();
+            } catch (IOException e) {
+                reorderIndex.thresholdChanged(row, previous);
+                throw e;
+            }
+            if (reached) fire(l -> l.reorderPointReached(row));
+            return null;
+        });
+    }
+
+    public void clear() throws IOException {
+        write(() -> {
+            journal.recordClear();
+            recordMovement(new InventoryJournal.Change(InventoryJournal.Op.CLEAR, null, null));
+            reset();
+            return null;
+        });
+    }
+
+    // Applies replayed changes, which are already in the journal
+    public void apply(List<InventoryJournal.Change> changes) throws IOException {
+        write(() -> {
+            for (InventoryJournal.Change change : changes) applyChange(change);
+            return null;
+        });
+    }
+
+    // ---- loading and import ----
+    // These parse on the calling thread and hand rows to the writer in growing chunks, so a UI
+    // shows the first rows quickly and the parser never runs far ahead of the writer.
+
+    // Opens the journal so writes are accepted; call before loadSaved()
+    public void open() throws IOException {
+        if (reorderFile != null) {
+            write(() -> {
+                reorderIndex.load(reorderFile);
+                return null;
+            });
+        }
+        journal.open();
+        if (history != null) {
+            history.open();
+            journal.lock();
+            try {
+                history.catchUp();
+            } finally {
+                journal.unlock();
+            }
+        }
+    }
+
+    // Bytes loadSaved() will read, for progress reporting
+    public long savedSize() throws IOException {
+        return journal.replaySize();
+    }
+
+    public void loadSaved(LongConsumer bytesRead) throws IOException {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.LOAD);
+        replaying = true;
+        try (ChunkSink sink = new ChunkSink(this::applyUnchecked)) {
+            journal.replay(sink, bytesRead);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            replaying = false;
+            InventoryMetrics.stop(InventoryMetrics.Operation.LOAD, started);
+        }
+        // Other instances' changes held back meanwhile
+        if (journal.isShared()) write(() -> null);
+    }
+
+    // open() + loadSaved() for headless callers
+    public void load(LongConsumer bytesRead) throws IOException {
+        open();
+        loadSaved(bytesRead);
+    }
+
+    // Parses CSV into the sink, counting lines with bad numbers
+    private interface CsvSource {
+        void parse(Consumer<List<InventoryItem>> sink, LongConsumer bytesRead, LongAdder invalidLines) throws IOException;
+    }
+
+    private static CsvSource csvFile(Path file) {
+        return (sink, bytesRead, invalidLines) -> CsvBulkParser.parse(file, false, sink, bytesRead, invalidLines);
+    }
+
+    private static CsvSource csvStream(InputStream in) {
+        return (sink, bytesRead, invalidLines) -> CsvBulkParser.parse(in, false, sink, bytesRead, invalidLines);
+    }
+
+    // Replaces the inventory with the rows of a CSV file and returns how many were rejected.
+    // Rows are checked as mergeCsv() checks them. The whole file is read into a scratch snapshot
+    // first, so a file that fails to read or an import cancelled meanwhile changes nothing.
+    // Then the clear is journaled in one batch with the first chunk of rows, and every further
+    // chunk in a batch of its own. Cancelling has no effect once that has started.
+    public long importCsv(Path file, LongConsumer bytesRead) throws IOException {
+        return importCsv(csvFile(file), bytesRead);
+    }
+
+    // As above from a stream (e.g. stdin), read sequentially
+    public long importCsv(InputStream in, LongConsumer bytesRead) throws IOException {
+        return importCsv(csvStream(in), bytesRead);
+    }
+
+    private long importCsv(CsvSource source, LongConsumer bytesRead) throws IOException {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.IMPORT);
+        Path staged = Files.createTempFile("inventory-import", ".dat");
+        try {
+            Set<String> seen = new HashSet<>();
+            long[] rejected = {0};
+            LongAdder invalidLines = new LongAdder();
+            try (InventorySnapshot.Writer out = new InventorySnapshot.Writer(staged, 0)) {
+                source.parse(items -> {
+                    for (InventoryItem item : items) {
+                        if (!accept(item, seen)) {
+                            rejected[0]++;
+                            continue;
+                        }
+                        try {
+                            out.add(item);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                }, bytesRead, invalidLines);
+                out.finish();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Import cancelled");
+            replaceWith(staged);
+            return rejected[0] + invalidLines.sum();
+        } finally {
+            Files.deleteIfExists(staged);
+            InventoryMetrics.stop(InventoryMetrics.Operation.IMPORT, started);
+        }
+    }
+
+    // Whether an imported or merged row may go in; the first row for an ID wins
+    private static boolean accept(InventoryItem item, Set<String> seen) {
+        try {
+            validate(item);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Skipping " + item.getId() + ": " + e.getMessage());
+            return false;
+        }
+        if (!seen.add(InventoryStore.key(item.getId()))) {
+            System.err.println("Skipping repeated ID " + item.getId());
+            return false;
+        }
+        return true;
+    }
+
+    // Replaces the inventory with a checked snapshot's rows. Stopping halfway would leave the
+    // inventory half replaced, so this runs on its own thread and the caller waits it out
+    // through interrupts, which stay set for it to see afterwards.
+    private void replaceWith(Path staged) throws IOException {
+        Throwable[] failure = {null};
+        Thread replacer = new Thread(() -> {
+            boolean[] cleared = {false};
+            try {
+                try (ChunkSink sink = new ChunkSink(chunk -> replaceChunk(chunk, cleared))) {
+                    InventorySnapshot.read(staged, items -> {
+                        for (InventoryItem item : items) sink.accept(InventoryJournal.Change.add(item));
+                    }, bytes -> { });
+                }
+                // An empty file still clears
+                if (!cleared[0]) replaceChunk(List.of(), cleared);
+            } catch (UncheckedIOException e) {
+                failure[0] = e.getCause();
+            } catch (Throwable e) {
+                failure[0] = e;
+            }
+        }, "inventory-import");
+        replacer.setDaemon(true);
+        replacer.start();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                replacer.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        Throwable cause = failure[0];
+        if (cause instanceof IOException io) throw io;
+        if (cause instanceof RuntimeException re) throw re;
+        if (cause instanceof Error err) throw err;
+    }
+
+    // One batch per chunk; the first one also clears
+    private void replaceChunk(List<InventoryJournal.Change> chunk, boolean[] cleared) {
+        try {
+            write(() -> {
+                boolean clear = !cleared[0];
+                List<InventoryJournal.Change> batch = chunk;
+                if (clear) {
+                    batch = new ArrayList<>(chunk.size() + 1);
+                    batch.add(new InventoryJournal.Change(InventoryJournal.Op.CLEAR, null, null));
+                    batch.addAll(chunk);
+                }
+                journal.recordBatch(batch);
+                cleared[0] = true;
+                if (clear) {
+                    // Recorded and applied first, so the rows are recorded as additions
+                    recordMovement(batch.get(0));
+                    reset();
+                }
+                if (!chunk.isEmpty()) {
+                    recordMovements(chunk);
+                    applyBulk(chunk);
+                }
+                return null;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Counts from mergeCsv(); rejected covers lines with bad numbers, invalid items and repeated IDs
+    public record MergeResult(long inserted, long updated, long unchanged, long rejected, long deleted) {
+        @Override
+        public String toString() {
+            return inserted + " inserted, " + updated + " updated, " + unchanged + " unchanged, "
+                + rejected + " rejected" + (deleted > 0 ? ", " + deleted + " deleted" : "");
+        }
+    }
+
+    // Merges a CSV file into the inventory instead of replacing it: a hash join of the file's rows
+    // against the store's ID map in one pass. New IDs are added, rows that differ are updated and
+    // identical rows are left alone, so re-importing a file writes nothing. The first row for an
+    // ID wins; later ones are rejected. With deleteMissing, items not in the file are deleted
+    // at the end. Each chunk is journaled as one batch and reported as one rowsChanged.
+    public MergeResult mergeCsv(Path file, boolean deleteMissing, LongConsumer bytesRead) throws IOException {
+        return mergeCsv(csvFile(file), deleteMissing, bytesRead);
+    }
+
+    public MergeResult mergeCsv(InputStream in, boolean deleteMissing, LongConsumer bytesRead) throws IOException {
+        return mergeCsv(csvStream(in), deleteMissing, bytesRead);
+    }
+
+    private MergeResult mergeCsv(CsvSource source, boolean deleteMissing, LongConsumer bytesRead) throws IOException {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.IMPORT);
+        try {
+            Set<String> seen = new HashSet<>();
+            long[] counts = new long[4];
+            LongAdder invalidLines = new LongAdder();
+            try (ChunkSink sink = new ChunkSink(chunk -> mergeUnchecked(chunk, seen, counts))) {
+                source.parse(items -> {
+                    for (InventoryItem item : items) sink.accept(InventoryJournal.Change.add(item));
+                }, bytesRead, invalidLines);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            long deleted = 0;
+            if (deleteMissing) {
+                if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Merge cancelled");
+                deleted = write(() -> {
+                    List<InventoryJournal.Change> changes = new ArrayList<>();
+                    for (int row = 0; row < store.size(); row++) {
+                        String id = store.getId(row);
+                        if (!seen.contains(InventoryStore.key(id))) {
+                            changes.add(new InventoryJournal.Change(InventoryJournal.Op.DELETE, id, null));
+                        }
+                    }
+                    if (changes.isEmpty()) return 0;
+                    journal.recordBatch(changes);
+                    recordMovements(changes);
+                    applyBulk(changes);
+                    dropThresholds(changes);
+                    return changes.size();
+                });
+            }
+            return new MergeResult(counts[0], counts[1], counts[2], counts[3] + invalidLines.sum(), deleted);
+        } finally {
+            InventoryMetrics.stop(InventoryMetrics.Operation.IMPORT, started);
+        }
+    }
+
+    // counts: inserted, updated, unchanged, rejected
+    private void merge(List<InventoryJournal.Change> chunk, Set<String> seen, long[] counts) throws IOException {
+        write(() -> {
+            List<InventoryJournal.Change> changes = new ArrayList<>();
+            for (InventoryJournal.Change incoming : chunk) {
+                InventoryItem item = incoming.item();
+                if (!accept(item, seen)) {
+                    counts[3]++;
+                    continue;
+                }
+                int row = store.indexOf(item.getId());
+                if (row < 0) {
+                    changes.add(incoming);
+                    counts[0]++;
+                } else if (matches(row, item)) {
+                    counts[2]++;
+                } else {
+                    changes.add(new InventoryJournal.Change(InventoryJournal.Op.UPDATE, store.getId(row), item));
+                    counts[1]++;
+                }
+            }
+            if (changes.isEmpty()) return null;
+            journal.recordBatch(changes);
+            recordMovements(changes);
+            applyBulk(changes);
+            return null;
+        });
+    }
+
+    // ---- export ----
+
+    // Writes rows (model rows in output order, or null for all rows) as CSV on the calling
+    // thread, gzipped if asked. Rows are copied out a chunk at a time under the read lock, so
+    // writers get in between chunks. Deleting rows meanwhile would make the remaining row numbers
+    // point at other items, so that fails the export. A failed or cancelled export leaves no file.
+    public void exportCsv(int[] rows, Path file, boolean gzip, LongConsumer rowsWritten) throws IOException {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.EXPORT);
+        boolean complete = false;
+        try (CsvExporter out = new CsvExporter(file, gzip)) {
+            export(() -> rows, out, rowsWritten);
+            complete = true;
+        } finally {
+            if (!complete) Files.deleteIfExists(file);
+            InventoryMetrics.stop(InventoryMetrics.Operation.EXPORT, started);
+        }
+    }
+
+    // Writes up to limit items matching query (null for all items) to a stream, e.g. stdout,
+    // and closes it
+    public void exportCsv(InventoryQuery query, int limit, OutputStream stream, boolean gzip,
+                          LongConsumer rowsWritten) throws IOException {
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.EXPORT);
+        try (CsvExporter out = new CsvExporter(stream, gzip)) {
+            export(() -> {
+                if (query == null && limit >= store.size()) return null;
+                BitSet matches = query != null ? query.evaluate(store, rangeIndex) : null;
+                if (query != null && matches == null) return new int[0];
+                IntStream rows = matches != null ? matches.stream() : IntStream.range(0, store.size());
+                return rows.limit(limit).toArray();
+            }, out, rowsWritten);
+        } finally {
+            InventoryMetrics.stop(InventoryMetrics.Operation.EXPORT, started);
+        }
+    }
+
+    // rows is evaluated under the read lock together with the deletion check
+    private void export(Supplier<int[]> rowsToExport, CsvExporter out, LongConsumer rowsWritten) throws IOException {
+        long[] removedAtStart = new long[1];
+        int[][] exported = new int[1][];
+        int total = lockedRead(() -> {
+            removedAtStart[0] = rowsRemoved;
+            exported[0] = rowsToExport.get();
+            return exported[0] != null ? exported[0].length : store.size();
+        });
+        int[] rows = exported[0];
+        for (int from = 0; from < total; from += EXPORT_CHUNK) {
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Export cancelled");
+            int first = from, last = Math.min(total, from + EXPORT_CHUNK);
+            boolean unchanged = lockedRead(() -> {
+                if (rowsRemoved != removedAtStart[0]) return false;
+                for (int i = first; i < last; i++) out.encode(store, rows != null ? rows[i] : i);
+                return true;
+            });
+            if (!unchanged) throw new IOException("Items were deleted during the export, please export again");
+            out.flush();
+            rowsWritten.accept(last);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        close(true);
+    }
+
+    // compact=false skips folding the journal into the snapshot, for short-lived callers
+    public void close(boolean compact) throws IOException {
+        if (history != null) history.close();
+        journal.close(compact);
+        if (store instanceof Closeable closeable) closeable.close();
+        if (ownWriter != null) ownWriter.shutdown();
+    }
+
+    // ---- internals ----
+
+    private void applyUnchecked(List<InventoryJournal.Change> chunk) {
+        try {
+            apply(chunk);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void mergeUnchecked(List<InventoryJournal.Change> chunk, Set<String> seen, long[] counts) {
+        try {
+            merge(chunk, seen, counts);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void validate(InventoryItem item) {
+        if (item.getId() == null || item.getId().trim().isEmpty()
+                || item.getName() == null || item.getName().trim().isEmpty()) {
+            throw new IllegalArgumentException("ID and Name are required");
+        }
+        if (item.getQuantity() < 0) throw new IllegalArgumentException("Quantity cannot be negative");
+        if (item.getPrice() < 0 || Double.isNaN(item.getPrice())) throw new IllegalArgumentException("Price cannot be negative");
+    }
+
+    private boolean matches(int row, InventoryItem item) {
+        return store.getId(row).equals(item.getId()) && store.getName(row).equals(item.getName())
+            && store.getQuantity(row) == item.getQuantity()
+            && store.getPriceCentavos(row) == InventoryStore.toCentavos(item.getPrice());
+    }
+
+    private int requireRow(String id) {
+        int row = store.indexOf(id.trim());
+        if (row < 0) throw new NoSuchElementException("No item with ID " + id);
+        return row;
+    }
+
+    // Appends a local change to the movement history. Call before applying it, while the store
+    // still holds the values it replaces. A renamed item moves its stock out of the old ID and
+    // into the new one, so each ID's changes always add up to its quantity.
+    private void recordMovement(InventoryJournal.Change change) {
+        if (history == null) return;
+        InventoryItem item = change.item();
+        switch (change.op()) {
+            case ADD, UPDATE -> {
+                int row = store.indexOf(change.op() == InventoryJournal.Op.ADD ? item.getId() : change.oldId());
+                long price = InventoryStore.toCentavos(item.getPrice());
+                if (row < 0) {
+                    history.record(item.getId(), MovementHistory.Kind.ADD, item.getQuantity(), item.getQuantity(), price);
+                } else if (!InventoryStore.key(store.getId(row)).equals(InventoryStore.key(item.getId()))) {
+                    history.record(store.getId(row), MovementHistory.Kind.RENAME, -store.getQuantity(row), 0, store.getPriceCentavos(row));
+                    history.record(item.getId(), MovementHistory.Kind.RENAME, item.getQuantity(), item.getQuantity(), price);
+                } else {
+                    history.record(item.getId(), MovementHistory.Kind.UPDATE, item.getQuantity() - store.getQuantity(row),
+                        item.getQuantity(), price);
+                }
+            }
+            case DELETE -> {
+                int row = store.indexOf(change.oldId());
+                if (row >= 0) deleted(row);
+            }
+            case CLEAR -> {
+                for (int row = 0; row < store.size(); row++) deleted(row);
+            }
+            case ADJUST -> {
+                int row = store.indexOf(change.oldId());
+                if (row >= 0) {
+                    history.record(store.getId(row), MovementHistory.Kind.ADJUST, change.delta(),
+                        store.getQuantity(row) + change.delta(), store.getPriceCentavos(row));
+                }
+            }
+        }
+    }
+
+    private void deleted(int row) {
+        history.record(store.getId(row), MovementHistory.Kind.DELETE, -store.getQuantity(row), 0, store.getPriceCentavos(row));
+    }
+
+    // For a batch; its changes touch distinct items, so they can all be recorded up front
+    private void recordMovements(List<InventoryJournal.Change> changes) {
+        if (history == null) return;
+        for (InventoryJournal.Change change : changes) recordMovement(change);
+    }
+
+    private void applyChange(InventoryJournal.Change change) {
+        InventoryItem item = change.item();
+        switch (change.op()) {
+            case ADD -> {
+                int row = store.indexOf(item.getId());
+                if (row < 0) insert(item); else replace(row, item);
+            }
+            case UPDATE -> {
+                // Replayed or foreign, so the old row may be gone or the new ID taken already;
+                // either way exactly one row ends up with the new ID
+                int row = store.indexOf(change.oldId()), existing = store.indexOf(item.getId());
+                if (row < 0) {
+                    if (existing < 0) insert(item); else replace(existing, item);
+                } else if (existing >= 0 && existing != row) {
+                    replace(existing, item);
+                    removeRow(row);
+                } else {
+                    replace(row, item);
+                }
+            }
+            case DELETE -> {
+                int row = store.indexOf(change.oldId());
+                if (row >= 0) removeRow(row);
+            }
+            case CLEAR -> reset();
+            case ADJUST -> {
+                int row = store.indexOf(change.oldId());
+                if (row < 0) break;
+                InventoryItem adjusted = store.get(row);
+                adjusted.setQuantity(adjusted.getQuantity() + change.delta());
+                replace(row, adjusted);
+            }
+        }
+    }
+
+    // Store mutations go through these so the indexes and listeners stay in step
+    private void insert(InventoryItem item) {
+        int row = store.add(item);
+        addTotals(row, store.getQuantity(row));
+        searchIndex.add(row, item.getId(), item.getName());
+        rangeIndex.add(row);
+        reorderIndex.add(row);
+        if (pendingInsertFrom < 0) pendingInsertFrom = row;
+        if (reorderIndex.isAtOrBelow(row)) fire(l -> l.reorderPointReached(row));
+    }
+
+    private void replace(int row, InventoryItem item) {
+        flushInserts();
+        String oldId = store.getId(row);
+        boolean wasLow = reorderIndex.isAtOrBelow(row);
+        searchIndex.remove(row, oldId, store.getName(row));
+        rangeIndex.remove(row);
+        reorderIndex.remove(row);
+        addTotals(row, -store.getQuantity(row));
+        store.set(row, item);
+        addTotals(row, store.getQuantity(row));
+        // A renamed item keeps its reorder point
+        if (!oldId.equals(item.getId()) && reorderIndex.hasThreshold(oldId)) {
+            reorderIndex.setThreshold(item.getId(), reorderIndex.explicitThreshold(oldId));
+            reorderIndex.setThreshold(oldId, null);
+        }
+        searchIndex.add(row, item.getId(), item.getName());
+        rangeIndex.add(row);
+        reorderIndex.add(row);
+        fireRow(l -> l.rowUpdated(row));
+        if (!wasLow && reorderIndex.isAtOrBelow(row)) fire(l -> l.reorderPointReached(row));
+    }
+
+    private void removeRow(int row) {
+        flushInserts();
+        rowsRemoved++;
+        addTotals(row, -store.getQuantity(row));
+        searchIndex.remove(row, store.getId(row), store.getName(row));
+        rangeIndex.remove(row);
+        reorderIndex.remove(row);
+        int moved = store.remove(row);
+        if (moved >= 0) {
+            searchIndex.move(moved, row, store.getId(row), store.getName(row));
+            rangeIndex.move(moved, row);
+            reorderIndex.move(moved, row);
+        }
+        fireRow(l -> l.rowRemoved(row, moved));
+    }
+
+    private void reset() {
+        pendingInsertFrom = -1;
+        rowsRemoved++;
+        store.clear();
+        totalUnits.reset();
+        totalValue.reset();
+        searchIndex.clear();
+        rangeIndex.clear();
+        reorderIndex.clear();
+        fire(Listener::dataReset);
+    }
+
+    // Consecutive appends are reported as one range, before anything else touches the store
+    private void flushInserts() {
+        if (pendingInsertFrom < 0) return;
+        int first = pendingInsertFrom, last = store.size() - 1;
+        pendingInsertFrom = -1;
+        fireRow(l -> l.rowsInserted(first, last));
+    }
+
+    // Brings the range index and listeners up to date with in-place adjustments. Runs under the
+    // write lock, so no adjustment is mid-flight and rows haven't moved since they were recorded.
+    private void flushAdjustments() {
+        adjustFlushScheduled.set(false);
+        if (adjustedRows.isEmpty()) return;
+        List<Integer> reached = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : adjustedRows.entrySet()) {
+            int row = entry.getKey(), oldQuantity = store.getQuantity(row) - entry.getValue();
+            rangeIndex.quantityChanged(row, oldQuantity);
+            if (reorderIndex.quantityChanged(row, oldQuantity)) reached.add(row);
+        }
+        List<Integer> rows = new ArrayList<>(adjustedRows.keySet());
+        adjustedRows.clear();
+        for (int row : rows) fire(l -> l.rowUpdated(row));
+        for (int row : reached) fire(l -> l.reorderPointReached(row));
+    }
+
+    // units more (or fewer) of the row's item, at its current price
+    private void addTotals(int row, long units) {
+        totalUnits.add(units);
+        totalValue.add(units * store.getPriceCentavos(row));
+    }
+
+    private void saveReorderPoints() throws IOException {
+        if (reorderFile != null) reorderIndex.save(reorderFile);
+    }
+
+    // Deleted items don't keep their reorder points
+    private void dropThresholds(List<InventoryJournal.Change> deletes) throws IOException {
+        boolean thresholdsChanged = false;
+        for (InventoryJournal.Change change : deletes) {
+            if (reorderIndex.hasThreshold(change.oldId())) {
+                reorderIndex.setThreshold(change.oldId(), null);
+                thresholdsChanged = true;
+            }
+        }
+        if (thresholdsChanged) saveReorderPoints();
+    }
+
+    private void applyBulk(List<InventoryJournal.Change> changes) {
+        flushInserts();
+        bulk = true;
+        try {
+            for (InventoryJournal.Change change : changes) applyChange(change);
+        } finally {
+            bulk = false;
+            // Appended rows are covered by rowsChanged too
+            pendingInsertFrom = -1;
+            fire(Listener::rowsChanged);
+        }
+    }
+
+    private void fire(Consumer<Listener> event) {
+        for (Listener listener : listeners) event.accept(listener);
+    }
+
+    private void fireRow(Consumer<Listener> event) {
+        if (!bulk) fire(event);
+    }
+
+    private <T> T write(WriteOp<T> op) throws IOException {
+        if (!onWriterThread.getAsBoolean()) {
+            FutureTask<T> task = new FutureTask<>(() -> write(op));
+            writer.execute(task);
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the inventory writer");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException io) throw io;
+                if (cause instanceof RuntimeException re) throw re;
+                if (cause instanceof Error err) throw err;
+                throw new IOException(cause);
+            }
+        }
+        long stamp = lock.writeLock();
+        try {
+            journal.lock();
+            try {
+                if (history != null) history.catchUp();
+                flushAdjustments();
+                applyForeign();
+                return op.run();
+            } finally {
+                flushInserts();
+                if (history != null) history.commit();
+                journal.unlock();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Changes other instances committed to a shared journal, applied like replayed ones so
+    // listeners see row events; a large batch is reported as one rowsChanged
+    private void applyForeign() {
+        // They follow the saved state, so they wait until it is all replayed
+        if (replaying) return;
+        List<InventoryJournal.Change> changes = journal.takeForeign();
+        if (changes.size() > FIRST_CHUNK) {
+            applyBulk(changes);
+        } else {
+            for (InventoryJournal.Change change : changes) applyChange(change);
+        }
+    }
+
+    // The journal's watcher (or an adjustment) read other instances' changes; apply them on the writer
+    private void scheduleRefresh() {
+        if (refreshScheduled.compareAndSet(false, true)) {
+            writer.execute(() -> {
+                refreshScheduled.set(false);
+                try {
+                    write(() -> null);
+                } catch (IOException e) {
+                    System.err.println("Applying other instances' changes failed: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    // The writer thread is the only one that mutates, so it reads without locking
+    private <T> T read(Supplier<T> reader) {
+        if (onWriterThread.getAsBoolean()) return reader.get();
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = reader.get();
+                if (lock.validate(stamp)) return result;
+            } catch (RuntimeException e) {
+                // Saw a half-applied write; retry under the read lock
+            }
+        }
+        return lockedRead(reader);
+    }
+
+    private <T> T lockedRead(Supplier<T> reader) {
+        if (onWriterThread.getAsBoolean()) return reader.get();
+        long stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private List<InventoryItem> items(BitSet rows, int limit) {
+        List<InventoryItem> result = new ArrayList<>();
+        if (rows == null) return result;
+        for (int row = rows.nextSetBit(0); row >= 0 && result.size() < limit; row = rows.nextSetBit(row + 1)) {
+            result.add(store.get(row));
+        }
+        return result;
+    }
+
+    // Batches streamed changes into chunks that start small and grow,
+    // so a UI shows the first rows quickly without flooding its event queue
+    private static class ChunkSink implements Consumer<InventoryJournal.Change>, AutoCloseable {
+        private final Consumer<List<InventoryJournal.Change>> deliver;
+        private int chunkSize = FIRST_CHUNK;
+        private List<InventoryJournal.Change> chunk = new ArrayList<>(FIRST_CHUNK);
+
+        ChunkSink(Consumer<List<InventoryJournal.Change>> deliver) {
+            this.deliver = deliver;
+        }
+
+        @Override
+        public void accept(InventoryJournal.Change change) {
+            chunk.add(change);
+            if (chunk.size() >= chunkSize) {
+                List<InventoryJournal.Change> full = chunk;
+                chunkSize = Math.min(MAX_CHUNK, chunkSize * 2);
+                chunk = new ArrayList<>(chunkSize);
+                deliver.accept(full);
+            }
+        }
+
+        // Delivers the rest; a chunk whose delivery failed is not delivered again
+        @Override
+        public void close() {
+            List<InventoryJournal.Change> rest = chunk;
+            chunk = new ArrayList<>();
+            if (!rest.isEmpty()) deliver.accept(rest);
+        }
+    }
+}
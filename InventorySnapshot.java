@@ -0,0 +1,223 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Binary snapshot of the whole inventory, written by journal compaction and read at startup.
+//
+//   header   int magic "INVS", int version, long record count, long segment table offset,
+//            int CRC32 of everything after the header, int generation of the last journal
+//            folded in (0 if none, as in snapshots written before it was recorded)
+//   records  int id length, id UTF-8, int name length, name UTF-8, int quantity, long price centavos
+//   table    int segment count, long file offset of every SEGMENT_RECORDS-th record
+//
+// All numbers are big-endian. The segment table lets the reader map and decode segments in
+// parallel, like CsvBulkParser, while handing them to the sink in file order; as there, only
+// a segment per thread is decoded ahead of the sink.
+class InventorySnapshot {
+    static final int MAGIC = 0x494E5653;
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int SEGMENT_RECORDS = 1 << 16;
+    private static final long CHECK_WINDOW = 1 << 30;
+
+    private InventorySnapshot() {}
+
+    public static void write(Path file, Collection<InventoryItem> items) throws IOException {
+        write(file, items, 0);
+    }
+
+    public static void write(Path file, Collection<InventoryItem> items, int generation) throws IOException {
+        try (Writer out = new Writer(file, generation)) {
+            for (InventoryItem item : items) out.add(item);
+            out.finish();
+        }
+    }
+
+    // Writes records as they come, for callers that don't hold the whole inventory. finish()
+    // adds the segment table and header; a writer closed without it leaves an invalid file.
+    static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private final CRC32 crc = new CRC32();
+        private final DataOutputStream out;
+        private final int generation;
+        private long[] segments = new long[16];
+        private long position = HEADER_SIZE;
+        private long count;
+
+        Writer(Path file, int generation) throws IOException {
+            this.generation = generation;
+            channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER_SIZE);
+            out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 20), crc));
+        }
+
+        void add(InventoryItem item) throws IOException {
+            if (count % SEGMENT_RECORDS == 0) {
+                int segment = (int) (count / SEGMENT_RECORDS);
+                if (segment == segments.length) segments = Arrays.copyOf(segments, segment * 2);
+                segments[segment] = position;
+            }
+            byte[] id = item.getId().getBytes(StandardCharsets.UTF_8);
+            byte[] name = item.getName().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(id.length);
+            out.write(id);
+            out.writeInt(name.length);
+            out.write(name);
+            out.writeInt(item.getQuantity());
+            out.writeLong(InventoryStore.toCentavos(item.getPrice()));
+            position += 20 + id.length + name.length;
+            count++;
+        }
+
+        void finish() throws IOException {
+            int segmentCount = (int) ((count + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS);
+            long tableOffset = position;
+            out.writeInt(segmentCount);
+            for (int i = 0; i < segmentCount; i++) out.writeLong(segments[i]);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(count).putLong(tableOffset)
+                .putInt((int) crc.getValue()).putInt(generation).flip();
+            while (header.hasRemaining()) channel.write(header, header.position());
+            channel.force(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // The journal generation recorded in the header, without reading the rest
+    public static int generation(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) { }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                throw new IOException(file.getFileName() + " is not an inventory snapshot");
+            }
+            return header.getInt(HEADER_SIZE - 4);
+        }
+    }
+
+    // Verifies the checksum, then decodes segments in parallel and hands them to the sink in order
+    public static void read(Path file, Consumer<List<InventoryItem>> sink, LongConsumer bytesRead) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) { }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException(file.getFileName() + " is not an inventory snapshot");
+            }
+            int version = header.getInt();
+            if (version != VERSION) throw new IOException("Unsupported snapshot version " + version);
+            long count = header.getLong();
+            long tableOffset = header.getLong();
+            int expectedCrc = header.getInt();
+            if (tableOffset < HEADER_SIZE || tableOffset + 4 > size) throw new IOException("Snapshot is truncated");
+            if (checksum(channel, size) != expectedCrc) throw new IOException("Snapshot checksum mismatch");
+
+            long[] bounds = readTable(channel, tableOffset, size, count);
+            int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), bounds.length - 1));
+            ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "snapshot-reader");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                int segments = bounds.length - 1, ahead = threads + 1;
+                Deque<Future<List<InventoryItem>>> inFlight = new ArrayDeque<>(ahead);
+                int submitted = 0;
+                for (int i = 0; i < segments; i++) {
+                    while (submitted < segments && submitted < i + ahead) {
+                        long start = bounds[submitted], end = bounds[submitted + 1];
+                        int records = (int) Math.min(SEGMENT_RECORDS, count - (long) submitted * SEGMENT_RECORDS);
+                        inFlight.add(pool.submit(() -> readSegment(channel, start, end, records)));
+                        submitted++;
+                    }
+                    sink.accept(inFlight.poll().get());
+                    bytesRead.accept(bounds[i + 1]);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Snapshot load cancelled");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException io) throw io;
+                if (cause instanceof RuntimeException re) throw re;
+                throw new IOException(cause);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private static int checksum(FileChannel channel, long size) throws IOException {
+        CRC32 crc = new CRC32();
+        for (long position = HEADER_SIZE; position < size; position += CHECK_WINDOW) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHECK_WINDOW, size - position)));
+        }
+        return (int) crc.getValue();
+    }
+
+    // Segment start offsets followed by the table offset as the final end bound
+    private static long[] readTable(FileChannel channel, long tableOffset, long size, long count) throws IOException {
+        ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, tableOffset, size - tableOffset);
+        int segments = table.getInt();
+        if (segments != (count + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS || table.remaining() != segments * 8L) {
+            throw new IOException("Snapshot segment table is corrupt");
+        }
+        long[] bounds = new long[segments + 1];
+        for (int i = 0; i < segments; i++) bounds[i] = table.getLong();
+        bounds[segments] = tableOffset;
+        for (int i = 0; i < segments; i++) {
+            if (bounds[i] < HEADER_SIZE || bounds[i] > bounds[i + 1] || bounds[i + 1] - bounds[i] > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot segment table is corrupt");
+            }
+        }
+        return bounds;
+    }
+
+    private static List<InventoryItem> readSegment(FileChannel channel, long start, long end, int records) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        List<InventoryItem> items = new ArrayList<>(records);
+        byte[] scratch = new byte[256];
+        try {
+            for (int i = 0; i < records; i++) {
+                if ((i & 0x3FFF) == 0 && Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Snapshot load cancelled");
+                }
+                int idLength = buffer.getInt();
+                if (idLength > scratch.length) scratch = new byte[Math.max(idLength, scratch.length * 2)];
+                buffer.get(scratch, 0, idLength);
+                String id = new String(scratch, 0, idLength, StandardCharsets.UTF_8);
+                int nameLength = buffer.getInt();
+                if (nameLength > scratch.length) scratch = new byte[Math.max(nameLength, scratch.length * 2)];
+                buffer.get(scratch, 0, nameLength);
+                String name = new String(scratch, 0, nameLength, StandardCharsets.UTF_8);
+                int quantity = buffer.getInt();
+                long centavos = buffer.getLong();
+                items.add(new InventoryItem(id, name, quantity, centavos / 100.0));
+            }
+        } catch (RuntimeException e) {
+            // BufferUnderflowException or a negative length: the checksum matched, so the writer was broken
+            throw new IOException("Snapshot record is corrupt", e);
+        }
+        if (buffer.hasRemaining()) throw new IOException("Snapshot segment has trailing bytes");
+        return items;
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.*;
+
+// Row storage behind the inventory table. IDs are unique ignoring case.
+// Rows are dense; remove() fills the hole with the last row so it stays O(1).
+interface InventoryStore {
+    int size();
+    String getId(int row);
+    String getName(int row);
+    int getQuantity(int row);
+    long getPriceCentavos(int row);
+
+    // Case-insensitive ID lookup, -1 when absent
+    int indexOf(String id);
+
+    // Appends and returns the new row
+    int add(InventoryItem item);
+    void set(int row, InventoryItem item);
+
+    // Returns the former row number of the row moved into the hole, or -1 if none moved
+    int remove(int row);
+    void clear();
+
+    // Quantity update in place for stock adjustments, which call it from any thread. Safe against
+    // reads and against calls for other rows, but not against add/set/remove/clear running at the
+    // same time; callers keep two calls for the same row apart.
+    void setQuantity(int row, int quantity);
+
+    // Disk-backed stores page rows in on demand; whole-inventory indexes scan them instead of
+    // keeping a copy on the heap
+    default boolean isDiskBacked() {
+        return false;
+    }
+
+    default double getPrice(int row) {
+        return getPriceCentavos(row) / 100.0;
+    }
+
+    default InventoryItem get(int row) {
+        return new InventoryItem(getId(row), getName(row), getQuantity(row), getPrice(row));
+    }
+
+    static long toCentavos(double price) {
+        return Math.round(price * 100);
+    }
+
+    static String key(String id) {
+        return id.toLowerCase(Locale.ROOT);
+    }
+
+    // -Dinventory.store=list|columnar|disk
+    static InventoryStore fromProperty() {
+        String kind = System.getProperty("inventory.store", "list").trim().toLowerCase(Locale.ROOT);
+        return switch (kind) {
+            case "columnar" -> new ColumnarInventoryStore();
+            case "disk" -> DiskInventoryStore.fromProperties();
+            case "list" -> new ListInventoryStore();
+            default -> {
+                System.err.println("Unknown inventory.store '" + kind + "', using list");
+                yield new ListInventoryStore();
+            }
+        };
+    }
+}
+
+// One InventoryItem per row plus a HashMap from lower-cased ID to row
+class ListInventoryStore implements InventoryStore {
+    private final List<InventoryItem> items = new ArrayList<>();
+    private final Map<String, Integer> rows = new HashMap<>();
+
+    @Override public int size() { return items.size(); }
+    @Override public String getId(int row) { return items.get(row).getId(); }
+    @Override public String getName(int row) { return items.get(row).getName(); }
+    @Override public int getQuantity(int row) { return items.get(row).getQuantity(); }
+    @Override public long getPriceCentavos(int row) { return InventoryStore.toCentavos(items.get(row).getPrice()); }
+    @Override public double getPrice(int row) { return items.get(row).getPrice(); }
+
+    @Override
+    public InventoryItem get(int row) {
+        InventoryItem item = items.get(row);
+        return new InventoryItem(item.getId(), item.getName(), item.getQuantity(), item.getPrice());
+    }
+
+    @Override
+    public int indexOf(String id) {
+        Integer row = rows.get(InventoryStore.key(id));
+        return row == null ? -1 : row;
+    }
+
+    @Override
+    public int add(InventoryItem item) {
+        items.add(copy(item));
+        rows.put(InventoryStore.key(item.getId()), items.size() - 1);
+        return items.size() - 1;
+    }
+
+    @Override
+    public void set(int row, InventoryItem item) {
+        rows.remove(InventoryStore.key(items.get(row).getId()), row);
+        items.set(row, copy(item));
+        rows.put(InventoryStore.key(item.getId()), row);
+    }
+
+    @Override
+    public int remove(int row) {
+        int last = items.size() - 1;
+        rows.remove(InventoryStore.key(items.get(row).getId()), row);
+        InventoryItem moved = items.remove(last);
+        if (row == last) return -1;
+        items.set(row, moved);
+        rows.put(InventoryStore.key(moved.getId()), row);
+        return last;
+    }
+
+    @Override
+    public void clear() {
+        items.clear();
+        rows.clear();
+    }
+
+    @Override
+    public void setQuantity(int row, int quantity) {
+        items.get(row).setQuantity(quantity);
+    }
+
+    private static InventoryItem copy(InventoryItem item) {
+        return new InventoryItem(item.getId(), item.getName(), item.getQuantity(), item.getPrice());
+    }
+}
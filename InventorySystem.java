@@ -4,26 +4,60 @@ import javax.swing.text.NumberFormatter;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
+import java.text.Collator;
 import java.text.NumberFormat;
 import java.util.*;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 import javax.swing.Timer;
 
 public class InventorySystem extends JFrame {
-    private List<InventoryItem> inventory = new ArrayList<>();
+    // Storage, indexes and persistence; this window is one client, writing on the EDT
+    private InventoryService service = InventoryService.openDefault();
+    private InventoryStore inventory = service.store();
+    private InventoryHttpServer httpServer;
+    // Rows matching the current search text or query, kept up to date as rows change; null when not searching
+    private String searchQuery;
+    private InventoryQuery activeQuery;
+    private BitSet searchMatches;
+    private boolean refilterPending;
+    private JCheckBox queryModeBox;
     private JTable table;
     private InventoryTableModel tableModel;
-    private TableRowSorter<InventoryTableModel> sorter;
+    private InventoryRowSorter sorter;
 
     // GUI Components
     private JTextField idField, nameField, searchField;
-    private JFormattedTextField quantityField, priceField;
-    private JButton addButton, updateButton, deleteButton, clearButton, exportButton, importButton, showAllButton;
+    private JFormattedTextField quantityField, priceField, reorderField;
+    private JButton addButton, updateButton, deleteButton, bulkEditButton, clearButton, exportButton, importButton, showAllButton;
     private JLabel dateLabel;
+    // The item as the form last loaded it
+    private InventoryItem formItem;
+    private JProgressBar progressBar;
+    private JLabel statusLabel;
+    private JButton cancelButton;
+    private LoadWorker activeWorker;
     private Timer searchTimer = new Timer(300, e -> filterItems());
+    // Items that reached their reorder point since the alert label was last refreshed
+    private JLabel alertLabel;
+    private JButton lowStockButton;
+    private LowStockWindow lowStockWindow;
+    private int pendingAlerts;
+    private final List<String> pendingAlertNames = new ArrayList<>();
+    private Timer alertTimer = new Timer(500, e -> {
+        showAlerts();
+        showTotals();
+    });
+    // Summary bar: running totals from the service, refreshed with the alerts
+    private JLabel totalsLabel;
+    private JButton reportsButton;
+    private ReportWindow reportWindow;
 
     public static void main(String[] args) {
+        InventoryMetrics.watchEdt();
         SwingUtilities.invokeLater(() -> {
             LoginDialog login = new LoginDialog(null);
             login.setVisible(true);
@@ -53,8 +87,13 @@ public class InventorySystem extends JFrame {
         gbc.gridx = 0; gbc.gridy = 0; gbc.gridwidth = 2;
         JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         searchPanel.add(new JLabel("Search:"));
-        searchField = new JTextField(20);
+        searchField = new JTextField(30);
         searchPanel.add(searchField);
+        queryModeBox = new JCheckBox("Query");
+        queryModeBox.setToolTipText("<html>Filter by Quantity, Price and Total Value, e.g.<br>"
+            + "quantity between 0 and 10 and price &gt; ₱500<br>total value top 100</html>");
+        queryModeBox.addActionListener(e -> filterItems());
+        searchPanel.add(queryModeBox);
         mainPanel.add(searchPanel, gbc);
 
         // Item Information Panel
@@ -104,6 +143,15 @@ public class InventorySystem extends JFrame {
         priceField.setColumns(8);
         infoPanel.add(priceField, gbcInfo);
 
+        // Reorder Point Field (blank = default)
+        gbcInfo.gridx = 8; gbcInfo.gridy = 0;
+        infoPanel.add(new JLabel("Reorder at:"));
+        gbcInfo.gridx = 9;
+        reorderField = new JFormattedTextField(intFormatter);
+        reorderField.setColumns(4);
+        reorderField.setToolTipText("Alert when quantity falls to this; blank uses " + service.defaultReorderPoint());
+        infoPanel.add(reorderField, gbcInfo);
+
         // Date Label
         gbcInfo.gridx = 3; gbcInfo.gridy = 1; gbcInfo.gridwidth = 8;
         dateLabel = new JLabel("Date: " + new java.util.Date());
@@ -114,23 +162,81 @@ public class InventorySystem extends JFrame {
         // Table (Center)
         gbc.gridy = 2; gbc.weighty = 1.0; gbc.fill = GridBagConstraints.BOTH;
         tableModel = new InventoryTableModel(inventory);
-        table = new JTable(tableModel);
-        sorter = new TableRowSorter<>(tableModel);
+        service.useWriter(SwingUtilities::invokeLater, SwingUtilities::isEventDispatchThread);
+        service.addListener(new InventoryService.Listener() {
+            @Override
+            public void rowsInserted(int first, int last) {
+                for (int row = first; row <= last; row++) refreshMatch(row);
+                tableModel.fireTableRowsInserted(first, last);
+                scheduleAlerts();
+            }
+
+            @Override
+            public void rowUpdated(int row) {
+                refreshMatch(row);
+                tableModel.fireTableRowsUpdated(row, row);
+                scheduleAlerts();
+            }
+
+            @Override
+            public void rowRemoved(int row, int moved) {
+                if (searchMatches != null) {
+                    if (moved >= 0) searchMatches.set(row, searchMatches.get(moved));
+                    searchMatches.clear(moved >= 0 ? moved : row);
+                }
+                if (activeQuery != null && !activeQuery.isRowLocal()) scheduleRefilter();
+                tableModel.fireRowRemoved(row, moved);
+                scheduleAlerts();
+            }
+
+            @Override
+            public void dataReset() {
+                if (searchMatches != null) searchMatches.clear();
+                tableModel.fireTableDataChanged();
+                scheduleAlerts();
+            }
+
+            @Override
+            public void rowsChanged() {
+                // Recompute the matches once, then let the sorter rebuild once
+                if (activeQuery != null) {
+                    searchMatches = service.queryRows(activeQuery);
+                } else if (searchQuery != null) {
+                    searchMatches = service.searchRows(searchQuery);
+                }
+                tableModel.fireTableDataChanged();
+                scheduleAlerts();
+            }
+
+            @Override
+            public void reorderPointReached(int row) {
+                pendingAlerts++;
+                if (pendingAlertNames.size() < 3) pendingAlertNames.add(inventory.getName(row));
+            }
+        });
+        table = new JTable(tableModel) {
+            @Override
+            protected void paintComponent(Graphics g) {
+                long started = InventoryMetrics.start(InventoryMetrics.Operation.REPAINT);
+                try {
+                    super.paintComponent(g);
+                } finally {
+                    InventoryMetrics.stop(InventoryMetrics.Operation.REPAINT, started);
+                }
+            }
+        };
+        sorter = new InventoryRowSorter(tableModel);
+        // Row-level events let the sorter insert/move single rows by binary search instead of re-sorting
+        sorter.setSortsOnUpdates(true);
         table.setRowSorter(sorter);
 
-        // Right-align numeric columns
+        // Right-align numeric columns; money columns hold centavos and are formatted at paint time
         DefaultTableCellRenderer rightRenderer = new DefaultTableCellRenderer();
         rightRenderer.setHorizontalAlignment(JLabel.RIGHT);
         table.getColumnModel().getColumn(2).setCellRenderer(rightRenderer);
-        table.getColumnModel().getColumn(3).setCellRenderer(rightRenderer);
-        table.getColumnModel().getColumn(4).setCellRenderer(rightRenderer);
-
-        // Custom comparator for Total Value
-        sorter.setComparator(4, (String s1, String s2) -> {
-            double v1 = Double.parseDouble(s1.replace("₱", ""));
-            double v2 = Double.parseDouble(s2.replace("₱", ""));
-            return Double.compare(v1, v2);
-        });
+        CurrencyRenderer currencyRenderer = new CurrencyRenderer();
+        table.getColumnModel().getColumn(3).setCellRenderer(currencyRenderer);
+        table.getColumnModel().getColumn(4).setCellRenderer(currencyRenderer);
 
         JScrollPane scrollPane = new JScrollPane(table);
         mainPanel.add(scrollPane, gbc);
@@ -141,6 +247,7 @@ public class InventorySystem extends JFrame {
         addButton = new JButton("Add");
         updateButton = new JButton("Update");
         deleteButton = new JButton("Delete");
+        bulkEditButton = new JButton("Bulk Edit");
         clearButton = new JButton("Clear");
         exportButton = new JButton("Export");
         importButton = new JButton("Import");
@@ -149,18 +256,64 @@ public class InventorySystem extends JFrame {
         buttonPanel.add(addButton);
         buttonPanel.add(updateButton);
         buttonPanel.add(deleteButton);
+        buttonPanel.add(bulkEditButton);
         buttonPanel.add(clearButton);
         buttonPanel.add(exportButton);
         buttonPanel.add(importButton);
         buttonPanel.add(showAllButton);
         mainPanel.add(buttonPanel, gbc);
 
+        // Status Panel (background load/import progress)
+        gbc.gridy = 4;
+        JPanel statusPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
+        statusLabel = new JLabel(" ");
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        cancelButton = new JButton("Cancel");
+        cancelButton.setVisible(false);
+        cancelButton.addActionListener(e -> {
+            if (activeWorker != null) activeWorker.cancel(true);
+        });
+        statusPanel.add(statusLabel);
+        statusPanel.add(progressBar);
+        statusPanel.add(cancelButton);
+        mainPanel.add(statusPanel, gbc);
+
+        // Low Stock Panel (coalesced reorder alerts)
+        gbc.gridy = 5;
+        JPanel alertPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
+        lowStockButton = new JButton("Low Stock");
+        lowStockButton.setToolTipText("Items at or below their reorder point (Alt+L)");
+        lowStockButton.setMnemonic(KeyEvent.VK_L);
+        lowStockButton.addActionListener(e -> showLowStock());
+        alertLabel = new JLabel(" ");
+        alertLabel.setForeground(new Color(0xB0, 0x5A, 0x00));
+        alertPanel.add(lowStockButton);
+        alertPanel.add(alertLabel);
+        mainPanel.add(alertPanel, gbc);
+        alertTimer.setRepeats(false);
+
+        // Summary Bar (running totals)
+        gbc.gridy = 6;
+        JPanel totalsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
+        reportsButton = new JButton("Reports");
+        reportsButton.setToolTipText("Totals by ID prefix, price band or quantity, and top items by value (Alt+R)");
+        reportsButton.setMnemonic(KeyEvent.VK_R);
+        reportsButton.addActionListener(e -> showReports());
+        totalsLabel = new JLabel(" ");
+        totalsPanel.add(reportsButton);
+        totalsPanel.add(totalsLabel);
+        mainPanel.add(totalsPanel, gbc);
+        showTotals();
+
         add(mainPanel);
 
         // Tooltips
         addButton.setToolTipText("Add new item (Alt+A)");
         updateButton.setToolTipText("Update selected item (Alt+U)");
-        deleteButton.setToolTipText("Delete selected item (Alt+D)");
+        deleteButton.setToolTipText("Delete selected items (Alt+D)");
+        bulkEditButton.setToolTipText("Set price or adjust quantity of all selected items (Alt+B)");
         clearButton.setToolTipText("Clear form (Alt+C)");
         exportButton.setToolTipText("Export to CSV (Alt+E)");
         importButton.setToolTipText("Import from CSV (Alt+I)");
@@ -171,6 +324,7 @@ public class InventorySystem extends JFrame {
         addButton.addActionListener(e -> addItem());
         updateButton.addActionListener(e -> updateItem());
         deleteButton.addActionListener(e -> deleteItem());
+        bulkEditButton.addActionListener(e -> bulkEditItems());
         clearButton.addActionListener(e -> clearForm());
         exportButton.addActionListener(e -> exportToCsv());
         importButton.addActionListener(e -> importFromCsv());
@@ -189,6 +343,7 @@ public class InventorySystem extends JFrame {
         addButton.setMnemonic(KeyEvent.VK_A);
         updateButton.setMnemonic(KeyEvent.VK_U);
         deleteButton.setMnemonic(KeyEvent.VK_D);
+        bulkEditButton.setMnemonic(KeyEvent.VK_B);
         clearButton.setMnemonic(KeyEvent.VK_C);
         exportButton.setMnemonic(KeyEvent.VK_E);
         importButton.setMnemonic(KeyEvent.VK_I);
@@ -196,94 +351,153 @@ public class InventorySystem extends JFrame {
 
         // Table Selection Listener
         table.getSelectionModel().addListSelectionListener(e -> {
-            if (!e.getValueIsAdjusting() && table.getSelectedRow() >= 0) {
-                int modelRow = table.convertRowIndexToModel(table.getSelectedRow());
-                InventoryItem item = inventory.get(modelRow);
-                idField.setText(item.getId());
-                nameField.setText(item.getName());
-                quantityField.setValue(item.getQuantity());
-                priceField.setValue(item.getPrice());
-            }
+            if (!e.getValueIsAdjusting() && table.getSelectedRow() >= 0) showSelected();
         });
 
         loadFromFile();
+        try {
+            httpServer = InventoryHttpServer.startFromProperty(service);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Could not start HTTP server: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
 
         addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
-                saveToFile();
+                if (activeWorker != null) activeWorker.cancel(true);
+                if (httpServer != null) httpServer.close();
+                closeService();
             }
         });
     }
 
     private void filterItems() {
-        String query = searchField.getText().trim().toLowerCase();
+        long started = InventoryMetrics.start(InventoryMetrics.Operation.FILTER);
+        try {
+            applySearch();
+        } finally {
+            InventoryMetrics.stop(InventoryMetrics.Operation.FILTER, started);
+        }
+    }
+
+    private void applySearch() {
+        refilterPending = false;
+        String query = searchField.getText().trim();
+        searchQuery = null;
+        activeQuery = null;
+        searchMatches = null;
+        searchField.setForeground(UIManager.getColor("TextField.foreground"));
         if (query.isEmpty()) {
             sorter.setRowFilter(null);
+        } else if (queryModeBox.isSelected()) {
+            try {
+                activeQuery = InventoryQuery.parse(query);
+            } catch (IllegalArgumentException e) {
+                // Leave the table as it was while the query is being typed
+                searchField.setForeground(Color.RED);
+                statusLabel.setText(e.getMessage());
+                return;
+            }
+            searchMatches = service.queryRows(activeQuery);
+            setMatchFilter();
+            statusLabel.setText(searchMatches.cardinality() + " items match");
         } else {
-            String escapedQuery = Pattern.quote(query);
-            sorter.setRowFilter(RowFilter.orFilter(
-                List.of(
-                    RowFilter.regexFilter("(?i)" + escapedQuery, 0),
-                    RowFilter.regexFilter("(?i)" + escapedQuery, 1)
-                )
-            ));
+            searchQuery = query.toLowerCase(Locale.ROOT);
+            searchMatches = service.searchRows(query);
+            setMatchFilter();
         }
         table.repaint();
     }
 
+    private void setMatchFilter() {
+        sorter.setRowFilter(new RowFilter<InventoryTableModel, Integer>() {
+            @Override
+            public boolean include(Entry<? extends InventoryTableModel, ? extends Integer> entry) {
+                return searchMatches == null || searchMatches.get(entry.getIdentifier());
+            }
+        });
+    }
+
     private void showAllItems() {
         searchField.setText("");
+        searchField.setForeground(UIManager.getColor("TextField.foreground"));
+        searchQuery = null;
+        activeQuery = null;
+        searchMatches = null;
         sorter.setRowFilter(null);
         table.repaint();
         clearForm();
     }
 
-    private boolean isUniqueId(String id, int excludeIndex) {
-        for (int i = 0; i < inventory.size(); i++) {
-            if (i != excludeIndex && inventory.get(i).getId().equalsIgnoreCase(id)) {
-                return false;
-            }
+    private void refreshMatch(int row) {
+        if (searchMatches == null) return;
+        if (activeQuery == null) {
+            searchMatches.set(row, service.rowMatches(row, searchQuery));
+        } else if (activeQuery.isRowLocal()) {
+            searchMatches.set(row, activeQuery.matches(inventory, row));
+        } else {
+            scheduleRefilter();
         }
-        return true;
+    }
+
+    // Top-N results can change with any row, so they are recomputed once after the current batch
+    private void scheduleRefilter() {
+        if (refilterPending) return;
+        refilterPending = true;
+        SwingUtilities.invokeLater(this::filterItems);
     }
 
     private void addItem() {
-        String id = idField.getText().trim();
-        if (validateInput() && isUniqueId(id, -1)) {
-            InventoryItem item = new InventoryItem(
-                id, nameField.getText().trim(),
-                ((Number) quantityField.getValue()).intValue(),
-                ((Number) priceField.getValue()).doubleValue()
-            );
-            inventory.add(item);
-            tableModel.fireTableDataChanged();
+        if (!validateInput()) return;
+        InventoryItem item = new InventoryItem(
+            idField.getText().trim(), nameField.getText().trim(),
+            ((Number) quantityField.getValue()).intValue(),
+            ((Number) priceField.getValue()).doubleValue()
+        );
+        Integer reorderAt = reorderPoint();
+        if (saveChange(() -> {
+            service.add(item);
+            if (reorderAt != null) service.setReorderPoint(item.getId(), reorderAt);
+        })) {
             clearForm();
-            saveToFile();
-            checkLowStock(item);
             dateLabel.setText("Date: " + new java.util.Date());
-        } else if (!isUniqueId(id, -1)) {
-            JOptionPane.showMessageDialog(this, "ID already exists", "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
+    // Fills the form from the selected row and remembers what it showed, so an update can tell
+    // whether the item changed elsewhere (another instance, an HTTP adjustment) in the meantime
+    private void showSelected() {
+        int modelRow = table.convertRowIndexToModel(table.getSelectedRow());
+        InventoryItem item = inventory.get(modelRow);
+        formItem = item;
+        idField.setText(item.getId());
+        nameField.setText(item.getName());
+        quantityField.setValue(item.getQuantity());
+        priceField.setValue(item.getPrice());
+        reorderField.setValue(service.reorderPoint(item.getId()));
+    }
+
     private void updateItem() {
         int selectedRow = table.getSelectedRow();
         if (selectedRow >= 0 && validateInput()) {
             int modelRow = table.convertRowIndexToModel(selectedRow);
-            String id = idField.getText().trim();
-            if (isUniqueId(id, modelRow)) {
-                InventoryItem item = inventory.get(modelRow);
-                item.setId(id);
-                item.setName(nameField.getText().trim());
-                item.setQuantity(((Number) quantityField.getValue()).intValue());
-                item.setPrice(((Number) priceField.getValue()).doubleValue());
-                tableModel.fireTableDataChanged();
-                saveToFile();
-                checkLowStock(item);
+            String oldId = inventory.getId(modelRow);
+            InventoryItem expected = formItem != null && formItem.getId().equalsIgnoreCase(oldId) ? formItem : null;
+            InventoryItem item = new InventoryItem(
+                idField.getText().trim(), nameField.getText().trim(),
+                ((Number) quantityField.getValue()).intValue(),
+                ((Number) priceField.getValue()).doubleValue()
+            );
+            Integer reorderAt = reorderPoint();
+            if (saveChange(() -> {
+                service.update(oldId, expected, item);
+                if (!Objects.equals(reorderAt, service.reorderPoint(item.getId()))) {
+                    service.setReorderPoint(item.getId(), reorderAt);
+                }
+            })) {
+                formItem = item;
+                selectModelRow(modelRow);
                 dateLabel.setText("Date: " + new java.util.Date());
-            } else {
-                JOptionPane.showMessageDialog(this, "ID already exists", "Error", JOptionPane.ERROR_MESSAGE);
             }
         } else if (selectedRow < 0) {
             JOptionPane.showMessageDialog(this, "Please select an item to update", "Error", JOptionPane.WARNING_MESSAGE);
@@ -291,16 +505,24 @@ public class InventorySystem extends JFrame {
     }
 
     private void deleteItem() {
-        int selectedRow = table.getSelectedRow();
-        if (selectedRow >= 0) {
+        List<String> ids = selectedIds();
+        if (ids.size() == 1) {
             int confirm = JOptionPane.showConfirmDialog(this,
                 "Are you sure you want to delete this item?", "Confirm Delete",
                 JOptionPane.YES_NO_OPTION);
             if (confirm == JOptionPane.YES_OPTION) {
-                inventory.remove(table.convertRowIndexToModel(selectedRow));
-                tableModel.fireTableDataChanged();
+                if (saveChange(() -> service.delete(ids.get(0)))) {
+                    clearForm();
+                    dateLabel.setText("Date: " + new java.util.Date());
+                }
+            }
+        } else if (ids.size() > 1) {
+            int confirm = JOptionPane.showConfirmDialog(this,
+                "Are you sure you want to delete these " + ids.size() + " items?", "Confirm Delete",
+                JOptionPane.YES_NO_OPTION);
+            if (confirm == JOptionPane.YES_OPTION && saveChange(() -> service.deleteAll(ids))) {
                 clearForm();
-                saveToFile();
+                statusLabel.setText("Deleted " + ids.size() + " items");
                 dateLabel.setText("Date: " + new java.util.Date());
             }
         } else {
@@ -308,12 +530,87 @@ public class InventorySystem extends JFrame {
         }
     }
 
+    private void bulkEditItems() {
+        List<String> ids = selectedIds();
+        if (ids.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please select the items to edit", "Error", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        JRadioButton setPrice = new JRadioButton("Set price (₱)", true);
+        JRadioButton addQuantity = new JRadioButton("Add to quantity (negative to remove)");
+        JRadioButton scaleQuantity = new JRadioButton("Change quantity by percent");
+        ButtonGroup choices = new ButtonGroup();
+        choices.add(setPrice);
+        choices.add(addQuantity);
+        choices.add(scaleQuantity);
+        JTextField amountField = new JTextField(10);
+        JPanel panel = new JPanel(new GridLayout(0, 1));
+        panel.add(setPrice);
+        panel.add(addQuantity);
+        panel.add(scaleQuantity);
+        panel.add(amountField);
+        if (JOptionPane.showConfirmDialog(this, panel, "Bulk Edit " + ids.size() + " Items",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        java.util.function.UnaryOperator<InventoryItem> edit;
+        try {
+            String amount = amountField.getText().trim().replace("₱", "").replace(",", "");
+            if (setPrice.isSelected()) {
+                edit = InventoryService.setPrice(Double.parseDouble(amount));
+            } else if (addQuantity.isSelected()) {
+                edit = InventoryService.adjustQuantityBy(Integer.parseInt(amount));
+            } else {
+                edit = InventoryService.adjustQuantityByPercent(Double.parseDouble(amount.replace("%", "")));
+            }
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Please enter a valid number", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        int[] modelRows = Arrays.stream(table.getSelectedRows()).map(table::convertRowIndexToModel).toArray();
+        if (saveChange(() -> service.updateAll(ids, edit))) {
+            // Edits don't move rows; restore the selection the table event cleared
+            ListSelectionModel selection = table.getSelectionModel();
+            selection.setValueIsAdjusting(true);
+            for (int modelRow : modelRows) {
+                int viewRow = table.convertRowIndexToView(modelRow);
+                if (viewRow >= 0) selection.addSelectionInterval(viewRow, viewRow);
+            }
+            selection.setValueIsAdjusting(false);
+            statusLabel.setText("Updated " + ids.size() + " items");
+            dateLabel.setText("Date: " + new java.util.Date());
+        }
+    }
+
+    private List<String> selectedIds() {
+        int[] viewRows = table.getSelectedRows();
+        List<String> ids = new ArrayList<>(viewRows.length);
+        for (int viewRow : viewRows) ids.add(inventory.getId(table.convertRowIndexToModel(viewRow)));
+        return ids;
+    }
+
+    private void selectModelRow(int modelRow) {
+        int viewRow = table.convertRowIndexToView(modelRow);
+        if (viewRow >= 0) {
+            table.setRowSelectionInterval(viewRow, viewRow);
+            table.scrollRectToVisible(table.getCellRect(viewRow, 0, true));
+        }
+    }
+
     private void clearForm() {
         idField.setText("");
         nameField.setText("");
         quantityField.setValue(null);
         priceField.setValue(null);
+        reorderField.setValue(null);
         table.clearSelection();
+        formItem = null;
+    }
+
+    private Integer reorderPoint() {
+        Number value = (Number) reorderField.getValue();
+        return value != null ? value.intValue() : null;
     }
 
     private boolean validateInput() {
@@ -337,95 +634,373 @@ public class InventorySystem extends JFrame {
         }
     }
 
-    private void saveToFile() {
-        try (PrintWriter writer = new PrintWriter("inventory.csv")) {
-            for (InventoryItem item : inventory) {
-                writer.println(String.format("%s,%s,%d,%.2f",
-                    item.getId(), item.getName().replace(",", ""),
-                    item.getQuantity(), item.getPrice()));
-            }
+    private interface ServiceChange {
+        void run() throws IOException;
+    }
+
+    // Runs a service write, reporting rejected input or a failed save; true on success
+    private boolean saveChange(ServiceChange change) {
+        try {
+            change.run();
+            return true;
+        } catch (IllegalArgumentException | NoSuchElementException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        } catch (ConcurrentModificationException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage() + ".\nThe form now shows the current values; "
+                + "make your change again and save.", "Changed Elsewhere", JOptionPane.WARNING_MESSAGE);
+            if (table.getSelectedRow() >= 0) showSelected();
+        } catch (IOException | UncheckedIOException e) {
+            JOptionPane.showMessageDialog(this, "Error saving data: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+        return false;
+    }
+
+    private void closeService() {
+        try {
+            service.close();
         } catch (IOException e) {
             JOptionPane.showMessageDialog(this, "Error saving data: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
     private void loadFromFile() {
-        File file = new File("inventory.csv");
-        if (!file.exists()) return;
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",", -1);
-                if (parts.length == 4) {
-                    try {
-                        inventory.add(new InventoryItem(
-                            parts[0], parts[1],
-                            Integer.parseInt(parts[2]), Double.parseDouble(parts[3])
-                        ));
-                    } catch (NumberFormatException e) {
-                        System.err.println("Skipping invalid line: " + line);
-                    }
-                }
-            }
-            tableModel.fireTableDataChanged();
+        long totalBytes;
+        try {
+            service.open();
+            totalBytes = service.savedSize();
         } catch (IOException e) {
             JOptionPane.showMessageDialog(this, "Error loading data: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
         }
+        startWorker("Loading", totalBytes, service::loadSaved, null, "Error loading data: ");
     }
 
+    // Exports in the background, either the rows the table shows (filtered and in sort order)
+    // or the whole inventory; a name ending in .gz is gzipped
     private void exportToCsv() {
-        JFileChooser fileChooser = new JFileChooser();
-        fileChooser.setSelectedFile(new File("inventory_export.csv"));
-        if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-            try (PrintWriter writer = new PrintWriter(fileChooser.getSelectedFile())) {
-                writer.println("ID,Name,Quantity,Price,Total Value");
-                for (InventoryItem item : inventory) {
-                    writer.println(String.format("%s,%s,%d,%.2f,%.2f",
-                        item.getId(), item.getName().replace(",", ""),
-                        item.getQuantity(), item.getPrice(), item.getQuantity() * item.getPrice()));
-                }
-                JOptionPane.showMessageDialog(this, "Export successful!");
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(this, "Export failed: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        if (activeWorker != null) return;
+        int[] rows = null;
+        if (table.getRowCount() != inventory.size() || !sorter.getSortKeys().isEmpty()) {
+            Object[] choices = {"Rows Shown (" + table.getRowCount() + ")", "All Items (" + inventory.size() + ")", "Cancel"};
+            int choice = JOptionPane.showOptionDialog(this, "Export the rows shown, in their current order, or all items?",
+                "Export", JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, choices, choices[0]);
+            if (choice == 2 || choice == JOptionPane.CLOSED_OPTION) return;
+            if (choice == 0) {
+                rows = new int[table.getRowCount()];
+                for (int viewRow = 0; viewRow < rows.length; viewRow++) rows[viewRow] = table.convertRowIndexToModel(viewRow);
             }
         }
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setSelectedFile(new File("inventory_export.csv"));
+        fileChooser.setToolTipText("Name the file .csv.gz to compress it");
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        java.nio.file.Path file = fileChooser.getSelectedFile().toPath();
+        int[] exported = rows;
+        startWorker("Exporting", rows != null ? rows.length : inventory.size(),
+            rowsWritten -> service.exportCsv(exported, file, CsvExporter.isGzipName(file), rowsWritten),
+            () -> "Export successful!", "Export failed: ");
     }
 
+    // Merges by default: new IDs are added and changed rows updated, optionally deleting items
+    // the file doesn't list. Replace All is the old clear-and-load.
     private void importFromCsv() {
+        if (activeWorker != null) return;
         JFileChooser fileChooser = new JFileChooser();
-        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
-            File file = fileChooser.getSelectedFile();
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                inventory.clear();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    String[] parts = line.split(",", -1);
-                    if (parts.length >= 4) {
-                        try {
-                            inventory.add(new InventoryItem(
-                                parts[0], parts[1],
-                                Integer.parseInt(parts[2]),
-                                Double.parseDouble(parts[3])
-                            ));
-                        } catch (NumberFormatException e) {
-                            System.err.println("Skipping invalid line: " + line);
-                        }
-                    }
-                }
-                tableModel.fireTableDataChanged();
-                JOptionPane.showMessageDialog(this, "Import successful!");
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(this, "Import failed: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = fileChooser.getSelectedFile();
+        if (!file.canRead()) {
+            JOptionPane.showMessageDialog(this, "Import failed: cannot read " + file, "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        JCheckBox deleteMissing = new JCheckBox("Delete items not in the file");
+        Object[] message = {"Merge " + file.getName() + " into the inventory, or replace the inventory with it?", deleteMissing};
+        Object[] choices = {"Merge", "Replace All", "Cancel"};
+        int choice = JOptionPane.showOptionDialog(this, message, "Import", JOptionPane.DEFAULT_OPTION,
+            JOptionPane.QUESTION_MESSAGE, null, choices, choices[0]);
+        if (choice == 0) {
+            boolean delete = deleteMissing.isSelected();
+            InventoryService.MergeResult[] result = new InventoryService.MergeResult[1];
+            startWorker("Merging", file.length(), bytesRead -> result[0] = service.mergeCsv(file.toPath(), delete, bytesRead),
+                () -> "Merge successful: " + result[0], "Import failed: ");
+        } else if (choice == 1) {
+            long[] rejected = new long[1];
+            startWorker("Importing", file.length(), bytesRead -> rejected[0] = service.importCsv(file.toPath(), bytesRead),
+                () -> "Import successful!" + (rejected[0] > 0 ? " " + rejected[0] + " rows rejected." : ""), "Import failed: ");
+        }
+    }
+
+    // Background work that reports progress as an amount done out of the worker's total
+    // (bytes read for loads and imports, rows written for exports)
+    private interface BackgroundTask {
+        void run(LongConsumer done) throws IOException;
+    }
+
+    private void startWorker(String action, long total, BackgroundTask task, Supplier<String> successMessage, String errorPrefix) {
+        activeWorker = new LoadWorker(action, total, task, successMessage, errorPrefix);
+        importButton.setEnabled(false);
+        exportButton.setEnabled(false);
+        statusLabel.setText(action + "...");
+        progressBar.setValue(0);
+        progressBar.setVisible(true);
+        cancelButton.setVisible(true);
+        LoadWorker worker = activeWorker;
+        activeWorker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName()) && activeWorker == worker) {
+                progressBar.setValue((Integer) e.getNewValue());
+                statusLabel.setText(action + "... " + inventory.size() + " items");
             }
+        });
+        activeWorker.execute();
+    }
+
+    // Streams rows on a background thread; for loads the service hands each chunk to the EDT and
+    // waits, so the table fills in as it goes and the reader never gets far ahead of the UI
+    private class LoadWorker extends SwingWorker<Void, Void> {
+        private final String action;
+        private final long total;
+        private final BackgroundTask task;
+        private final Supplier<String> successMessage;
+        private final String errorPrefix;
+
+        LoadWorker(String action, long total, BackgroundTask task, Supplier<String> successMessage, String errorPrefix) {
+            this.action = action;
+            this.total = Math.max(1, total);
+            this.task = task;
+            this.successMessage = successMessage;
+            this.errorPrefix = errorPrefix;
+        }
+
+        @Override
+        protected Void doInBackground() throws IOException {
+            task.run(done -> setProgress((int) Math.min(100, done * 100 / total)));
+            return null;
+        }
+
+        @Override
+        protected void done() {
+            activeWorker = null;
+            importButton.setEnabled(true);
+            exportButton.setEnabled(true);
+            progressBar.setVisible(false);
+            cancelButton.setVisible(false);
+            try {
+                get();
+                statusLabel.setText(inventory.size() + " items");
+                if (successMessage != null) JOptionPane.showMessageDialog(InventorySystem.this, successMessage.get());
+            } catch (CancellationException e) {
+                statusLabel.setText(action + " cancelled, " + inventory.size() + " items shown");
+            } catch (InterruptedException | ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                statusLabel.setText(inventory.size() + " items");
+                JOptionPane.showMessageDialog(InventorySystem.this, errorPrefix + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    // ---- reorder alerts ----
+
+    // Row events arrive in bursts (imports, adjustments); refresh the alert label and totals once per burst
+    private void scheduleAlerts() {
+        if (!alertTimer.isRunning()) alertTimer.start();
+    }
+
+    private void showAlerts() {
+        int lowStock = service.lowStockCount();
+        lowStockButton.setText(lowStock == 0 ? "Low Stock" : "Low Stock (" + lowStock + ")");
+        if (pendingAlerts > 0) {
+            StringBuilder text = new StringBuilder(new java.text.SimpleDateFormat("HH:mm").format(new java.util.Date()))
+                .append("  ").append(String.join(", ", pendingAlertNames));
+            if (pendingAlerts > pendingAlertNames.size()) text.append(" and ").append(pendingAlerts - pendingAlertNames.size()).append(" more");
+            text.append(pendingAlerts == 1 ? " reached its reorder point" : " reached their reorder points");
+            alertLabel.setText(text.toString());
+            pendingAlerts = 0;
+            pendingAlertNames.clear();
+        }
+        if (lowStockWindow != null && lowStockWindow.isVisible()) lowStockWindow.refresh();
+    }
+
+    private void showTotals() {
+        InventoryService.Totals totals = service.totals();
+        NumberFormat count = NumberFormat.getIntegerInstance();
+        totalsLabel.setText(count.format(totals.items()) + " items   " + count.format(totals.units()) + " units   "
+            + CurrencyRenderer.format(new StringBuilder(), totals.valueCentavos()) + " total value");
+    }
+
+    private void showReports() {
+        if (reportWindow == null) reportWindow = new ReportWindow(this, service);
+        reportWindow.setVisible(true);
+    }
+
+    private void showLowStock() {
+        if (lowStockWindow == null) lowStockWindow = new LowStockWindow(this, service);
+        lowStockWindow.refresh();
+        lowStockWindow.setVisible(true);
+        alertLabel.setText(" ");
+    }
+}
+
+// ======================== LOW STOCK WINDOW ========================
+// Non-modal list of items at or below their reorder point, furthest below first
+class LowStockWindow extends JDialog {
+    private static final int LIMIT = 1000;
+    private final InventoryService service;
+    private final DefaultTableModel model = new DefaultTableModel(new String[] {"ID", "Name", "Quantity", "Reorder At"}, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
         }
+    };
+    private final JLabel countLabel = new JLabel(" ");
+
+    public LowStockWindow(JFrame owner, InventoryService service) {
+        super(owner, "Low Stock", false);
+        this.service = service;
+        setSize(500, 400);
+        setLocationRelativeTo(owner);
+        setLayout(new BorderLayout());
+        add(new JScrollPane(new JTable(model)), BorderLayout.CENTER);
+        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JButton refreshButton = new JButton("Refresh");
+        refreshButton.addActionListener(e -> refresh());
+        bottom.add(refreshButton);
+        bottom.add(countLabel);
+        add(bottom, BorderLayout.SOUTH);
     }
 
-    private void checkLowStock(InventoryItem item) {
-        if (item.getQuantity() <= 5) {
-            JOptionPane.showMessageDialog(this,
-                "Warning: Low stock for " + item.getName() + " (Quantity: " + item.getQuantity() + ")",
-                "Low Stock Alert", JOptionPane.WARNING_MESSAGE);
+    public void refresh() {
+        model.setRowCount(0);
+        for (InventoryItem item : service.lowStock(LIMIT)) {
+            Integer reorderAt = service.reorderPoint(item.getId());
+            model.addRow(new Object[] {item.getId(), item.getName(), item.getQuantity(),
+                reorderAt != null ? reorderAt : service.defaultReorderPoint()});
         }
+        int count = service.lowStockCount();
+        countLabel.setText(count > LIMIT ? "Showing " + LIMIT + " of " + count + " items" : count + " items");
+    }
+}
+
+// ======================== REPORT WINDOW ========================
+// Non-modal window for the fork/join reports; each runs in the background and fills the table
+class ReportWindow extends JDialog {
+    private static final String BY_PREFIX = "By ID prefix", BY_PRICE = "By price band",
+        BY_QUANTITY = "By quantity", TOP_VALUE = "Top items by value";
+    // Price bands in centavos: under ₱10, ₱10-100, ₱100-1,000, ₱1,000-10,000, ₱10,000 and up
+    private static final long[] PRICE_BANDS = {1_000, 10_000, 100_000, 1_000_000};
+    private static final long[] QUANTITY_BANDS = {1, 6, 11, 51, 101, 1001};
+
+    private final InventoryService service;
+    private final JComboBox<String> reportBox = new JComboBox<>(new String[] {BY_PREFIX, BY_PRICE, BY_QUANTITY, TOP_VALUE});
+    private final JSpinner sizeSpinner = new JSpinner(new SpinnerNumberModel(2, 1, 10_000, 1));
+    private final JLabel sizeLabel = new JLabel("Prefix length:");
+    private final JButton runButton = new JButton("Run");
+    private final JLabel timeLabel = new JLabel(" ");
+    private final DefaultTableModel model = new DefaultTableModel() {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+
+    public ReportWindow(JFrame owner, InventoryService service) {
+        super(owner, "Reports", false);
+        this.service = service;
+        setSize(600, 420);
+        setLocationRelativeTo(owner);
+        setLayout(new BorderLayout());
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        top.add(reportBox);
+        top.add(sizeLabel);
+        top.add(sizeSpinner);
+        top.add(runButton);
+        add(top, BorderLayout.NORTH);
+        add(new JScrollPane(new JTable(model)), BorderLayout.CENTER);
+        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        bottom.add(timeLabel);
+        add(bottom, BorderLayout.SOUTH);
+        reportBox.addActionListener(e -> {
+            Object report = reportBox.getSelectedItem();
+            boolean sized = report == BY_PREFIX || report == TOP_VALUE;
+            sizeLabel.setVisible(sized);
+            sizeSpinner.setVisible(sized);
+            sizeLabel.setText(report == TOP_VALUE ? "Items:" : "Prefix length:");
+            sizeSpinner.setValue(report == TOP_VALUE ? 20 : 2);
+        });
+        runButton.addActionListener(e -> run());
+    }
+
+    private void run() {
+        String report = (String) reportBox.getSelectedItem();
+        int size = (Integer) sizeSpinner.getValue();
+        runButton.setEnabled(false);
+        timeLabel.setText("Running...");
+        long started = System.nanoTime();
+        new SwingWorker<Object[][], Void>() {
+            private String[] columns;
+
+            @Override
+            protected Object[][] doInBackground() {
+                if (report.equals(TOP_VALUE)) {
+                    columns = new String[] {"ID", "Name", "Quantity", "Price", "Total Value"};
+                    return service.report(store -> {
+                        int[] rows = InventoryReports.top(store, InventoryReports.Metric.VALUE, size);
+                        Object[][] data = new Object[rows.length][];
+                        for (int i = 0; i < rows.length; i++) {
+                            int row = rows[i];
+                            data[i] = new Object[] {store.getId(row), store.getName(row), store.getQuantity(row),
+                                money(store.getPriceCentavos(row)), money(store.getQuantity(row) * store.getPriceCentavos(row))};
+                        }
+                        return data;
+                    });
+                }
+                columns = new String[] {report.equals(BY_PREFIX) ? "ID Prefix" : report.equals(BY_PRICE) ? "Price" : "Quantity",
+                    "Items", "Units", "Total Value"};
+                if (report.equals(BY_PREFIX)) {
+                    SortedMap<String, InventoryReports.Group> groups = service.report(store -> InventoryReports.byIdPrefix(store, size));
+                    List<Object[]> data = new ArrayList<>();
+                    groups.forEach((prefix, group) -> data.add(row(prefix, group)));
+                    return data.toArray(new Object[0][]);
+                }
+                boolean price = report.equals(BY_PRICE);
+                long[] edges = price ? PRICE_BANDS : QUANTITY_BANDS;
+                InventoryReports.Group[] buckets = service.report(store -> InventoryReports.histogram(store,
+                    price ? InventoryReports.Metric.PRICE : InventoryReports.Metric.QUANTITY, edges));
+                Object[][] data = new Object[buckets.length][];
+                for (int i = 0; i < buckets.length; i++) data[i] = row(band(edges, i, price), buckets[i]);
+                return data;
+            }
+
+            @Override
+            protected void done() {
+                runButton.setEnabled(true);
+                try {
+                    model.setDataVector(get(), columns);
+                    timeLabel.setText(String.format("%d rows in %d ms", model.getRowCount(), (System.nanoTime() - started) / 1_000_000));
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    timeLabel.setText(" ");
+                    JOptionPane.showMessageDialog(ReportWindow.this, "Report failed: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    private static Object[] row(String label, InventoryReports.Group group) {
+        return new Object[] {label, group.items, group.units, money(group.valueCentavos)};
+    }
+
+    // "under 10", "10 - 99" style labels for bucket i of a histogram
+    private static String band(long[] edges, int i, boolean price) {
+        if (i == 0) return "under " + bound(edges[0], price);
+        if (i == edges.length) return bound(edges[i - 1], price) + " and up";
+        return bound(edges[i - 1], price) + " - " + (price ? "under " + bound(edges[i], true) : bound(edges[i] - 1, false));
+    }
+
+    private static String bound(long value, boolean price) {
+        return price ? "₱" + NumberFormat.getIntegerInstance().format(value / 100) : NumberFormat.getIntegerInstance().format(value);
+    }
+
+    private static String money(long centavos) {
+        return CurrencyRenderer.format(new StringBuilder(), centavos);
     }
 }
 
@@ -600,33 +1175,12 @@ class LoginDialog extends JDialog {
     }
 }
 
-class InventoryItem {
-    private String id, name;
-    private int quantity;
-    private double price;
-
-    public InventoryItem(String id, String name, int quantity, double price) {
-        this.id = id;
-        this.name = name;
-        this.quantity = quantity;
-        this.price = price;
-    }
-
-    public String getId() { return id; }
-    public void setId(String id) { this.id = id; }
-    public String getName() { return name; }
-    public void setName(String name) { this.name = name; }
-    public int getQuantity() { return quantity; }
-    public void setQuantity(int quantity) { this.quantity = quantity; }
-    public double getPrice() { return price; }
-    public void setPrice(double price) { this.price = price; }
-}
-
 class InventoryTableModel extends AbstractTableModel {
-    private final List<InventoryItem> inventory;
+    private final InventoryStore inventory;
+    private final Collator collator = Collator.getInstance();
     private final String[] columns = {"ID", "Name", "Quantity", "Price", "Total Value"};
 
-    public InventoryTableModel(List<InventoryItem> inventory) {
+    public InventoryTableModel(InventoryStore inventory) {
         this.inventory = inventory;
     }
 
@@ -634,16 +1188,119 @@ class InventoryTableModel extends AbstractTableModel {
     @Override public int getColumnCount() { return columns.length; }
     @Override public String getColumnName(int column) { return columns[column]; }
 
+    // Price and Total Value are Long centavos, formatted by CurrencyRenderer
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return switch (column) {
+            case 2 -> Integer.class;
+            case 3, 4 -> Long.class;
+            default -> String.class;
+        };
+    }
+
+    // InventoryStore.remove() fills the hole with the last row: report the last row as deleted,
+    // then the hole as updated, so the sorter adjusts both rows without a full rebuild
+    public void fireRowRemoved(int row, int moved) {
+        int last = moved >= 0 ? moved : row;
+        fireTableRowsDeleted(last, last);
+        if (moved >= 0) fireTableRowsUpdated(row, row);
+    }
+
+    public long getTotalCentavos(int row) {
+        return inventory.getQuantity(row) * inventory.getPriceCentavos(row);
+    }
+
     @Override
     public Object getValueAt(int row, int column) {
-        InventoryItem item = inventory.get(row);
         return switch (column) {
-            case 0 -> item.getId();
-            case 1 -> item.getName();
-            case 2 -> item.getQuantity();
-            case 3 -> String.format("₱%.2f", item.getPrice());
-            case 4 -> String.format("₱%.2f", item.getQuantity() * item.getPrice());
+            case 0 -> inventory.getId(row);
+            case 1 -> inventory.getName(row);
+            case 2 -> inventory.getQuantity(row);
+            case 3 -> inventory.getPriceCentavos(row);
+            case 4 -> getTotalCentavos(row);
             default -> null;
         };
     }
+
+    // Orders two model rows by a column, reading the numbers straight from the store
+    public int compare(int column, int row1, int row2) {
+        return switch (column) {
+            case 0 -> collator.compare(inventory.getId(row1), inventory.getId(row2));
+            case 1 -> collator.compare(inventory.getName(row1), inventory.getName(row2));
+            case 2 -> Integer.compare(inventory.getQuantity(row1), inventory.getQuantity(row2));
+            case 3 -> Long.compare(inventory.getPriceCentavos(row1), inventory.getPriceCentavos(row2));
+            case 4 -> Long.compare(getTotalCentavos(row1), getTotalCentavos(row2));
+            default -> 0;
+        };
+    }
+}
+
+// Sorts by model row instead of by cell value: the sorter is handed each row's number and the
+// comparators look the row up, so a comparison boxes nothing. Row numbers are boxed once and
+// kept. Row filters see the row as both identifier and value, and the cell text as string value.
+class InventoryRowSorter extends TableRowSorter<InventoryTableModel> {
+    public InventoryRowSorter(InventoryTableModel model) {
+        super(model);
+        setModelWrapper(new RowWrapper(model));
+        for (int column = 0; column < model.getColumnCount(); column++) {
+            int sorted = column;
+            setComparator(column, (Integer row1, Integer row2) -> model.compare(sorted, row1, row2));
+        }
+    }
+
+    private static class RowWrapper extends ModelWrapper<InventoryTableModel, Integer> {
+        private final InventoryTableModel model;
+        private Integer[] rows = new Integer[0];
+
+        RowWrapper(InventoryTableModel model) {
+            this.model = model;
+        }
+
+        @Override public InventoryTableModel getModel() { return model; }
+        @Override public int getColumnCount() { return model.getColumnCount(); }
+        @Override public int getRowCount() { return model.getRowCount(); }
+        @Override public Object getValueAt(int row, int column) { return getIdentifier(row); }
+
+        @Override
+        public String getStringValueAt(int row, int column) {
+            Object value = model.getValueAt(row, column);
+            return value == null ? "" : value.toString();
+        }
+
+        @Override
+        public Integer getIdentifier(int row) {
+            if (row >= rows.length) rows = Arrays.copyOf(rows, Math.max(row + 1, rows.length * 2));
+            Integer boxed = rows[row];
+            if (boxed == null) rows[row] = boxed = row;
+            return boxed;
+        }
+    }
+}
+
+// Renders centavos as "₱1234.56" using one reused buffer instead of String.format per cell
+class CurrencyRenderer extends DefaultTableCellRenderer {
+    private final StringBuilder text = new StringBuilder(24);
+
+    public CurrencyRenderer() {
+        setHorizontalAlignment(JLabel.RIGHT);
+    }
+
+    @Override
+    protected void setValue(Object value) {
+        if (value instanceof Number number) {
+            setText(format(text, number.longValue()));
+        } else {
+            super.setValue(value);
+        }
+    }
+
+    static String format(StringBuilder text, long centavos) {
+        text.setLength(0);
+        if (centavos < 0) text.append('-');
+        long abs = Math.abs(centavos);
+        long fraction = abs % 100;
+        text.append('₱').append(abs / 100).append('.');
+        if (fraction < 10) text.append('0');
+        return text.append(fraction).toString();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,409 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+// Synthetic traffic against the headless service, for trying a build under a realistic day's load
+// before rolling it out. Generates a catalog, imports it through the normal CSV path into a scratch
+// directory (snapshot, journal and movement history all live), then drives a weighted mix of
+// operations from many threads and prints throughput and latency percentiles per operation.
+//
+//   java -cp target/classes InventoryWorkload [--items N] [--threads N] [--seconds N] [--warmup N]
+//       [--mix lookup=50,search=8,query=2,update=12,adjust=20,add=3,delete=3,import=2]
+//       [--skew S] [--rate OPS] [--import-rows N] [--seed N] [--dir DIR] [--keep]
+//
+// Item popularity is Zipfian with exponent --skew (0.99 by default, as YCSB uses; 0 is uniform),
+// scattered over the catalog so the hot items aren't neighbours. Adds and imports create new IDs
+// and deletes take the oldest added ones first, so the popular items stay put. Without --rate each
+// thread starts its next operation when the last one ends; with it they keep a fixed schedule
+// and latency counts from when each operation was due, so a stall shows up in the percentiles
+// instead of just lowering the offered load. A miss is an operation the inventory turned down
+// (unknown ID, duplicate ID, stock below zero, a concurrent edit), which real traffic has too.
+// -Dinventory.store, -Dinventory.sync and -Dinventory.metrics apply as usual.
+class InventoryWorkload {
+    enum Op { LOOKUP, SEARCH, QUERY, UPDATE, ADJUST, ADD, DELETE, IMPORT }
+
+    private static final Set<String> FLAGS = Set.of("keep");
+    private static final Set<String> OPTIONS = Set.of("items", "threads", "seconds", "warmup", "mix", "skew",
+        "rate", "import-rows", "seed", "dir");
+    private static final String DEFAULT_MIX = "lookup=50,search=8,query=2,update=12,adjust=20,add=3,delete=3,import=2";
+    private static final String[] WORDS = {"Bolt", "Nut", "Washer", "Hinge", "Bracket", "Cable", "Switch", "Valve", "Pipe", "Tape"};
+    private static final Op[] OPS = Op.values();
+
+    private final Map<String, String> options = new HashMap<>();
+    private final int items, threads, importRows;
+    private final long seconds, warmup;
+    private final double skew, rate;
+    private final long seed;
+    private final double[] mix = new double[OPS.length];
+
+    private InventoryService service;
+    private Zipf popularity;
+    private int[] scatter;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final ConcurrentLinkedQueue<String> added = new ConcurrentLinkedQueue<>();
+
+    private final InventoryMetrics.LatencyHistogram[] latencies = new InventoryMetrics.LatencyHistogram[OPS.length];
+    private final InventoryMetrics.LatencyHistogram overall = new InventoryMetrics.LatencyHistogram();
+    private final LongAdder[] misses = new LongAdder[OPS.length];
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong behind = new AtomicLong();
+    private volatile boolean measuring, stopping;
+
+    private InventoryWorkload(String[] argv) {
+        for (int i = 0; i < argv.length; i++) {
+            String arg = argv[i];
+            if (arg.startsWith("--") && FLAGS.contains(arg.substring(2))) {
+                options.put(arg.substring(2), "true");
+            } else if (arg.startsWith("--") && OPTIONS.contains(arg.substring(2)) && i + 1 < argv.length) {
+                options.put(arg.substring(2), argv[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+        items = (int) number("items", 100_000, 1);
+        threads = (int) number("threads", 8, 1);
+        seconds = number("seconds", 30, 1);
+        warmup = number("warmup", 10, 0);
+        importRows = (int) number("import-rows", 500, 1);
+        seed = number("seed", 42, Long.MIN_VALUE);
+        skew = decimal("skew", 0.99);
+        rate = decimal("rate", 0);
+        parseMix(options.getOrDefault("mix", DEFAULT_MIX));
+        for (int i = 0; i < OPS.length; i++) {
+            latencies[i] = new InventoryMetrics.LatencyHistogram();
+            misses[i] = new LongAdder();
+        }
+    }
+
+    public static void main(String[] argv) {
+        System.setProperty("java.awt.headless", "true");
+        int status;
+        try {
+            status = new InventoryWorkload(argv).run();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java InventoryWorkload [--items N] [--threads N] [--seconds N] [--warmup N]"
+                + " [--mix op=weight,...] [--skew S] [--rate OPS] [--import-rows N] [--seed N] [--dir DIR] [--keep]");
+            status = 2;
+        } catch (IOException | UncheckedIOException | InterruptedException e) {
+            System.err.println("Error: " + e.getMessage());
+            status = 1;
+        }
+        System.exit(status);
+    }
+
+    private int run() throws IOException, InterruptedException {
+        boolean temporary = !options.containsKey("dir");
+        Path directory = temporary ? Files.createTempDirectory("inventory-workload") : Paths.get(options.get("dir"));
+        Files.createDirectories(directory);
+        try {
+            open(directory);
+            long started = System.nanoTime();
+            Path catalog = directory.resolve("catalog.csv");
+            writeCatalog(catalog);
+            service.importCsv(catalog, bytes -> { });
+            System.out.printf(Locale.ROOT, "Imported %d items into %s in %d ms%n", service.size(), directory,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            long measured = drive();
+            report(measured);
+            started = System.nanoTime();
+            service.close();
+            System.out.printf(Locale.ROOT, "Closed (journal folded into the snapshot) in %d ms%n",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            return errors.get() > 0 ? 1 : 0;
+        } finally {
+            if (temporary && !options.containsKey("keep")) deleteTree(directory);
+        }
+    }
+
+    // Same files as openDefault(), but in the scratch directory
+    private void open(Path directory) throws IOException {
+        InventoryStore store = InventoryStore.fromProperty();
+        InventoryJournal journal = new InventoryJournal(directory.resolve("inventory.dat").toFile(),
+            directory.resolve("inventory.journal").toFile(), InventoryJournal.policyFromProperty(), false);
+        service = new InventoryService(store, journal, directory.resolve("inventory.reorder").toFile(),
+            new MovementHistory(directory.resolve("inventory.history"), false), !store.isDiskBacked());
+        service.open();
+        popularity = new Zipf(items, skew);
+        Random random = new Random(seed);
+        scatter = new int[items];
+        for (int i = 0; i < items; i++) scatter[i] = i;
+        for (int i = items - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1), swap = scatter[i];
+            scatter[i] = scatter[j];
+            scatter[j] = swap;
+        }
+        nextId.set(items);
+    }
+
+    private void writeCatalog(Path file) throws IOException {
+        Random random = new Random(seed);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+            out.write("ID,Name,Quantity,Price\n");
+            for (int i = 0; i < items; i++) {
+                out.write(id(i) + "," + name(random, i) + "," + random.nextInt(1000) + "," + price(random) + "\n");
+            }
+        }
+    }
+
+    // ---- driving ----
+
+    // Runs the warm-up and measured phases; returns the measured nanoseconds
+    private long drive() throws InterruptedException {
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long threadSeed = seed * 31 + t;
+            Thread worker = new Thread(() -> work(new Random(threadSeed)), "workload-" + (t + 1));
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        System.out.printf(Locale.ROOT, "Running %d threads: %d s warm-up, %d s measured%s%n", threads, warmup, seconds,
+            rate > 0 ? String.format(Locale.ROOT, " at %.0f ops/s", rate) : "");
+        Thread.sleep(TimeUnit.SECONDS.toMillis(warmup));
+        long started = System.nanoTime();
+        measuring = true;
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        measuring = false;
+        long measured = System.nanoTime() - started;
+        stopping = true;
+        for (Thread worker : workers) worker.join();
+        return measured;
+    }
+
+    private void work(Random random) {
+        long interval = rate > 0 ? (long) (threads * 1e9 / rate) : 0;
+        // Spread the threads' schedules over one interval rather than firing together
+        long due = System.nanoTime() + (interval > 0 ? (long) (random.nextDouble() * interval) : 0);
+        while (!stopping) {
+            long started;
+            if (interval > 0) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait); else if (measuring && wait < -interval) behind.incrementAndGet();
+                started = due;
+                due += interval;
+            } else {
+                started = System.nanoTime();
+            }
+            boolean counted = measuring;
+            Op op = pick(random);
+            boolean done = false;
+            try {
+                done = perform(op, random);
+            } catch (NoSuchElementException | IllegalArgumentException | ConcurrentModificationException e) {
+                // Turned down; counted below
+            } catch (IOException | UncheckedIOException | IllegalStateException e) {
+                if (errors.incrementAndGet() == 1) System.err.println(op.name().toLowerCase(Locale.ROOT) + " failed: " + e);
+            }
+            if (counted) {
+                long latency = System.nanoTime() - started;
+                latencies[op.ordinal()].record(latency);
+                overall.record(latency);
+                if (!done) misses[op.ordinal()].increment();
+            }
+        }
+    }
+
+    private Op pick(Random random) {
+        double r = random.nextDouble();
+        for (int i = 0; i < OPS.length - 1; i++) {
+            if (r < mix[i]) return OPS[i];
+            r -= mix[i];
+        }
+        return OPS[OPS.length - 1];
+    }
+
+    // Returns false when the inventory had nothing to act on
+    private boolean perform(Op op, Random random) throws IOException {
+        switch (op) {
+            case LOOKUP -> {
+                return service.get(popular(random)) != null;
+            }
+            case SEARCH -> {
+                String word = WORDS[random.nextInt(WORDS.length)].toLowerCase(Locale.ROOT);
+                String text = switch (random.nextInt(3)) {
+                    case 0 -> word;
+                    case 1 -> word + " " + random.nextInt(997);
+                    default -> "sku-" + random.nextInt(items);
+                };
+                return !service.search(text, 50).isEmpty();
+            }
+            case QUERY -> {
+                String text = random.nextBoolean()
+                    ? "quantity < " + (1 + random.nextInt(20))
+                    : "price between " + random.nextInt(5000) + " and " + (5000 + random.nextInt(5000)) + " and quantity > 900";
+                return !service.query(text, 50).isEmpty();
+            }
+            case UPDATE -> {
+                String id = popular(random);
+                InventoryItem item = service.get(id);
+                if (item == null) return false;
+                service.update(id, item, new InventoryItem(item.getId(), item.getName(), item.getQuantity(), price(random)));
+                return true;
+            }
+            case ADJUST -> {
+                // Sales outnumber deliveries, but deliveries are bigger
+                int delta = random.nextInt(4) == 0 ? 1 + random.nextInt(20) : -1 - random.nextInt(3);
+                service.adjustQuantity(popular(random), delta, true);
+                return true;
+            }
+            case ADD -> {
+                int number = nextId.getAndIncrement();
+                service.add(new InventoryItem(id(number), name(random, number), random.nextInt(1000), price(random)));
+                added.add(id(number));
+                return true;
+            }
+            case DELETE -> {
+                String id = added.poll();
+                service.delete(id != null ? id : id(random.nextInt(items)));
+                return true;
+            }
+            default -> {
+                // A supplier file: mostly price and stock updates to popular items, some new ones.
+                // A merge rejects an ID listed twice, so popular picks are drawn until unseen.
+                StringBuilder csv = new StringBuilder("ID,Name,Quantity,Price\n");
+                Set<Integer> listed = new HashSet<>();
+                for (int i = 0; i < Math.min(importRows, items); i++) {
+                    int number;
+                    if (random.nextInt(10) == 0) {
+                        number = nextId.getAndIncrement();
+                    } else {
+                        do number = scatter[popularity.next(random)]; while (!listed.add(number));
+                    }
+                    csv.append(id(number)).append(',').append(name(random, number)).append(',')
+                        .append(random.nextInt(1000)).append(',').append(price(random)).append('\n');
+                }
+                InventoryService.MergeResult result = service.mergeCsv(
+                    new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)), false, bytes -> { });
+                return result.rejected() == 0;
+            }
+        }
+    }
+
+    private String popular(Random random) {
+        return id(scatter[popularity.next(random)]);
+    }
+
+    private static String id(int number) {
+        return "SKU-" + number;
+    }
+
+    private static String name(Random random, int number) {
+        return WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + (number % 997);
+    }
+
+    // 1.00 to 9999.99, two decimals
+    private static double price(Random random) {
+        return (100 + random.nextInt(999_900)) / 100.0;
+    }
+
+    // ---- reporting ----
+
+    private void report(long measuredNanos) {
+        double elapsed = measuredNanos / 1e9;
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "%nStore %s, sync %s, %d items (now %d), skew %.2f, %d threads, %.1f s measured%n",
+            System.getProperty("inventory.store", "list"), InventoryJournal.policyFromProperty(), items, service.size(),
+            skew, threads, elapsed));
+        out.append(String.format(Locale.ROOT, "%-10s %10s %10s %8s %10s %10s %10s %10s%n",
+            "operation", "count", "ops/s", "misses", "p50 us", "p99 us", "p999 us", "max us"));
+        for (Op op : OPS) {
+            if (mix[op.ordinal()] == 0) continue;
+            line(out, op.name().toLowerCase(Locale.ROOT), latencies[op.ordinal()], misses[op.ordinal()].sum(), elapsed);
+        }
+        long missed = 0;
+        for (LongAdder miss : misses) missed += miss.sum();
+        line(out, "all", overall, missed, elapsed);
+        if (behind.get() > 0) {
+            out.append(String.format(Locale.ROOT, "%d operations started more than one interval late; the rate is above what this setup sustains%n", behind.get()));
+        }
+        if (errors.get() > 0) out.append(errors.get()).append(" operations failed with I/O errors\n");
+        System.out.print(out);
+    }
+
+    private static void line(StringBuilder out, String name, InventoryMetrics.LatencyHistogram histogram, long missed, double elapsed) {
+        out.append(String.format(Locale.ROOT, "%-10s %10d %10.0f %8d %10.1f %10.1f %10.1f %10.1f%n", name, histogram.count(),
+            histogram.count() / elapsed, missed, histogram.percentile(0.5) / 1e3, histogram.percentile(0.99) / 1e3,
+            histogram.percentile(0.999) / 1e3, histogram.max() / 1e3));
+    }
+
+    // ---- arguments ----
+
+    private void parseMix(String text) {
+        double total = 0;
+        for (String part : text.split(",")) {
+            String[] pair = part.split("=");
+            Op op;
+            try {
+                op = Op.valueOf(pair[0].trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown operation in --mix: " + pair[0].trim());
+            }
+            double weight;
+            try {
+                weight = pair.length == 2 ? Double.parseDouble(pair[1].trim()) : -1;
+            } catch (NumberFormatException e) {
+                weight = -1;
+            }
+            if (!(weight >= 0)) throw new IllegalArgumentException("Bad weight in --mix: " + part);
+            mix[op.ordinal()] = weight;
+            total += weight;
+        }
+        if (total <= 0) throw new IllegalArgumentException("--mix has no operations");
+        for (int i = 0; i < mix.length; i++) mix[i] /= total;
+    }
+
+    private long number(String name, long defaultValue, long min) {
+        String value = options.get(name);
+        if (value == null) return defaultValue;
+        try {
+            long parsed = Long.parseLong(value.trim());
+            if (parsed >= min) return parsed;
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Bad --" + name + ": " + value);
+    }
+
+    private double decimal(String name, double defaultValue) {
+        String value = options.get(name);
+        if (value == null) return defaultValue;
+        try {
+            double parsed = Double.parseDouble(value.trim());
+            if (parsed >= 0 && !Double.isInfinite(parsed)) return parsed;
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Bad --" + name + ": " + value);
+    }
+
+    private static void deleteTree(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(path);
+        }
+    }
+
+    // Rank k (from 0) with probability proportional to 1 / (k + 1)^skew, by binary search over the
+    // cumulative weights
+    static final class Zipf {
+        private final double[] cumulative;
+
+        Zipf(int n, double skew) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int k = 0; k < n; k++) cumulative[k] = sum += Math.pow(k + 1, -skew);
+        }
+
+        int next(Random random) {
+            int i = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+            return Math.min(i >= 0 ? i : -i - 1, cumulative.length - 1);
+        }
+    }
+}
@@ -0,0 +1,664 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.LongSupplier;
+
+// Append-only history of stock movements: every add, edit, adjustment and delete becomes one
+// fixed 37-byte event (time, item number, kind, quantity change, quantity and price after,
+// position of the item's previous event). Item numbers map to IDs through an append-only
+// dictionary file, so an ID is written once rather than with every event.
+//
+// Events go to segment files named by the position of their first byte. A full segment is
+// sealed and a background task writes a small index next to it: per item and day, the inflow,
+// outflow, event count and position of the last event. Opening loads those indexes and scans
+// only the unsealed segment, so startup doesn't grow with the length of the history.
+//
+// In memory each item keeps its days with movements in order, with the same four numbers, so
+// flows over a date range come straight from the index, and an item's events in a time range
+// are found by jumping to the last one in range and following the previous-event positions
+// back. Neither reads anything but the events asked for, however long the log is. Memory is
+// about 40 bytes per item per day on which it moved, plus about 50 per item.
+//
+// Writes are buffered and flushed every second, when a segment fills and on close; losing the
+// last second in a crash only loses history, never stock. In shared mode every call must be
+// made under the journal's commit lock, which is what keeps instances from interleaving their
+// appends; catchUp() reads what others appended before this instance appends.
+// Old segments may be archived or deleted from the front; history just ends where they did.
+class MovementHistory implements Closeable {
+    enum Kind { ADD, UPDATE, ADJUST, DELETE, RENAME }
+
+    // One event; change is the signed quantity change, quantity and price are the values after it
+    record Movement(long time, String id, Kind kind, int change, int quantity, long priceCentavos) {}
+
+    // Stock in and out of one item on one day
+    record Flow(LocalDate day, long inflow, long outflow, int movements) {}
+
+    static final int EVENT_BYTES = 37;
+    private static final int INDEX_MAGIC = 0x4D564958;  // "MVIX"
+    private static final int INDEX_HEADER = 16, INDEX_ENTRY = 36;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int WALK_BLOCK = 8 * 1024;
+    private static final long FLUSH_INTERVAL_MS = 1000;
+    private static final Kind[] KINDS = Kind.values();
+    private static final long TIME_LIMIT = 1_000_000_000_000_000L;
+
+    private final Path directory;
+    private final Path namesFile;
+    private final boolean shared;
+    private final long segmentBytes;
+    private final LongSupplier clock;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Item numbers: ids holds the first spelling seen, and table is an open-addressing hash by
+    // case-insensitive ID, like the store's keys, of (hash << 32 | number + 1)
+    private final List<String> ids = new ArrayList<>();
+    private long[] table = new long[2048];
+    private long namesLength;
+
+    // Per item number, the position of its latest event (which its next event points back to),
+    // the number of days, then its days with movements in ascending order, four longs each:
+    // (epoch day << 32 | event count), inflow, outflow, position of the day's last event. One
+    // array per item with room to grow, so recording an event touches little memory besides
+    // the table slot and the ID.
+    private long[][] buckets = new long[1024][];
+
+    // Sealed segments by base position; the active one starts at base
+    private final NavigableMap<Long, Path> segments = new TreeMap<>();
+    private long base;
+    private long segmentLength;
+    private FileChannel channel;
+    private FileChannel namesChannel;
+    private final ByteBuffer events = ByteBuffer.allocate(BUFFER_SIZE);
+    private final ByteArrayOutputStream nameBytes = new ByteArrayOutputStream();
+    private final DataOutputStream nameOut = new DataOutputStream(nameBytes);
+    private boolean failed;
+    private ScheduledExecutorService background;
+
+    // {start, end, epoch day} of the last day looked up, so the zone rules are consulted once a day
+    private volatile long[] lastDay = {0, 0, 0};
+
+    public MovementHistory(Path directory, boolean shared) {
+        this(directory, shared, 16L << 20, System::currentTimeMillis);
+    }
+
+    MovementHistory(Path directory, boolean shared, long segmentBytes, LongSupplier clock) {
+        this.directory = directory;
+        this.namesFile = directory.resolve("items");
+        this.shared = shared;
+        this.segmentBytes = Math.max(EVENT_BYTES, segmentBytes - segmentBytes % EVENT_BYTES);
+        this.clock = clock;
+    }
+
+    // -Dinventory.history (directory, default inventory.history) and -Dinventory.history.segmentMB (default 16)
+    public static MovementHistory fromProperties(boolean shared) {
+        return new MovementHistory(Paths.get(System.getProperty("inventory.history", "inventory.history")), shared,
+            Long.getLong("inventory.history.segmentMB", 16) << 20, System::currentTimeMillis);
+    }
+
+    // Loads the dictionary and segment indexes without writing anything. Call catchUp() next,
+    // under the commit lock in shared mode, before recording.
+    public synchronized void open() throws IOException {
+        if (background != null) return;
+        Files.createDirectories(directory);
+        background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "inventory-history");
+            t.setDaemon(true);
+            return t;
+        });
+        readNames(false);
+        List<Long> bases = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.events")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    bases.add(Long.parseLong(name.substring(0, name.length() - ".events".length())));
+                } catch (NumberFormatException e) {
+                    // Not ours
+                }
+            }
+        }
+        Collections.sort(bases);
+        for (int i = 0; i + 1 < bases.size(); i++) {
+            long sealed = bases.get(i);
+            Path file = segmentFile(sealed);
+            segments.put(sealed, file);
+            long length = Files.size(file);
+            if (!readIndex(sealed, length)) {
+                scan(file, sealed, 0, length);
+                writeIndexLater(sealed, length);
+            }
+        }
+        base = bases.isEmpty() ? 0 : bases.get(bases.size() - 1);
+        segmentLength = 0;
+        advance(false);
+        if (!shared) {
+            background.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Reads events other instances appended since this one last looked, cuts off a crashed
+    // writer's torn tail and gets ready to append. Does nothing before open(), and in
+    // single-instance mode only the first call after it does anything.
+    public synchronized void catchUp() throws IOException {
+        if (background == null || (channel != null && !shared)) return;
+        if (channel != null) flush();
+        readNames(true);
+        long before = base;
+        advance(true);
+        if (channel == null || base != before) {
+            if (channel != null) channel.close();
+            channel = FileChannel.open(segmentFile(base), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        if (namesChannel == null) {
+            namesChannel = FileChannel.open(namesFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+
+    // Shared mode: pushes this commit's events to the files before the commit lock is released
+    public synchronized void commit() {
+        if (shared) flushQuietly();
+    }
+
+    // Appends one event stamped now. Never throws: history is secondary to the inventory, so a
+    // write failure is reported once and recording stops until restart.
+    public synchronized void record(String id, Kind kind, int change, int quantity, long priceCentavos) {
+        if (failed || channel == null) return;
+        try {
+            if (segmentLength + EVENT_BYTES > segmentBytes) roll();
+            if (events.remaining() < EVENT_BYTES) flush();
+            long time = clock.getAsLong();
+            int number = number(id);
+            long position = base + segmentLength;
+            events.putLong(time).putInt(number).put((byte) kind.ordinal()).putInt(change).putInt(quantity)
+                .putLong(priceCentavos).putLong(buckets[number][0]);
+            segmentLength += EVENT_BYTES;
+            add(number, dayOf(time), 1, change > 0 ? change : 0, change < 0 ? -change : 0, position);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    // ---- queries ----
+
+    // The item's events with from <= time <= to, oldest first
+    public List<Movement> movements(String id, long from, long to) throws IOException {
+        long position, activeBase;
+        int remaining;
+        String storedId;
+        NavigableMap<Long, Path> sealed;
+        int fromDay = dayOf(from), toDay = dayOf(to);
+        synchronized (this) {
+            int number = find(id);
+            if (number < 0 || from > to) return List.of();
+            long[] days = buckets[number];
+            int first = firstAtOrAfter(days, fromDay), last = firstAtOrAfter(days, toDay + 1) - 1;
+            if (first > last) return List.of();
+            position = -1;
+            remaining = 0;
+            for (int i = first; i <= last; i++) {
+                position = Math.max(position, days[at(i) + 3]);
+                remaining += (int) days[at(i)];
+            }
+            storedId = ids.get(number);
+            if (!failed && position >= base + segmentLength - events.position()) flush();
+            // Segments are sealed and rolled by writers meanwhile; the walk only goes back from position
+            activeBase = base;
+            sealed = new TreeMap<>(segments.headMap(position, true));
+        }
+        // Everything up to position is on disk and never changes, so the walk needs no lock.
+        // Events are chained in the order they were written, so it stops after the last event
+        // in the range rather than at the first older timestamp, in case the clock went back.
+        // A busy item's events sit close together, so each read takes the block ending at the
+        // event and the next few steps back are usually already in it.
+        List<Movement> found = new ArrayList<>();
+        Map<Long, FileChannel> open = new HashMap<>();
+        ByteBuffer window = ByteBuffer.allocate(WALK_BLOCK);
+        long windowStart = 0, windowEnd = 0;
+        try {
+            while (position >= 0 && remaining > 0) {
+                if (position < windowStart || position + EVENT_BYTES > windowEnd) {
+                    Map.Entry<Long, Path> segment = segmentAt(position, activeBase, sealed);
+                    if (segment == null) break;
+                    FileChannel in = open.get(segment.getKey());
+                    if (in == null) {
+                        if (!Files.exists(segment.getValue())) break;
+                        in = FileChannel.open(segment.getValue(), StandardOpenOption.READ);
+                        open.put(segment.getKey(), in);
+                    }
+                    windowEnd = position + EVENT_BYTES;
+                    windowStart = Math.max(segment.getKey(), windowEnd - WALK_BLOCK);
+                    window.clear().limit((int) (windowEnd - windowStart));
+                    while (window.hasRemaining() && in.read(window, windowStart - segment.getKey() + window.position()) > 0) { }
+                    if (window.hasRemaining()) break;
+                }
+                int at = (int) (position - windowStart);
+                long time = window.getLong(at);
+                int kind = window.get(at + 12);
+                if (kind < 0 || kind >= KINDS.length) break;
+                int change = window.getInt(at + 13), quantity = window.getInt(at + 17);
+                long price = window.getLong(at + 21);
+                position = window.getLong(at + 29);
+                int eventDay = dayOf(time);
+                if (eventDay < fromDay || eventDay > toDay) continue;
+                remaining--;
+                if (time >= from && time <= to) found.add(new Movement(time, storedId, KINDS[kind], change, quantity, price));
+            }
+        } finally {
+            for (FileChannel in : open.values()) in.close();
+        }
+        Collections.reverse(found);
+        return found;
+    }
+
+    // The item's flows on each day from..to with any movement, oldest first
+    public synchronized List<Flow> flows(String id, LocalDate from, LocalDate to) {
+        int number = find(id);
+        return number < 0 ? List.of() : flows(buckets[number], (int) from.toEpochDay(), (int) to.toEpochDay());
+    }
+
+    // Every item that moved from..to, by ID, with its daily flows
+    public synchronized SortedMap<String, List<Flow>> flows(LocalDate from, LocalDate to) {
+        SortedMap<String, List<Flow>> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int number = 0; number < ids.size(); number++) {
+            List<Flow> flows = flows(buckets[number], (int) from.toEpochDay(), (int) to.toEpochDay());
+            if (!flows.isEmpty()) result.put(ids.get(number), flows);
+        }
+        return result;
+    }
+
+    public synchronized long size() {
+        long size = segmentLength;
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            Long next = segments.higherKey(segment.getKey());
+            size += (next != null ? next : base) - segment.getKey();
+        }
+        return size / EVENT_BYTES;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (background == null) return;
+            background.shutdown();
+            try {
+                if (channel != null && !failed) {
+                    flush();
+                    channel.force(false);
+                    namesChannel.force(false);
+                }
+            } finally {
+                if (channel != null) channel.close();
+                if (namesChannel != null) namesChannel.close();
+                channel = null;
+                namesChannel = null;
+            }
+        }
+        // Let a segment index being written finish; an unfinished one is rebuilt on the next open
+        try {
+            background.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---- writing ----
+
+    private int number(String id) throws IOException {
+        int number = find(id);
+        if (number >= 0) return number;
+        nameOut.writeUTF(id);
+        namesLength += 2 + utfLength(id);
+        if (nameBytes.size() >= BUFFER_SIZE) flushNames();
+        return define(id);
+    }
+
+    // ---- dictionary and index ----
+
+    private int find(String id) {
+        int hash = keyHash(id), mask = table.length - 1;
+        for (int slot = slot(hash); table[slot] != 0; slot = (slot + 1) & mask) {
+            if ((int) (table[slot] >>> 32) != hash) continue;
+            int number = (int) table[slot] - 1;
+            if (sameKey(ids.get(number), id)) return number;
+        }
+        return -1;
+    }
+
+    // InventoryStore.key(id).hashCode() without building the key when the ID is plain ASCII
+    private static int keyHash(String id) {
+        int hash = 0;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c >= 0x80) return InventoryStore.key(id).hashCode();
+            hash = 31 * hash + (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c);
+        }
+        return hash;
+    }
+
+    // Whether InventoryStore.key() would make the same key of both; usually they are spelled alike
+    private static boolean sameKey(String a, String b) {
+        if (a.equals(b)) return true;
+        if (a.length() == b.length() && a.equalsIgnoreCase(b)) {
+            boolean ascii = true;
+            for (int i = 0; i < a.length() && ascii; i++) ascii = a.charAt(i) < 0x80;
+            if (ascii) return true;
+        }
+        return InventoryStore.key(a).equals(InventoryStore.key(b));
+    }
+
+    private int define(String id) {
+        int number = ids.size();
+        if (number == buckets.length) buckets = Arrays.copyOf(buckets, number * 2);
+        ids.add(id);
+        buckets[number] = new long[] {-1, 0};
+        if (2 * ids.size() > table.length) {
+            long[] old = table;
+            table = new long[old.length * 2];
+            for (long entry : old) {
+                if (entry != 0) insertSlot(entry);
+            }
+        }
+        insertSlot((long) keyHash(id) << 32 | (number + 1));
+        return number;
+    }
+
+    private void insertSlot(long entry) {
+        int mask = table.length - 1, slot = slot((int) (entry >>> 32));
+        while (table[slot] != 0) slot = (slot + 1) & mask;
+        table[slot] = entry;
+    }
+
+    // Fibonacci hashing: the top bits of the product, as many as the table needs
+    private int slot(int hash) {
+        return (hash * 0x9E3779B9) >>> Integer.numberOfLeadingZeros(table.length - 1);
+    }
+
+    // Adds events to the item's bucket for the day, creating it in order if it's new.
+    // Days almost always arrive ascending, so that is the fast path.
+    private void add(int number, int day, int count, long inflow, long outflow, long lastPosition) {
+        long[] days = buckets[number];
+        int n = (int) days[1];
+        int i = n > 0 && (int) (days[at(n - 1)] >> 32) == day ? n - 1 : firstAtOrAfter(days, day);
+        if (i == n || (int) (days[at(i)] >> 32) != day) {
+            // A quarter more room each time keeps growth linear without much slack
+            if (at(n + 1) > days.length) buckets[number] = days = Arrays.copyOf(days, at(n + 1 + n / 4));
+            System.arraycopy(days, at(i), days, at(i + 1), at(n) - at(i));
+            days[at(i)] = (long) day << 32;
+            days[at(i) + 1] = 0;
+            days[at(i) + 2] = 0;
+            days[at(i) + 3] = -1;
+            days[1] = n + 1;
+        }
+        days[at(i)] += count;
+        days[at(i) + 1] += inflow;
+        days[at(i) + 2] += outflow;
+        days[at(i) + 3] = Math.max(days[at(i) + 3], lastPosition);
+        days[0] = Math.max(days[0], lastPosition);
+    }
+
+    // Where the i-th day starts in an item's array
+    private static int at(int i) {
+        return 2 + 4 * i;
+    }
+
+    private static int firstAtOrAfter(long[] days, int day) {
+        int low = 0, high = (int) days[1];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if ((int) (days[at(middle)] >> 32) < day) low = middle + 1; else high = middle;
+        }
+        return low;
+    }
+
+    private static List<Flow> flows(long[] days, int fromDay, int toDay) {
+        List<Flow> flows = new ArrayList<>();
+        for (int i = firstAtOrAfter(days, fromDay); i < days[1] && (int) (days[at(i)] >> 32) <= toDay; i++) {
+            flows.add(new Flow(LocalDate.ofEpochDay(days[at(i)] >> 32), days[at(i) + 1], days[at(i) + 2], (int) days[at(i)]));
+        }
+        return flows;
+    }
+
+    // Names first, so an event never reaches disk before the name it refers to
+    private void flush() throws IOException {
+        flushNames();
+        if (events.position() == 0) return;
+        events.flip();
+        while (events.hasRemaining()) channel.write(events);
+        events.clear();
+    }
+
+    private void flushNames() throws IOException {
+        if (nameBytes.size() == 0) return;
+        ByteBuffer names = ByteBuffer.wrap(nameBytes.toByteArray());
+        while (names.hasRemaining()) namesChannel.write(names);
+        nameBytes.reset();
+    }
+
+    private synchronized void flushQuietly() {
+        if (failed || channel == null) return;
+        try {
+            flush();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        failed = true;
+        System.err.println("Movement history write failed, not recording until restart: " + e.getMessage());
+    }
+
+    private void roll() throws IOException {
+        flush();
+        channel.force(false);
+        channel.close();
+        segments.put(base, segmentFile(base));
+        writeIndexLater(base, segmentLength);
+        base += segmentLength;
+        segmentLength = 0;
+        channel = FileChannel.open(segmentFile(base), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // ---- reading ----
+
+    // Indexes the active segment from segmentLength on, following rolls made by other instances.
+    // truncate cuts off a torn tail, which only a crashed writer leaves under the commit lock.
+    private void advance(boolean truncate) throws IOException {
+        while (true) {
+            Path file = segmentFile(base);
+            long size = Files.exists(file) ? Files.size(file) : 0;
+            long complete = size - size % EVENT_BYTES;
+            if (complete > segmentLength) {
+                scan(file, base, segmentLength, complete);
+                segmentLength = complete;
+            }
+            Path next = segmentFile(base + segmentLength);
+            if (segmentLength > 0 && Files.exists(next)) {
+                segments.put(base, file);
+                base += segmentLength;
+                segmentLength = 0;
+                continue;
+            }
+            if (truncate && complete < size) {
+                try (FileChannel cut = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    cut.truncate(complete);
+                }
+            }
+            return;
+        }
+    }
+
+    // Adds the events in [from, to) of a segment to the index
+    private void scan(Path file, long segmentBase, long from, long to) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(EVENT_BYTES * 28_000);
+            long offset = from;
+            while (offset < to) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), to - offset));
+                while (buffer.hasRemaining() && in.read(buffer, offset + buffer.position()) > 0) { }
+                buffer.flip();
+                int events = buffer.remaining() / EVENT_BYTES;
+                if (events == 0) break;
+                for (int i = 0; i < events; i++, offset += EVENT_BYTES) {
+                    int at = i * EVENT_BYTES;
+                    long time = buffer.getLong(at);
+                    int number = buffer.getInt(at + 8);
+                    int change = buffer.getInt(at + 13);
+                    // An event whose name was lost in a crash can't be looked up; skip it
+                    if (number >= 0 && number < ids.size()) {
+                        add(number, dayOf(time), 1, change > 0 ? change : 0, change < 0 ? -change : 0, segmentBase + offset);
+                    }
+                }
+            }
+        }
+    }
+
+    // Reads dictionary entries past namesLength; truncate cuts off a torn last entry
+    private void readNames(boolean truncate) throws IOException {
+        if (!Files.exists(namesFile)) return;
+        long size = Files.size(namesFile);
+        if (size <= namesLength) return;
+        byte[] bytes = new byte[(int) (size - namesLength)];
+        try (FileChannel in = FileChannel.open(namesFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining() && in.read(buffer, namesLength + buffer.position()) > 0) { }
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        int read = 0;
+        while (read + 2 <= bytes.length) {
+            int length = ((bytes[read] & 0xFF) << 8) | (bytes[read + 1] & 0xFF);
+            if (read + 2 + length > bytes.length) break;
+            define(in.readUTF());
+            read += 2 + length;
+        }
+        namesLength += read;
+        if (truncate && namesLength < size) {
+            try (FileChannel cut = FileChannel.open(namesFile, StandardOpenOption.WRITE)) {
+                cut.truncate(namesLength);
+            }
+        }
+    }
+
+    // Segment index: magic, segment length, entry count, then per (item, day) entry the
+    // item number, epoch day, inflow, outflow, event count and position of the last event
+    private boolean readIndex(long segmentBase, long length) throws IOException {
+        Path file = indexFile(segmentBase);
+        if (!Files.exists(file)) return false;
+        long size = Files.size(file);
+        if (size < INDEX_HEADER || size > INDEX_HEADER + length / EVENT_BYTES * INDEX_ENTRY) return false;
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && in.read(buffer) > 0) { }
+        }
+        buffer.flip();
+        if (buffer.remaining() < INDEX_HEADER || buffer.getInt() != INDEX_MAGIC || buffer.getLong() != length) return false;
+        int entries = buffer.getInt();
+        // Checked before anything is applied, so a damaged file falls back to a scan
+        if (entries < 0 || buffer.remaining() != (long) entries * INDEX_ENTRY) return false;
+        for (int i = 0; i < entries; i++) {
+            int number = buffer.getInt(), day = buffer.getInt();
+            long inflow = buffer.getLong(), outflow = buffer.getLong();
+            int count = buffer.getInt();
+            long last = buffer.getLong();
+            if (number >= 0 && number < ids.size()) add(number, day, count, inflow, outflow, last);
+        }
+        return true;
+    }
+
+    private void writeIndexLater(long segmentBase, long length) {
+        background.execute(() -> {
+            try {
+                writeIndex(segmentBase, length);
+            } catch (IOException e) {
+                System.err.println("Writing the index of history segment " + segmentBase + " failed: " + e.getMessage());
+            }
+        });
+    }
+
+    // Runs on the background thread from the sealed file, which no longer changes. Entries go
+    // out by item and day, so loading them only ever appends to an item's days.
+    private void writeIndex(long segmentBase, long length) throws IOException {
+        Map<Long, long[]> entries = new HashMap<>();
+        try (FileChannel in = FileChannel.open(segmentFile(segmentBase), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(EVENT_BYTES * 28_000);
+            long offset = 0;
+            while (offset < length) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), length - offset));
+                while (buffer.hasRemaining() && in.read(buffer, offset + buffer.position()) > 0) { }
+                buffer.flip();
+                int events = buffer.remaining() / EVENT_BYTES;
+                if (events == 0) break;
+                for (int i = 0; i < events; i++, offset += EVENT_BYTES) {
+                    int at = i * EVENT_BYTES;
+                    int number = buffer.getInt(at + 8), change = buffer.getInt(at + 13);
+                    long key = (long) number << 32 | (dayOf(buffer.getLong(at)) & 0xFFFFFFFFL);
+                    long[] entry = entries.computeIfAbsent(key, k -> new long[4]);
+                    if (change > 0) entry[0] += change; else entry[1] -= change;
+                    entry[2]++;
+                    entry[3] = segmentBase + offset;
+                }
+            }
+        }
+        Path temp = Paths.get(indexFile(segmentBase) + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeLong(length);
+            out.writeInt(entries.size());
+            long[] keys = entries.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            for (long key : keys) {
+                long[] values = entries.get(key);
+                out.writeInt((int) (key >>> 32));
+                out.writeInt((int) key);
+                out.writeLong(values[0]);
+                out.writeLong(values[1]);
+                out.writeInt((int) values[2]);
+                out.writeLong(values[3]);
+            }
+        }
+        Files.move(temp, indexFile(segmentBase), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // The segment holding position, given the active segment's base and the sealed ones
+    private Map.Entry<Long, Path> segmentAt(long position, long activeBase, NavigableMap<Long, Path> sealed) {
+        if (position >= activeBase) return Map.entry(activeBase, segmentFile(activeBase));
+        return sealed.floorEntry(position);
+    }
+
+    private Path segmentFile(long segmentBase) {
+        return directory.resolve(String.format("%020d.events", segmentBase));
+    }
+
+    private Path indexFile(long segmentBase) {
+        return directory.resolve(String.format("%020d.index", segmentBase));
+    }
+
+    // Local epoch day of a timestamp
+    private int dayOf(long time) {
+        // Open-ended queries pass Long.MAX_VALUE and the like; ±30,000 years is plenty
+        time = Math.max(-TIME_LIMIT, Math.min(TIME_LIMIT, time));
+        long[] cached = lastDay;
+        if (time >= cached[0] && time < cached[1]) return (int) cached[2];
+        LocalDate date = Instant.ofEpochMilli(time).atZone(zone).toLocalDate();
+        lastDay = new long[] {date.atStartOfDay(zone).toInstant().toEpochMilli(),
+            date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli(), date.toEpochDay()};
+        return (int) date.toEpochDay();
+    }
+
+    private static int utfLength(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            length += c >= 1 && c <= 0x7F ? 1 : c <= 0x7FF ? 2 : 3;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,135 @@
+import java.util.*;
+import java.util.function.IntPredicate;
+
+// Sorted secondary indexes on quantity, price and total value (value -> rows), so range and
+// top-N queries walk only the matching part of each index. Over a disk-backed store nothing is
+// indexed and queries scan the rows instead.
+class RangeIndex {
+    enum Field { QUANTITY, PRICE, TOTAL }
+
+    private final InventoryStore store;
+    private final boolean indexed;
+    private final List<NavigableMap<Long, SearchIndex.IntSet>> indexes = new ArrayList<>();
+
+    public RangeIndex(InventoryStore store) {
+        this(store, !store.isDiskBacked());
+    }
+
+    public RangeIndex(InventoryStore store, boolean indexed) {
+        this.store = store;
+        this.indexed = indexed;
+        for (Field field : Field.values()) indexes.add(new TreeMap<>());
+    }
+
+    public static long value(InventoryStore store, int row, Field field) {
+        return switch (field) {
+            case QUANTITY -> store.getQuantity(row);
+            case PRICE -> store.getPriceCentavos(row);
+            case TOTAL -> store.getQuantity(row) * store.getPriceCentavos(row);
+        };
+    }
+
+    // Call after the row is written to the store
+    public void add(int row) {
+        if (!indexed) return;
+        for (Field field : Field.values()) {
+            indexes.get(field.ordinal()).computeIfAbsent(value(store, row, field), k -> new SearchIndex.IntSet()).add(row);
+        }
+    }
+
+    // Call while the row still holds its old values
+    public void remove(int row) {
+        if (!indexed) return;
+        for (Field field : Field.values()) {
+            NavigableMap<Long, SearchIndex.IntSet> index = indexes.get(field.ordinal());
+            long value = value(store, row, field);
+            SearchIndex.IntSet rows = index.get(value);
+            if (rows != null && rows.remove(row) && rows.size() == 0) index.remove(value);
+        }
+    }
+
+    // The store moved a row into a hole left by remove(); call once the row sits at 'to'
+    public void move(int from, int to) {
+        if (!indexed) return;
+        for (Field field : Field.values()) {
+            SearchIndex.IntSet rows = indexes.get(field.ordinal()).get(value(store, to, field));
+            rows.remove(from);
+            rows.add(to);
+        }
+    }
+
+    // The row's quantity changed in place from oldQuantity; call once the store holds the new value
+    public void quantityChanged(int row, int oldQuantity) {
+        if (!indexed) return;
+        long price = store.getPriceCentavos(row), quantity = store.getQuantity(row);
+        reindex(Field.QUANTITY, row, oldQuantity, quantity);
+        reindex(Field.TOTAL, row, oldQuantity * price, quantity * price);
+    }
+
+    private void reindex(Field field, int row, long oldValue, long newValue) {
+        if (oldValue == newValue) return;
+        NavigableMap<Long, SearchIndex.IntSet> index = indexes.get(field.ordinal());
+        SearchIndex.IntSet rows = index.get(oldValue);
+        if (rows != null && rows.remove(row) && rows.size() == 0) index.remove(oldValue);
+        index.computeIfAbsent(newValue, k -> new SearchIndex.IntSet()).add(row);
+    }
+
+    public void clear() {
+        for (NavigableMap<Long, SearchIndex.IntSet> index : indexes) index.clear();
+    }
+
+    // Rows with min <= value <= max
+    public BitSet range(Field field, long min, long max) {
+        BitSet rows = new BitSet(store.size());
+        if (min > max) return rows;
+        if (!indexed) {
+            for (int row = 0; row < store.size(); row++) {
+                long value = value(store, row, field);
+                if (value >= min && value <= max) rows.set(row);
+            }
+            return rows;
+        }
+        for (SearchIndex.IntSet set : indexes.get(field.ordinal()).subMap(min, true, max, true).values()) {
+            set.forEach(rows::set);
+        }
+        return rows;
+    }
+
+    // Up to n accepted rows with the highest (or lowest) values, best first
+    public BitSet top(Field field, int n, boolean highest, IntPredicate accept) {
+        if (!indexed) return scanTop(field, n, highest, accept);
+        BitSet rows = new BitSet(store.size());
+        NavigableMap<Long, SearchIndex.IntSet> index = indexes.get(field.ordinal());
+        int[] taken = {0};
+        for (SearchIndex.IntSet set : (highest ? index.descendingMap() : index).values()) {
+            set.forEach(row -> {
+                if (taken[0] < n && accept.test(row)) {
+                    rows.set(row);
+                    taken[0]++;
+                }
+            });
+            if (taken[0] >= n) break;
+        }
+        return rows;
+    }
+
+    // Keeps the best n seen so far in a heap whose root is the worst of them
+    private BitSet scanTop(Field field, int n, boolean highest, IntPredicate accept) {
+        BitSet rows = new BitSet(store.size());
+        if (n <= 0) return rows;
+        Comparator<long[]> worstFirst = Comparator.comparingLong(entry -> entry[0]);
+        PriorityQueue<long[]> best = new PriorityQueue<>(highest ? worstFirst : worstFirst.reversed());
+        for (int row = 0; row < store.size(); row++) {
+            if (!accept.test(row)) continue;
+            long value = value(store, row, field);
+            if (best.size() < n) {
+                best.add(new long[] {value, row});
+            } else if (highest ? value > best.peek()[0] : value < best.peek()[0]) {
+                best.poll();
+                best.add(new long[] {value, row});
+            }
+        }
+        for (long[] entry : best) rows.set((int) entry[1]);
+        return rows;
+    }
+}
@@ -0,0 +1,188 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Reorder points (a per-item threshold, else the default from -Dinventory.reorderPoint) and the
+// rows ordered by quantity minus threshold, so "everything at or below its reorder point" is the
+// head of the index and its size is a counter. Over a disk-backed store nothing is indexed and
+// queries scan the rows instead.
+class ReorderIndex {
+    static final int DEFAULT_REORDER_POINT = 5;
+
+    private final InventoryStore store;
+    private final boolean indexed;
+    private final int defaultThreshold;
+    private final Map<String, Integer> thresholds = new HashMap<>();
+    private final NavigableMap<Long, SearchIndex.IntSet> byShortfall = new TreeMap<>();
+    private int atOrBelow;
+
+    public ReorderIndex(InventoryStore store) {
+        this(store, !store.isDiskBacked());
+    }
+
+    // indexed = false keeps only the count; atOrBelow() scans
+    public ReorderIndex(InventoryStore store, boolean indexed) {
+        this(store, Integer.getInteger("inventory.reorderPoint", DEFAULT_REORDER_POINT), indexed);
+    }
+
+    public ReorderIndex(InventoryStore store, int defaultThreshold) {
+        this(store, defaultThreshold, !store.isDiskBacked());
+    }
+
+    public ReorderIndex(InventoryStore store, int defaultThreshold, boolean indexed) {
+        this.store = store;
+        this.indexed = indexed;
+        this.defaultThreshold = defaultThreshold;
+    }
+
+    // ---- thresholds ----
+
+    public int defaultThreshold() {
+        return defaultThreshold;
+    }
+
+    // The item's own reorder point, or null when it uses the default
+    public Integer explicitThreshold(String id) {
+        return thresholds.get(id);
+    }
+
+    public int threshold(int row) {
+        return thresholds.getOrDefault(store.getId(row), defaultThreshold);
+    }
+
+    // Call for rows not in the index (before add(), or after remove())
+    public void setThreshold(String id, Integer threshold) {
+        if (threshold == null) thresholds.remove(id); else thresholds.put(id, threshold);
+    }
+
+    public boolean hasThreshold(String id) {
+        return thresholds.containsKey(id);
+    }
+
+    // One "id=threshold" per line in java.util.Properties format, so any ID survives
+    public void load(Path file) throws IOException {
+        thresholds.clear();
+        if (!Files.exists(file)) return;
+        Properties saved = new Properties();
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            saved.load(in);
+        }
+        for (String id : saved.stringPropertyNames()) {
+            try {
+                thresholds.put(id, Integer.parseInt(saved.getProperty(id).trim()));
+            } catch (NumberFormatException e) {
+                // Skip hand-edited junk rather than refuse to start
+            }
+        }
+    }
+
+    public void save(Path file) throws IOException {
+        Properties saved = new Properties();
+        for (Map.Entry<String, Integer> entry : thresholds.entrySet()) {
+            saved.setProperty(entry.getKey(), entry.getValue().toString());
+        }
+        Path temp = Paths.get(file + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            saved.store(out, "Reorder points; items not listed use " + defaultThreshold);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ---- index maintenance, mirroring RangeIndex ----
+
+    public boolean isAtOrBelow(int row) {
+        return shortfall(row) <= 0;
+    }
+
+    // Call after the row is written to the store
+    public void add(int row) {
+        long key = shortfall(row);
+        if (key <= 0) atOrBelow++;
+        if (indexed) byShortfall.computeIfAbsent(key, k -> new SearchIndex.IntSet()).add(row);
+    }
+
+    // Call while the row still holds its old values and threshold
+    public void remove(int row) {
+        long key = shortfall(row);
+        if (key <= 0) atOrBelow--;
+        if (!indexed) return;
+        SearchIndex.IntSet rows = byShortfall.get(key);
+        if (rows != null && rows.remove(row) && rows.size() == 0) byShortfall.remove(key);
+    }
+
+    // The store moved a row into a hole left by remove(); call once the row sits at 'to'
+    public void move(int from, int to) {
+        if (!indexed) return;
+        SearchIndex.IntSet rows = byShortfall.get(shortfall(to));
+        rows.remove(from);
+        rows.add(to);
+    }
+
+    // The row's quantity changed in place from oldQuantity; returns true when that took it
+    // to or below its reorder point
+    public boolean quantityChanged(int row, int oldQuantity) {
+        int threshold = threshold(row);
+        return reindex(row, (long) oldQuantity - threshold, (long) store.getQuantity(row) - threshold);
+    }
+
+    // Changes the row's threshold in place; returns true when that put it at or below
+    public boolean thresholdChanged(int row, Integer threshold) {
+        long oldKey = shortfall(row);
+        setThreshold(store.getId(row), threshold);
+        return reindex(row, oldKey, shortfall(row));
+    }
+
+    public void clear() {
+        byShortfall.clear();
+        atOrBelow = 0;
+    }
+
+    // ---- queries ----
+
+    public int countAtOrBelow() {
+        return atOrBelow;
+    }
+
+    // Up to limit rows at or below their reorder point, furthest below first
+    public int[] atOrBelow(int limit) {
+        if (!indexed) return scanAtOrBelow(limit);
+        int[] rows = new int[Math.min(limit, atOrBelow)];
+        int[] taken = {0};
+        for (SearchIndex.IntSet set : byShortfall.headMap(0L, true).values()) {
+            set.forEach(row -> {
+                if (taken[0] < rows.length) rows[taken[0]++] = row;
+            });
+            if (taken[0] >= rows.length) break;
+        }
+        return rows;
+    }
+
+    private int[] scanAtOrBelow(int limit) {
+        List<long[]> found = new ArrayList<>();
+        for (int row = 0; row < store.size(); row++) {
+            long key = shortfall(row);
+            if (key <= 0) found.add(new long[] {key, row});
+        }
+        found.sort(Comparator.comparingLong(entry -> entry[0]));
+        int[] rows = new int[Math.min(limit, found.size())];
+        for (int i = 0; i < rows.length; i++) rows[i] = (int) found.get(i)[1];
+        return rows;
+    }
+
+    private long shortfall(int row) {
+        return (long) store.getQuantity(row) - threshold(row);
+    }
+
+    private boolean reindex(int row, long oldKey, long newKey) {
+        if (oldKey == newKey) return false;
+        if (oldKey <= 0) atOrBelow--;
+        if (newKey <= 0) atOrBelow++;
+        if (indexed) {
+            SearchIndex.IntSet rows = byShortfall.get(oldKey);
+            if (rows != null && rows.remove(row) && rows.size() == 0) byShortfall.remove(oldKey);
+            byShortfall.computeIfAbsent(newKey, k -> new SearchIndex.IntSet()).add(row);
+        }
+        return oldKey > 0 && newKey <= 0;
+    }
+}
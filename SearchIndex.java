@@ -0,0 +1,175 @@
+import java.util.*;
+
+// Trigram index over ID and name for substring search.
+// Each lower-cased 3-character window maps to the set of rows containing it. A query is answered
+// from its rarest trigram's rows, verified against the actual text, so only candidate rows are
+// ever compared. Queries shorter than 3 characters fall back to a plain scan, as does every
+// query over a disk-backed store, where the postings would not fit on the heap either.
+class SearchIndex {
+    private final InventoryStore store;
+    private final boolean indexed;
+    private final Map<Long, IntSet> postings = new HashMap<>();
+
+    public SearchIndex(InventoryStore store) {
+        this(store, !store.isDiskBacked());
+    }
+
+    // indexed = false keeps no postings and answers every query with a scan
+    public SearchIndex(InventoryStore store, boolean indexed) {
+        this.store = store;
+        this.indexed = indexed;
+    }
+
+    public void add(int row, String id, String name) {
+        if (!indexed) return;
+        forEachTrigram(id, name, trigram -> postings.computeIfAbsent(trigram, k -> new IntSet()).add(row));
+    }
+
+    public void remove(int row, String id, String name) {
+        if (!indexed) return;
+        forEachTrigram(id, name, trigram -> {
+            IntSet rows = postings.get(trigram);
+            if (rows != null && rows.remove(row) && rows.size() == 0) postings.remove(trigram);
+        });
+    }
+
+    // The store moved a row into a hole left by remove()
+    public void move(int from, int to, String id, String name) {
+        if (!indexed) return;
+        forEachTrigram(id, name, trigram -> {
+            IntSet rows = postings.get(trigram);
+            rows.remove(from);
+            rows.add(to);
+        });
+    }
+
+    public void clear() {
+        postings.clear();
+    }
+
+    public void rebuild() {
+        clear();
+        for (int row = 0; row < store.size(); row++) add(row, store.getId(row), store.getName(row));
+    }
+
+    // Rows whose ID or name contains the query, ignoring case
+    public BitSet search(String query) {
+        String needle = query.toLowerCase(Locale.ROOT);
+        BitSet matches = new BitSet(store.size());
+        if (needle.length() < 3 || !indexed) {
+            for (int row = 0; row < store.size(); row++) {
+                if (matches(row, needle)) matches.set(row);
+            }
+            return matches;
+        }
+        IntSet rarest = null;
+        for (int i = 0; i + 3 <= needle.length(); i++) {
+            IntSet rows = postings.get(trigram(needle, i));
+            if (rows == null) return matches;
+            if (rarest == null || rows.size() < rarest.size()) rarest = rows;
+        }
+        rarest.forEach(row -> {
+            if (matches(row, needle)) matches.set(row);
+        });
+        return matches;
+    }
+
+    public boolean matches(int row, String lowerCaseNeedle) {
+        return store.getId(row).toLowerCase(Locale.ROOT).contains(lowerCaseNeedle)
+            || store.getName(row).toLowerCase(Locale.ROOT).contains(lowerCaseNeedle);
+    }
+
+    private interface TrigramConsumer {
+        void accept(long trigram);
+    }
+
+    // A trigram shared by ID and name is visited once so add/remove stay symmetric
+    private static void forEachTrigram(String id, String name, TrigramConsumer consumer) {
+        String lowerId = id.toLowerCase(Locale.ROOT);
+        String lowerName = name.toLowerCase(Locale.ROOT);
+        long[] trigrams = new long[Math.max(0, lowerId.length() - 2) + Math.max(0, lowerName.length() - 2)];
+        int count = 0;
+        for (int i = 0; i + 3 <= lowerId.length(); i++) trigrams[count++] = trigram(lowerId, i);
+        for (int i = 0; i + 3 <= lowerName.length(); i++) trigrams[count++] = trigram(lowerName, i);
+        Arrays.sort(trigrams, 0, count);
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || trigrams[i] != trigrams[i - 1]) consumer.accept(trigrams[i]);
+        }
+    }
+
+    private static long trigram(String text, int i) {
+        return ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+    }
+
+    // Open-addressing set of non-negative ints
+    static class IntSet {
+        private static final int EMPTY = -1;
+        private int[] slots = {EMPTY, EMPTY, EMPTY, EMPTY};
+        private int size;
+
+        int size() { return size; }
+
+        boolean add(int value) {
+            if ((size + 1) * 2 > slots.length) resize(slots.length * 2);
+            int mask = slots.length - 1;
+            int slot = mix(value) & mask;
+            while (slots[slot] != EMPTY) {
+                if (slots[slot] == value) return false;
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = value;
+            size++;
+            return true;
+        }
+
+        boolean contains(int value) {
+            int mask = slots.length - 1;
+            for (int slot = mix(value) & mask; slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (slots[slot] == value) return true;
+            }
+            return false;
+        }
+
+        boolean remove(int value) {
+            int mask = slots.length - 1;
+            int hole = mix(value) & mask;
+            while (slots[hole] != value) {
+                if (slots[hole] == EMPTY) return false;
+                hole = (hole + 1) & mask;
+            }
+            slots[hole] = EMPTY;
+            size--;
+            for (int slot = (hole + 1) & mask; slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+                int home = mix(slots[slot]) & mask;
+                boolean movable = hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot);
+                if (movable) {
+                    slots[hole] = slots[slot];
+                    slots[slot] = EMPTY;
+                    hole = slot;
+                }
+            }
+            return true;
+        }
+
+        void forEach(java.util.function.IntConsumer action) {
+            for (int value : slots) {
+                if (value != EMPTY) action.accept(value);
+            }
+        }
+
+        private void resize(int capacity) {
+            int[] old = slots;
+            slots = new int[capacity];
+            Arrays.fill(slots, EMPTY);
+            size = 0;
+            for (int value : old) {
+                if (value != EMPTY) add(value);
+            }
+        }
+
+        private static int mix(int value) {
+            int h = value * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package inventory.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+import static java.lang.invoke.MethodType.methodType;
+
+// Entry points into the application, whose classes live in the unnamed package and so can't be
+// imported from here (JMH refuses benchmarks in the unnamed package). The handles are static
+// finals, which the JIT constant-folds, so a call through one costs the same as a direct call.
+// Application objects are passed around as Object.
+final class App {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    static final Class<?> ITEM = type("InventoryItem");
+    static final Class<?> STORE = type("InventoryStore");
+    static final Class<?> RANGE_INDEX = type("RangeIndex");
+
+    private static final MethodHandle NEW_ITEM = constructor(ITEM, String.class, String.class, int.class, double.class);
+    private static final MethodHandle NEW_LIST_STORE = constructor(type("ListInventoryStore"));
+    private static final MethodHandle NEW_COLUMNAR_STORE = constructor(type("ColumnarInventoryStore"));
+    private static final MethodHandle NEW_SEARCH_INDEX = constructor(type("SearchIndex"), STORE);
+    private static final MethodHandle NEW_RANGE_INDEX = constructor(RANGE_INDEX, STORE);
+    private static final MethodHandle NEW_TABLE_MODEL = constructor(type("InventoryTableModel"), STORE);
+
+    private static final MethodHandle STORE_ADD = virtual(STORE, "add", methodType(int.class, ITEM));
+    private static final MethodHandle STORE_INDEX_OF = virtual(STORE, "indexOf", methodType(int.class, String.class));
+    private static final MethodHandle STORE_SIZE = virtual(STORE, "size", methodType(int.class));
+    private static final MethodHandle SEARCH_REBUILD = virtual(type("SearchIndex"), "rebuild", methodType(void.class));
+    private static final MethodHandle SEARCH = virtual(type("SearchIndex"), "search", methodType(BitSet.class, String.class));
+    private static final MethodHandle RANGE_ADD = virtual(RANGE_INDEX, "add", methodType(void.class, int.class));
+    private static final MethodHandle QUERY_PARSE = staticMethod(type("InventoryQuery"), "parse", methodType(type("InventoryQuery"), String.class));
+    private static final MethodHandle QUERY_EVALUATE = virtual(type("InventoryQuery"), "evaluate", methodType(BitSet.class, STORE, RANGE_INDEX));
+    private static final MethodHandle SNAPSHOT_WRITE = staticMethod(type("InventorySnapshot"), "write", methodType(void.class, Path.class, Collection.class));
+    private static final MethodHandle SNAPSHOT_READ = staticMethod(type("InventorySnapshot"), "read", methodType(void.class, Path.class, Consumer.class, LongConsumer.class));
+    private static final MethodHandle CSV_PARSE = staticMethod(type("CsvBulkParser"), "parse", methodType(void.class, Path.class, boolean.class, Consumer.class, LongConsumer.class));
+    private static final MethodHandle FORMAT_CURRENCY = staticMethod(type("CurrencyRenderer"), "format", methodType(String.class, StringBuilder.class, long.class));
+
+    private App() {}
+
+    // ---- generated data ----
+
+    static String id(int i) {
+        return "SKU-" + i;
+    }
+
+    // Deterministic items with realistic-looking names, quantities 0-999 and prices 1.00-9999.99
+    static List<Object> items(int count) throws Throwable {
+        String[] words = {"Bolt", "Nut", "Washer", "Hinge", "Bracket", "Cable", "Switch", "Valve", "Pipe", "Tape"};
+        Random random = new Random(42);
+        List<Object> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)] + " " + (i % 997);
+            items.add(item(id(i), name, random.nextInt(1000), (100 + random.nextInt(999_900)) / 100.0));
+        }
+        return items;
+    }
+
+    static Object store(String kind, List<Object> items) throws Throwable {
+        Object store = kind.equals("columnar") ? (Object) NEW_COLUMNAR_STORE.invokeExact() : (Object) NEW_LIST_STORE.invokeExact();
+        for (Object item : items) {
+            int added = (int) STORE_ADD.invokeExact(store, item);
+        }
+        return store;
+    }
+
+    // ---- application calls ----
+
+    static Object item(String id, String name, int quantity, double price) throws Throwable {
+        return (Object) NEW_ITEM.invokeExact(id, name, quantity, price);
+    }
+
+    static int indexOf(Object store, String id) throws Throwable {
+        return (int) STORE_INDEX_OF.invokeExact(store, id);
+    }
+
+    static int size(Object store) throws Throwable {
+        return (int) STORE_SIZE.invokeExact(store);
+    }
+
+    static Object searchIndex(Object store) throws Throwable {
+        Object index = (Object) NEW_SEARCH_INDEX.invokeExact(store);
+        SEARCH_REBUILD.invokeExact(index);
+        return index;
+    }
+
+    static BitSet search(Object searchIndex, String text) throws Throwable {
+        return (BitSet) SEARCH.invokeExact(searchIndex, text);
+    }
+
+    static Object rangeIndex(Object store) throws Throwable {
+        Object index = (Object) NEW_RANGE_INDEX.invokeExact(store);
+        for (int row = 0, size = size(store); row < size; row++) RANGE_ADD.invokeExact(index, row);
+        return index;
+    }
+
+    static Object parseQuery(String text) throws Throwable {
+        return (Object) QUERY_PARSE.invokeExact(text);
+    }
+
+    static BitSet evaluate(Object query, Object store, Object rangeIndex) throws Throwable {
+        return (BitSet) QUERY_EVALUATE.invokeExact(query, store, rangeIndex);
+    }
+
+    static javax.swing.table.TableModel tableModel(Object store) throws Throwable {
+        return (javax.swing.table.TableModel) (Object) NEW_TABLE_MODEL.invokeExact(store);
+    }
+
+    static String formatCurrency(StringBuilder text, long centavos) throws Throwable {
+        return (String) FORMAT_CURRENCY.invokeExact(text, centavos);
+    }
+
+    static void writeSnapshot(Path file, Collection<Object> items) throws Throwable {
+        SNAPSHOT_WRITE.invokeExact(file, (Collection) items);
+    }
+
+    static void readSnapshot(Path file, Consumer<List<Object>> sink) throws Throwable {
+        SNAPSHOT_READ.invokeExact(file, (Consumer) sink, (LongConsumer) bytes -> { });
+    }
+
+    static void parseCsv(Path file, Consumer<List<Object>> sink) throws Throwable {
+        CSV_PARSE.invokeExact(file, false, (Consumer) sink, (LongConsumer) bytes -> { });
+    }
+
+    // ---- lookup ----
+
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // The application classes are package-private; everything is in the unnamed module, which
+    // is open, so a private lookup into their package is allowed
+    private static MethodHandles.Lookup lookupIn(Class<?> owner) throws IllegalAccessException {
+        return MethodHandles.privateLookupIn(owner, LOOKUP);
+    }
+
+    private static MethodHandle constructor(Class<?> owner, Class<?>... parameters) {
+        try {
+            MethodHandle handle = lookupIn(owner).findConstructor(owner, methodType(void.class, parameters));
+            return handle.asType(erase(handle.type(), false));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle virtual(Class<?> owner, String name, MethodType type) {
+        try {
+            MethodHandle handle = lookupIn(owner).findVirtual(owner, name, type);
+            return handle.asType(erase(handle.type(), true));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle staticMethod(Class<?> owner, String name, MethodType type) {
+        try {
+            MethodHandle handle = lookupIn(owner).findStatic(owner, name, type);
+            return handle.asType(erase(handle.type(), false));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Application types become Object so call sites here can name them
+    private static MethodType erase(MethodType type, boolean receiver) {
+        MethodType erased = type;
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isApplicationType(type.parameterType(i))) erased = erased.changeParameterType(i, Object.class);
+        }
+        if (receiver) erased = erased.changeParameterType(0, Object.class);
+        if (isApplicationType(type.returnType())) erased = erased.changeReturnType(Object.class);
+        return erased;
+    }
+
+    private static boolean isApplicationType(Class<?> type) {
+        return !type.isPrimitive() && type.getPackageName().isEmpty();
+    }
+}
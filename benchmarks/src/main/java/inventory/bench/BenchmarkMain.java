@@ -0,0 +1,17 @@
+package inventory.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Runs JMH with the GC profiler unless the arguments choose profilers themselves, so a plain
+// "java -jar benchmarks.jar" reports allocation per operation next to every score
+public final class BenchmarkMain {
+    private BenchmarkMain() {}
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-prof")) options.addAll(List.of("-prof", "gc"));
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
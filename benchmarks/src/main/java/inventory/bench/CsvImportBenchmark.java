@@ -0,0 +1,47 @@
+package inventory.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// importFromCsv() parsing: CsvBulkParser over a generated "id,name,quantity,price" file
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Djava.awt.headless=true"})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CsvImportBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    int size;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = Files.createTempFile("inventory-bench", ".csv");
+        java.util.Random random = new java.util.Random(42);
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < size; i++) {
+                int centavos = 100 + random.nextInt(999_900);
+                writer.write(App.id(i) + ",Item " + (i % 997) + "," + random.nextInt(1000) + ","
+                    + centavos / 100 + "." + (centavos % 100 < 10 ? "0" : "") + centavos % 100 + "\n");
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int parse() throws Throwable {
+        int[] count = {0};
+        App.parseCsv(file, chunk -> count[0] += chunk.size());
+        return count[0];
+    }
+}
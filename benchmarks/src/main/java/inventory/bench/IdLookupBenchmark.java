@@ -0,0 +1,46 @@
+package inventory.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// isUniqueId() is an InventoryStore.indexOf() lookup, for IDs that exist and IDs that don't
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Djava.awt.headless=true"})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IdLookupBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    int size;
+
+    @Param({"list", "columnar"})
+    String store;
+
+    private Object inventory;
+    private String[] present, absent;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        inventory = App.store(store, App.items(size));
+        present = new String[4096];
+        absent = new String[4096];
+        java.util.Random random = new java.util.Random(7);
+        for (int i = 0; i < present.length; i++) {
+            present[i] = App.id(random.nextInt(size)).toLowerCase(java.util.Locale.ROOT);
+            absent[i] = "NEW-" + i;
+        }
+    }
+
+    @Benchmark
+    public int existingId() throws Throwable {
+        return App.indexOf(inventory, present[next++ & 4095]);
+    }
+
+    @Benchmark
+    public int newId() throws Throwable {
+        return App.indexOf(inventory, absent[next++ & 4095]);
+    }
+}
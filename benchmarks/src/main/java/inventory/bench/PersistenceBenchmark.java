@@ -0,0 +1,52 @@
+package inventory.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Saving and loading the whole inventory: the binary snapshot written by compaction and read at startup
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Djava.awt.headless=true"})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PersistenceBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    int size;
+
+    private List<Object> items;
+    private Path directory, saved, scratch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        items = App.items(size);
+        directory = Files.createTempDirectory("inventory-bench");
+        saved = directory.resolve("inventory.dat");
+        scratch = directory.resolve("scratch.dat");
+        App.writeSnapshot(saved, items);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(saved);
+        Files.deleteIfExists(scratch);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public long save() throws Throwable {
+        App.writeSnapshot(scratch, items);
+        return Files.size(scratch);
+    }
+
+    @Benchmark
+    public int load() throws Throwable {
+        int[] count = {0};
+        App.readSnapshot(saved, chunk -> count[0] += chunk.size());
+        return count[0];
+    }
+}
@@ -0,0 +1,57 @@
+package inventory.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// filterItems(): the trigram search behind the search box and the range-indexed query mode
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Djava.awt.headless=true"})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SearchBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    int size;
+
+    private Object inventory, searchIndex, rangeIndex;
+    private Object rangeQuery, topQuery;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        inventory = App.store("columnar", App.items(size));
+        searchIndex = App.searchIndex(inventory);
+        rangeIndex = App.rangeIndex(inventory);
+        rangeQuery = App.parseQuery("quantity between 0 and 10 and price > 500");
+        topQuery = App.parseQuery("total value top 100");
+    }
+
+    // Selective: one exact SKU's worth of trigrams
+    @Benchmark
+    public int searchSku() throws Throwable {
+        return App.search(searchIndex, "sku-12345").cardinality();
+    }
+
+    // Broad: a word in about a fifth of all names
+    @Benchmark
+    public int searchName() throws Throwable {
+        return App.search(searchIndex, "hinge").cardinality();
+    }
+
+    // Under three characters, which scans every row
+    @Benchmark
+    public int searchShort() throws Throwable {
+        return App.search(searchIndex, "99").cardinality();
+    }
+
+    @Benchmark
+    public int queryRange() throws Throwable {
+        return App.evaluate(rangeQuery, inventory, rangeIndex).cardinality();
+    }
+
+    @Benchmark
+    public int queryTop() throws Throwable {
+        return App.evaluate(topQuery, inventory, rangeIndex).cardinality();
+    }
+}
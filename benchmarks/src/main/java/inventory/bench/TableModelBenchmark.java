@@ -0,0 +1,45 @@
+package inventory.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.swing.table.TableModel;
+import java.util.concurrent.TimeUnit;
+
+// What painting one screen of the table costs: getValueAt for every visible cell plus the
+// currency formatting the renderer does for the two money columns
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Djava.awt.headless=true"})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TableModelBenchmark {
+    private static final int VISIBLE_ROWS = 40;
+
+    @Param({"10000", "1000000", "10000000"})
+    int size;
+
+    @Param({"list", "columnar"})
+    String store;
+
+    private TableModel model;
+    private final StringBuilder text = new StringBuilder(24);
+    private int first;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        model = App.tableModel(App.store(store, App.items(size)));
+    }
+
+    @Benchmark
+    public void paintScreen(Blackhole blackhole) throws Throwable {
+        first = (first + 7919) % (size - VISIBLE_ROWS);
+        for (int row = first; row < first + VISIBLE_ROWS; row++) {
+            for (int column = 0; column < 5; column++) {
+                Object value = model.getValueAt(row, column);
+                blackhole.consume(column >= 3 ? App.formatCurrency(text, (Long) value) : value);
+            }
+        }
+    }
+}
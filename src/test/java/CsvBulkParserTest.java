@@ -0,0 +1,116 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvBulkParserTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void skipsHeaderAndHandlesLineEnds() throws IOException {
+        List<InventoryItem> items = parseBoth("ID,Name,Quantity,Price,Total Value\r\nA,Bolt,3,1.50,4.50\r\nB,Nut,2,0.25\nC,Washer,1,2", false);
+        assertEquals(3, items.size());
+        assertItem(items.get(0), "A", "Bolt", 3, 150);
+        assertItem(items.get(1), "B", "Nut", 2, 25);
+        assertItem(items.get(2), "C", "Washer", 1, 200);
+    }
+
+    @Test
+    void readsQuotedFields() throws IOException {
+        List<InventoryItem> items = parseBoth(String.join("\n",
+            "\"A,1\",\"Bolt, \"\"hex\"\"\",3,1.50",
+            "B,\"Nut, wing\",2,0.25",
+            "\"\"\"C\"\"\",Washer,1,2.00"), false);
+        assertEquals(3, items.size());
+        assertItem(items.get(0), "A,1", "Bolt, \"hex\"", 3, 150);
+        assertItem(items.get(1), "B", "Nut, wing", 2, 25);
+        assertItem(items.get(2), "\"C\"", "Washer", 1, 200);
+    }
+
+    @Test
+    void dropsShortAndInvalidLines() throws IOException {
+        String csv = "A,Bolt,3,1.50\nshort,line\nB,Nut,lots,1.00\nC,Washer,1,cheap\n\nD,Pipe,4,9.99\n";
+        LongAdder invalid = new LongAdder();
+        List<InventoryItem> items = new ArrayList<>();
+        CsvBulkParser.parse(write(csv), false, items::addAll, bytes -> { }, invalid);
+        assertEquals(List.of("A", "D"), items.stream().map(InventoryItem::getId).toList());
+        assertEquals(2, invalid.sum());
+        assertEquals(items.size(), parseStream(csv, false).size());
+    }
+
+    @Test
+    void exactColumnsRejectsExtraColumns() throws IOException {
+        List<InventoryItem> items = parseBoth("A,Bolt,3,1.50\nB,Nut,2,0.25,0.50\n", true);
+        assertEquals(List.of("A"), items.stream().map(InventoryItem::getId).toList());
+    }
+
+    @Test
+    void parsesPricesLikeParseDouble() throws IOException {
+        String[] prices = {"0.1", "19.99", "1234567.89", "5", "-3.5", "+2.25", "1e3", "0.000001", "123456789012345678"};
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < prices.length; i++) csv.append("P").append(i).append(",x,1,").append(prices[i]).append('\n');
+        List<InventoryItem> items = parseBoth(csv.toString(), false);
+        for (int i = 0; i < prices.length; i++) assertEquals(Double.parseDouble(prices[i]), items.get(i).getPrice(), prices[i]);
+    }
+
+    // Big enough to be cut into several segments that are parsed in parallel
+    @Test
+    void keepsFileOrderAcrossSegments() throws IOException {
+        StringBuilder csv = new StringBuilder("ID,Name,Quantity,Price\n");
+        for (int i = 0; i < 200_000; i++) csv.append("SKU-").append(i).append(",Item number ").append(i).append(',').append(i % 1000).append(",1.25\n");
+        List<InventoryItem> items = parseBoth(csv.toString(), false);
+        assertEquals(200_000, items.size());
+        for (int i = 0; i < items.size(); i++) assertEquals("SKU-" + i, items.get(i).getId());
+    }
+
+    @Test
+    void readsItsOwnExports() throws IOException {
+        InventoryStore store = new ListInventoryStore();
+        store.add(new InventoryItem("A,1", "Bolt \"hex\", zinc", 3, 1.5));
+        store.add(new InventoryItem("B", "Tuerca ñ ₱", 0, 1234.56));
+        store.add(new InventoryItem("C", "Plain", 7, 0.05));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CsvExporter exporter = new CsvExporter(bytes, false)) {
+            for (int row = 0; row < store.size(); row++) exporter.encode(store, row);
+        }
+        List<InventoryItem> items = parseBoth(bytes.toString(StandardCharsets.UTF_8), false);
+        assertEquals(store.size(), items.size());
+        for (int row = 0; row < store.size(); row++) InventorySnapshotTest.assertItem(store.get(row), items.get(row));
+    }
+
+    // Parses from a file and from a stream, which must agree
+    private List<InventoryItem> parseBoth(String csv, boolean exactColumns) throws IOException {
+        List<InventoryItem> fromFile = CsvBulkParser.parseAll(write(csv), exactColumns);
+        List<InventoryItem> fromStream = parseStream(csv, exactColumns);
+        assertEquals(fromFile.size(), fromStream.size(), "file and stream parses differ");
+        for (int i = 0; i < fromFile.size(); i++) InventorySnapshotTest.assertItem(fromFile.get(i), fromStream.get(i));
+        return fromFile;
+    }
+
+    private static List<InventoryItem> parseStream(String csv, boolean exactColumns) throws IOException {
+        List<InventoryItem> items = new ArrayList<>();
+        CsvBulkParser.parse(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), exactColumns,
+            items::addAll, bytes -> { }, new LongAdder());
+        return items;
+    }
+
+    private Path write(String csv) throws IOException {
+        Path file = Files.createTempFile(directory, "import", ".csv");
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static void assertItem(InventoryItem item, String id, String name, int quantity, long centavos) {
+        assertEquals(id, item.getId());
+        assertEquals(name, item.getName());
+        assertEquals(quantity, item.getQuantity());
+        assertEquals(centavos, InventoryStore.toCentavos(item.getPrice()));
+    }
+}
@@ -0,0 +1,106 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs each command in its own JVM in a temp directory, as a script would: the CLI uses the
+// files in the working directory, reads stdin, writes stdout and exits with a status
+class InventoryCliTest {
+    record Result(int status, String out, String err) {}
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void importsAdjustsAndReports() throws Exception {
+        Path csv = directory.resolve("stock.csv");
+        Files.writeString(csv, "ID,Name,Quantity,Price\nA,Bolt,3,1.50\nB,\"Nut, hex\",10,0.25\nC,Washer,-1,2.00\nD,Pipe,2,12.00\n");
+        Result imported = run("", "import", "stock.csv");
+        assertEquals(0, imported.status(), imported.err());
+        assertEquals("Imported 3 items, 1 rejected\n", imported.out());
+
+        assertEquals(new Result(0, "1\n", ""), run("", "adjust", "a", "-2"));
+        Result oversold = run("", "adjust", "A", "-5");
+        assertEquals(1, oversold.status());
+        assertEquals("", oversold.out());
+        assertTrue(oversold.err().startsWith("Error: "), oversold.err());
+
+        Result batch = run("A,+4\nZ,1\n\nB,-1\nno delta\n", "adjust", "-");
+        assertEquals(1, batch.status());
+        assertEquals("A,5\nB,9\n", batch.out());
+        assertEquals(2, batch.err().lines().filter(line -> line.startsWith("Skipping ")).count(), batch.err());
+
+        assertEquals(new Result(0, "ID,Name,Quantity,Price,Total Value\nA,Bolt,5,1.50,7.50\nB,\"Nut, hex\",9,0.25,2.25\n", ""),
+            run("", "query", "quantity > 2"));
+        Result stats = run("", "stats");
+        assertEquals(0, stats.status());
+        assertEquals(List.of("items\t3", "units\t16", "value\t33.75"), stats.out().lines().limit(3).toList());
+
+        Result history = run("", "history", "A");
+        assertEquals(0, history.status(), history.err());
+        List<String> lines = history.out().lines().toList();
+        assertEquals("time,kind,change,quantity,price", lines.get(0));
+        assertTrue(lines.get(lines.size() - 1).endsWith(",ADJUST,4,5,1.50"), history.out());
+        assertTrue(lines.get(lines.size() - 2).endsWith(",ADJUST,-2,1,1.50"), history.out());
+    }
+
+    @Test
+    void mergesAndExports() throws Exception {
+        assertEquals(0, run("ID,Name,Quantity,Price\nA,Bolt,3,1.50\nB,Nut,10,0.25\n", "import", "-").status());
+        Result merged = run("A,Bolt,4,1.50\nC,Hinge,1,3.00\nD,Bad,x,1.00\n", "merge", "-", "--delete-missing");
+        assertEquals(1, merged.status());
+        assertEquals("1 inserted, 1 updated, 0 unchanged, 1 rejected, 1 deleted\n", merged.out());
+
+        Result exported = run("", "export", "items.csv.gz");
+        assertEquals(new Result(0, "Exported 2 items to items.csv.gz\n", ""), exported);
+        try (InputStream in = new java.util.zip.GZIPInputStream(Files.newInputStream(directory.resolve("items.csv.gz")))) {
+            assertEquals("ID,Name,Quantity,Price,Total Value\nA,Bolt,4,1.50,6.00\nC,Hinge,1,3.00,3.00\n",
+                new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(new Result(0, "ID,Name,Quantity,Price,Total Value\nA,Bolt,4,1.50,6.00\n", ""),
+            run("", "export", "-", "--query", "price < 2"));
+    }
+
+    @Test
+    void rejectsBadArguments() throws Exception {
+        for (String[] args : new String[][]{{"frobnicate"}, {"adjust", "A"}, {"adjust", "A", "lots"},
+                {"stats", "--verbose"}, {"export", "--limit", "many"}}) {
+            Result result = run("", args);
+            assertEquals(2, result.status(), String.join(" ", args));
+            assertTrue(result.err().contains("Usage: java InventoryCli COMMAND [ARGS]"), result.err());
+        }
+        Result missing = run("", "import", "missing.csv");
+        assertEquals(1, missing.status());
+        assertTrue(missing.err().startsWith("Error: "), missing.err());
+    }
+
+    private Result run(String stdin, String... args) throws Exception {
+        List<String> command = new ArrayList<>(List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+            "-cp", classPath(), "-Dinventory.history=" + directory.resolve("history"), "InventoryCli"));
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).directory(directory.toFile()).start();
+        // Stderr is drained on another thread so neither pipe can fill up and stall the child
+        Future<byte[]> err = ForkJoinPool.commonPool().submit(() -> process.getErrorStream().readAllBytes());
+        try (OutputStream in = process.getOutputStream()) {
+            in.write(stdin.getBytes(StandardCharsets.UTF_8));
+        }
+        String out = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS), "CLI did not exit");
+        return new Result(process.exitValue(), out, new String(err.get(), StandardCharsets.UTF_8));
+    }
+
+    // The child runs in the temp directory, so relative class path entries are resolved here
+    private static String classPath() {
+        StringJoiner path = new StringJoiner(File.pathSeparator);
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            path.add(Path.of(entry).toAbsolutePath().toString());
+        }
+        return path.toString();
+    }
+}
@@ -0,0 +1,105 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Starts the server on a free loopback port over a small inventory and checks each route's
+// status and body
+class InventoryHttpServerTest {
+    @TempDir
+    Path directory;
+
+    private InventoryService service;
+    private InventoryHttpServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void start() throws IOException {
+        InventoryJournal journal = new InventoryJournal(directory.resolve("inventory.dat").toFile(),
+            directory.resolve("inventory.journal").toFile(), InventoryJournal.SyncPolicy.BATCHED);
+        // Reading the item "BROKEN" fails the way a corrupted store would
+        InventoryStore store = new ListInventoryStore() {
+            @Override
+            public InventoryItem get(int row) {
+                if (getId(row).equals("BROKEN")) throw new IllegalStateException("Row " + row + " is damaged");
+                return super.get(row);
+            }
+        };
+        service = new InventoryService(store, journal);
+        service.load(bytes -> { });
+        service.add(new InventoryItem("A-1", "Bolt", 5, 1.5));
+        service.add(new InventoryItem("B-2", "Nut \"hex\"", 0, 0.25));
+        service.add(new InventoryItem("BROKEN", "Washer", 1, 1.0));
+        server = new InventoryHttpServer(service, "127.0.0.1", 0);
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        server.close();
+        service.close(false);
+    }
+
+    @Test
+    void listsItems() throws Exception {
+        HttpResponse<String> response = send("GET", "/items?q=bolt");
+        assertEquals(200, response.statusCode());
+        assertEquals("[{\"id\":\"A-1\",\"name\":\"Bolt\",\"quantity\":5,\"price\":1.50}]", response.body());
+        assertEquals("application/json; charset=utf-8", response.headers().firstValue("Content-Type").orElse(null));
+        HttpResponse<String> queried = send("GET", "/items?query=quantity%3E1");
+        assertEquals(200, queried.statusCode());
+        assertEquals(response.body(), queried.body());
+        assertEquals(400, send("GET", "/items?limit=many").statusCode());
+    }
+
+    @Test
+    void getsOneItem() throws Exception {
+        HttpResponse<String> response = send("GET", "/items/b-2");
+        assertEquals(200, response.statusCode());
+        assertEquals("{\"id\":\"B-2\",\"name\":\"Nut \\\"hex\\\"\",\"quantity\":0,\"price\":0.25}", response.body());
+        HttpResponse<String> missing = send("GET", "/items/C-3");
+        assertEquals(404, missing.statusCode());
+        assertEquals("{\"error\":\"No item with ID C-3\"}", missing.body());
+    }
+
+    @Test
+    void adjustsStock() throws Exception {
+        HttpResponse<String> response = send("POST", "/items/A-1/adjust?delta=-2");
+        assertEquals(200, response.statusCode());
+        assertEquals("{\"id\":\"A-1\",\"quantity\":3}", response.body());
+        assertEquals(3, service.get("A-1").getQuantity());
+
+        HttpResponse<String> oversold = send("POST", "/items/A-1/adjust?delta=-4");
+        assertEquals(409, oversold.statusCode());
+        assertTrue(oversold.body().startsWith("{\"error\":"), oversold.body());
+        assertEquals(3, service.get("A-1").getQuantity());
+        assertEquals(200, send("POST", "/items/A-1/adjust?delta=-4&allowNegative=true").statusCode());
+
+        assertEquals(400, send("POST", "/items/A-1/adjust?delta=lots").statusCode());
+        assertEquals(400, send("POST", "/items/A-1/adjust").statusCode());
+        assertEquals(404, send("POST", "/items/C-3/adjust?delta=1").statusCode());
+        assertEquals(405, send("DELETE", "/items/A-1").statusCode());
+        assertEquals(-1, service.get("A-1").getQuantity());
+    }
+
+    @Test
+    void reportsInternalErrors() throws Exception {
+        HttpResponse<String> response = send("GET", "/items/BROKEN");
+        assertEquals(500, response.statusCode());
+        assertEquals("{\"error\":\"Internal error: Row 2 is damaged\"}", response.body());
+    }
+
+    private HttpResponse<String> send(String method, String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path))
+            .method(method, HttpRequest.BodyPublishers.noBody()).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,205 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Records random changes while applying them to a plain map, then checks that replaying the
+// files after a reopen, a compaction or a crash gives back that map
+class InventoryJournalTest {
+    @TempDir
+    Path directory;
+
+    private final Map<String, InventoryItem> expected = new LinkedHashMap<>();
+    private final Random random = new Random(11);
+
+    @Test
+    void replaysAfterReopen() throws IOException {
+        InventoryJournal journal = open();
+        recordRandom(journal, 5000);
+        journal.close(false);
+        assertReplays();
+    }
+
+    @Test
+    void compactionKeepsEveryChange() throws IOException {
+        InventoryJournal journal = open();
+        recordRandom(journal, 3000);
+        journal.compact();
+        assertTrue(Files.exists(directory.resolve("inventory.dat")));
+        assertFalse(Files.exists(directory.resolve("inventory.journal.compacting")));
+        recordRandom(journal, 3000);
+        journal.close(true);
+        // Nothing left but the new journal's generation record
+        assertEquals(13, Files.size(directory.resolve("inventory.journal")));
+        assertReplays();
+        // And again on top of the compacted snapshot
+        journal = open();
+        recordRandom(journal, 1000);
+        journal.close(false);
+        assertReplays();
+    }
+
+    // A crash after the new snapshot is in place but before the folded journal is deleted must not
+    // replay that journal's adjustments a second time
+    @Test
+    void skipsAJournalTheSnapshotAlreadyHolds() throws IOException {
+        // Adjustments to rows only the snapshot adds, so replaying them twice shows
+        InventoryJournal journal = open();
+        recordRandom(journal, 2000);
+        journal.compact();
+        for (InventoryItem item : List.copyOf(expected.values())) {
+            journal.recordAdjust(item.getId(), 3);
+            apply(InventoryJournal.Change.adjust(item.getId(), 3), expected);
+        }
+        journal.close(false);
+        Path folded = directory.resolve("inventory.journal");
+        byte[] before = Files.readAllBytes(folded);
+        journal = open();
+        journal.compact();
+        journal.close(false);
+        Path compacting = directory.resolve("inventory.journal.compacting");
+        Files.write(compacting, before);
+        assertReplays();
+        // New records on top, then the next compaction just finishes the deletion
+        journal = open();
+        recordRandom(journal, 500);
+        journal.compact();
+        assertFalse(Files.exists(compacting));
+        journal.close(false);
+        assertReplays();
+    }
+
+    // A crash right after the journal was moved aside leaves it to be folded by the next compaction
+    @Test
+    void foldsAJournalLeftBeforeTheSnapshot() throws IOException {
+        InventoryJournal journal = open();
+        recordRandom(journal, 2000);
+        journal.close(false);
+        Files.move(directory.resolve("inventory.journal"), directory.resolve("inventory.journal.compacting"));
+        assertReplays();
+        journal = open();
+        recordRandom(journal, 500);
+        journal.compact();
+        journal.close(false);
+        assertFalse(Files.exists(directory.resolve("inventory.journal.compacting")));
+        assertReplays();
+    }
+
+    @Test
+    void ignoresATornTail() throws IOException {
+        InventoryJournal journal = open();
+        recordRandom(journal, 200);
+        journal.close(false);
+        Files.write(directory.resolve("inventory.journal"), new byte[] {0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+        assertReplays();
+        // Opening cuts the tail off, so records appended afterwards aren't stranded behind it
+        journal = open();
+        recordRandom(journal, 200);
+        journal.close(false);
+        assertReplays();
+    }
+
+    @Test
+    void dropsAnIncompleteBatch() throws IOException {
+        InventoryJournal journal = open();
+        recordRandom(journal, 200);
+        Map<String, InventoryItem> before = new LinkedHashMap<>(expected);
+        journal.recordBatch(List.of(
+            InventoryJournal.Change.add(new InventoryItem("BATCH-1", "Bolt", 1, 1.0)),
+            InventoryJournal.Change.add(new InventoryItem("BATCH-2", "Nut", 2, 2.0))));
+        journal.close(false);
+        Path file = directory.resolve("inventory.journal");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 3);
+        }
+        expected.clear();
+        expected.putAll(before);
+        assertReplays();
+    }
+
+    private InventoryJournal open() throws IOException {
+        InventoryJournal journal = new InventoryJournal(new File(directory.toFile(), "inventory.dat"),
+            new File(directory.toFile(), "inventory.journal"), InventoryJournal.SyncPolicy.BATCHED);
+        journal.open();
+        return journal;
+    }
+
+    private void assertReplays() throws IOException {
+        InventoryJournal journal = open();
+        Map<String, InventoryItem> replayed = new LinkedHashMap<>();
+        try {
+            journal.replay(change -> apply(change, replayed), bytes -> { });
+        } finally {
+            journal.close(false);
+        }
+        assertEquals(expected.keySet(), replayed.keySet());
+        for (String key : expected.keySet()) InventorySnapshotTest.assertItem(expected.get(key), replayed.get(key));
+    }
+
+    private void recordRandom(InventoryJournal journal, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            List<String> keys = new ArrayList<>(expected.keySet());
+            String existing = keys.isEmpty() ? null : expected.get(keys.get(random.nextInt(keys.size()))).getId();
+            int op = random.nextInt(100);
+            InventoryJournal.Change change;
+            if (existing == null || op < 35) {
+                change = InventoryJournal.Change.add(item("SKU-" + random.nextInt(100_000)));
+            } else if (op < 55) {
+                // A rename now and then, sometimes only in case
+                String id = switch (random.nextInt(4)) {
+                    case 0 -> "SKU-" + random.nextInt(100_000);
+                    case 1 -> existing.toLowerCase(Locale.ROOT);
+                    default -> existing;
+                };
+                change = new InventoryJournal.Change(InventoryJournal.Op.UPDATE, existing, item(id));
+            } else if (op < 85) {
+                change = InventoryJournal.Change.adjust(existing, random.nextInt(21) - 10);
+            } else if (op < 95) {
+                change = new InventoryJournal.Change(InventoryJournal.Op.DELETE, existing, null);
+            } else if (op < 99) {
+                List<InventoryJournal.Change> batch = new ArrayList<>();
+                for (int j = random.nextInt(5); j >= 0; j--) batch.add(InventoryJournal.Change.add(item("BULK-" + random.nextInt(100_000))));
+                batch.add(InventoryJournal.Change.adjust(existing, 1));
+                journal.recordBatch(batch);
+                batch.forEach(c -> apply(c, expected));
+                continue;
+            } else {
+                if (random.nextInt(10) != 0) continue;
+                change = new InventoryJournal.Change(InventoryJournal.Op.CLEAR, null, null);
+            }
+            switch (change.op()) {
+                case ADD -> journal.recordAdd(change.item());
+                case UPDATE -> journal.recordUpdate(change.oldId(), change.item());
+                case DELETE -> journal.recordDelete(change.oldId());
+                case ADJUST -> journal.recordAdjust(change.oldId(), change.delta());
+                case CLEAR -> journal.recordClear();
+            }
+            apply(change, expected);
+        }
+    }
+
+    private InventoryItem item(String id) {
+        return new InventoryItem(id, "Item " + random.nextInt(1000), random.nextInt(1000), random.nextInt(1_000_000) / 100.0);
+    }
+
+    // What replaying a change means, by case-insensitive ID
+    static void apply(InventoryJournal.Change change, Map<String, InventoryItem> items) {
+        switch (change.op()) {
+            case ADD -> items.put(InventoryStore.key(change.item().getId()), change.item());
+            case UPDATE -> {
+                items.remove(InventoryStore.key(change.oldId()));
+                items.put(InventoryStore.key(change.item().getId()), change.item());
+            }
+            case DELETE -> items.remove(InventoryStore.key(change.oldId()));
+            case CLEAR -> items.clear();
+            case ADJUST -> items.computeIfPresent(InventoryStore.key(change.oldId()), (key, item) ->
+                new InventoryItem(item.getId(), item.getName(), item.getQuantity() + change.delta(), item.getPrice()));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Parses query-mode text and evaluates it over a small store, through the indexes and row by row
+class InventoryQueryTest {
+    // Quantity, price in centavos: total values 0, 1500, 12000, 50000, 20000, 150000
+    private static final Object[][] ROWS = {
+        {0, 9.99}, {3, 5.00}, {8, 15.00}, {10, 50.00}, {40, 5.00}, {100, 15.00}};
+
+    private final InventoryStore store = new ListInventoryStore();
+    private final RangeIndex index = new RangeIndex(store);
+
+    InventoryQueryTest() {
+        for (int i = 0; i < ROWS.length; i++) {
+            index.add(store.add(new InventoryItem("SKU-" + i, "Item", (Integer) ROWS[i][0], (Double) ROWS[i][1])));
+        }
+    }
+
+    @Test
+    void evaluatesRanges() {
+        assertRows("quantity between 0 and 10", 0, 1, 2, 3);
+        assertRows("qty between 10 and 0", 0, 1, 2, 3);
+        assertRows("price > 5", 0, 2, 3, 5);
+        assertRows("price >= ₱5.00 and quantity < 10", 0, 1, 2);
+        assertRows("Quantity = 40", 4);
+        assertRows("total value <= 150", 0, 1, 2);
+        assertRows("value between 120 and 1,500", 2, 3, 4, 5);
+        assertRows("quantity between 1 and 50 and price between 5 and 15 and total > 100", 2, 4);
+        assertRows("price < 0.10");
+    }
+
+    @Test
+    void evaluatesTopAndBottom() {
+        assertRows("top 2 by quantity", 4, 5);
+        assertRows("total value top 1", 5);
+        assertRows("bottom 2 price", 1, 4);
+        assertRows("quantity > 0 and bottom 2 by total", 1, 2);
+        assertRows("price = 15 and top 5 quantity", 2, 5);
+        assertFalse(InventoryQuery.parse("top 2 by quantity").isRowLocal());
+        assertTrue(InventoryQuery.parse("quantity > 2").isRowLocal());
+    }
+
+    @Test
+    void rejectsWhatItCannotParse() {
+        assertEquals("Empty query", assertThrows(IllegalArgumentException.class, () -> InventoryQuery.parse(" ")).getMessage());
+        assertEquals("Can't understand \"weight > 3\"",
+            assertThrows(IllegalArgumentException.class, () -> InventoryQuery.parse("price > 1 and weight > 3")).getMessage());
+        assertEquals("Only one top/bottom clause is allowed",
+            assertThrows(IllegalArgumentException.class, () -> InventoryQuery.parse("top 1 price and bottom 1 price")).getMessage());
+        assertEquals("Quantity must be a whole number: 2.5",
+            assertThrows(IllegalArgumentException.class, () -> InventoryQuery.parse("quantity > 2.5")).getMessage());
+        assertThrows(IllegalArgumentException.class, () -> InventoryQuery.parse("price between 1 and"));
+    }
+
+    // The indexed answer, and for row-local queries matches() row by row, must both give rows
+    private void assertRows(String text, int... expected) {
+        InventoryQuery query = InventoryQuery.parse(text);
+        BitSet rows = new BitSet();
+        for (int row : expected) rows.set(row);
+        assertEquals(rows, query.evaluate(store, index), text);
+        assertEquals(rows, query.evaluate(store, new RangeIndex(store, false)), text + ", scanned");
+        if (query.isRowLocal()) {
+            BitSet matched = new BitSet();
+            for (int row = 0; row < store.size(); row++) if (query.matches(store, row)) matched.set(row);
+            assertEquals(rows, matched, text + ", row by row");
+        }
+    }
+}
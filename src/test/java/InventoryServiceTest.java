@@ -0,0 +1,172 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the service against a journal in a temp directory, reopening it to check that what was
+// journaled replays to what the service showed
+class InventoryServiceTest {
+    // Valid rows, then one each with a negative quantity, a negative price, no name and a repeated ID
+    private static final String MIXED_CSV = String.join("\n",
+        "ID,Name,Quantity,Price",
+        "A,Bolt,3,1.50",
+        "B,Nut,2,0.25",
+        "C,Washer,-1,2.00",
+        "D,Pipe,4,-9.99",
+        "E, ,1,1.00",
+        "a,Bolt again,9,9.99",
+        "F,Hinge,0,3.00") + "\n";
+
+    @TempDir
+    Path directory;
+
+    private final List<InventoryService> open = new ArrayList<>();
+
+    @AfterEach
+    void closeAll() throws IOException {
+        for (InventoryService service : open) service.close(false);
+    }
+
+    @Test
+    void importRejectsWhatMergeRejects() throws IOException {
+        InventoryService imported = open("import");
+        long rejected = imported.importCsv(stream(MIXED_CSV), bytes -> { });
+        InventoryService merged = open("merge");
+        InventoryService.MergeResult result = merged.mergeCsv(stream(MIXED_CSV), false, bytes -> { });
+        assertEquals(4, rejected);
+        assertEquals(result.rejected(), rejected);
+        assertEquals(Map.of("A", 3, "B", 2, "F", 0), quantities(imported));
+        assertEquals(quantities(merged), quantities(imported));
+    }
+
+    @Test
+    void importReplacesAndReplays() throws IOException {
+        InventoryService service = open("inventory");
+        service.add(new InventoryItem("OLD", "Old stock", 5, 1.0));
+        service.importCsv(stream(MIXED_CSV), bytes -> { });
+        assertEquals(Set.of("A", "B", "F"), quantities(service).keySet());
+        assertEquals(quantities(service), quantities(reopen(service, "inventory")));
+    }
+
+    // A read that fails partway must leave the old inventory, in memory and on disk
+    @Test
+    void failedImportChangesNothing() throws IOException {
+        InventoryService service = open("inventory");
+        service.add(new InventoryItem("OLD", "Old stock", 5, 1.0));
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 5000; i++) csv.append("SKU-").append(i).append(",Item,1,1.00\n");
+        InputStream failing = new SequenceInputStream(stream(csv.toString()), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        });
+        IOException e = assertThrows(IOException.class, () -> service.importCsv(failing, bytes -> { }));
+        assertEquals("Connection reset", e.getMessage());
+        assertEquals(Map.of("OLD", 5), quantities(service));
+        assertEquals(Map.of("OLD", 5), quantities(reopen(service, "inventory")));
+    }
+
+    // Adjustments from several threads each journal their delta; a rejected one journals nothing
+    @Test
+    void adjustmentsReplay() throws Exception {
+        InventoryService service = open("inventory");
+        service.add(new InventoryItem("A", "Bolt", 1000, 1.0));
+        service.add(new InventoryItem("B", "Nut", 0, 0.25));
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 250; i++) {
+                        service.adjustQuantity("A", -1, true);
+                        service.adjustQuantity("B", 2);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        assertThrows(IllegalArgumentException.class, () -> service.adjustQuantity("A", -1, true));
+        assertEquals(Map.of("A", 0, "B", 2000), quantities(service));
+        assertEquals(Map.of("A", 0, "B", 2000), quantities(reopen(service, "inventory")));
+    }
+
+    // Another process sells 30 of the 100 this one saw; selling 80 more must then be refused
+    @Test
+    void sharedAdjustmentSeesOtherInstances() throws Exception {
+        InventoryService service = open("shared", true);
+        // Writes run on the test thread and background refreshes are dropped, so only the
+        // adjustment itself can bring in the other process's change
+        service.useWriter(task -> { }, () -> true);
+        service.add(new InventoryItem("A", "Bolt", 100, 1.0));
+        Process peer = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+            "-cp", System.getProperty("java.class.path"), Peer.class.getName(),
+            directory.resolve("shared").toString(), "A", "-30")
+            .redirectErrorStream(true).start();
+        String output = new String(peer.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(0, peer.waitFor(), output);
+        assertThrows(IllegalArgumentException.class, () -> service.adjustQuantity("A", -80, true));
+        assertEquals(Map.of("A", 70), quantities(service));
+        assertEquals(0, service.adjustQuantity("A", -70, true));
+        assertEquals(Map.of("A", 0), quantities(reopen(service, "shared", true)));
+    }
+
+    // The other instance for the shared-mode test; it has to be another process to take the file locks
+    static class Peer {
+        public static void main(String[] args) throws IOException {
+            InventoryService service = open(Path.of(args[0]), true);
+            try {
+                service.adjustQuantity(args[1], Integer.parseInt(args[2]), true);
+            } finally {
+                service.close(false);
+            }
+        }
+    }
+
+    private InventoryService open(String name) throws IOException {
+        return open(name, false);
+    }
+
+    private InventoryService open(String name, boolean shared) throws IOException {
+        InventoryService service = open(directory.resolve(name), shared);
+        open.add(service);
+        return service;
+    }
+
+    private static InventoryService open(Path base, boolean shared) throws IOException {
+        InventoryJournal journal = new InventoryJournal(Path.of(base + ".dat").toFile(),
+            Path.of(base + ".journal").toFile(), InventoryJournal.SyncPolicy.BATCHED, shared);
+        InventoryService service = new InventoryService(new ColumnarInventoryStore(), journal);
+        service.load(bytes -> { });
+        return service;
+    }
+
+    private InventoryService reopen(InventoryService service, String name) throws IOException {
+        return reopen(service, name, false);
+    }
+
+    private InventoryService reopen(InventoryService service, String name, boolean shared) throws IOException {
+        open.remove(service);
+        service.close(false);
+        return open(name, shared);
+    }
+
+    private static InputStream stream(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, Integer> quantities(InventoryService service) {
+        Map<String, Integer> quantities = new HashMap<>();
+        InventoryStore store = service.store();
+        for (int row = 0; row < store.size(); row++) quantities.put(store.getId(row), store.getQuantity(row));
+        return quantities;
+    }
+}
@@ -0,0 +1,72 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InventorySnapshotTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsAcrossSegments() throws IOException {
+        // More than one 65536-record segment, so the parallel reader has to keep them in order
+        List<InventoryItem> items = new ArrayList<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 150_000; i++) {
+            String name = i % 7 == 0 ? "Tuerca ñ " + i + " ₱" : "Bolt, \"M" + i % 20 + "\"";
+            items.add(new InventoryItem("SKU-" + i, name, random.nextInt(2000) - 100, random.nextInt(10_000_000) / 100.0));
+        }
+        Path file = directory.resolve("inventory.dat");
+        InventorySnapshot.write(file, items);
+        List<InventoryItem> read = read(file);
+        assertEquals(items.size(), read.size());
+        for (int i = 0; i < items.size(); i++) assertItem(items.get(i), read.get(i));
+    }
+
+    @Test
+    void roundTripsEmpty() throws IOException {
+        Path file = directory.resolve("inventory.dat");
+        InventorySnapshot.write(file, List.of());
+        assertTrue(read(file).isEmpty());
+    }
+
+    @Test
+    void rejectsCorruption() throws IOException {
+        Path file = directory.resolve("inventory.dat");
+        InventorySnapshot.write(file, List.of(new InventoryItem("A", "Bolt", 1, 1.5), new InventoryItem("B", "Nut", 2, 2.5)));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, 40);
+            one.put(0, (byte) (one.get(0) ^ 0x55)).rewind();
+            channel.write(one, 40);
+        }
+        IOException e = assertThrows(IOException.class, () -> read(file));
+        assertTrue(e.getMessage().contains("checksum"), e.getMessage());
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path file = directory.resolve("inventory.dat");
+        Files.writeString(file, "id,name,quantity,price\nA,Bolt,1,1.50\n");
+        assertThrows(IOException.class, () -> read(file));
+    }
+
+    private static List<InventoryItem> read(Path file) throws IOException {
+        List<InventoryItem> items = new ArrayList<>();
+        InventorySnapshot.read(file, items::addAll, bytes -> { });
+        return items;
+    }
+
+    static void assertItem(InventoryItem expected, InventoryItem actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getQuantity(), actual.getQuantity());
+        assertEquals(InventoryStore.toCentavos(expected.getPrice()), InventoryStore.toCentavos(actual.getPrice()));
+    }
+}
@@ -0,0 +1,159 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the same random add/set/remove/quantity/clear sequence against each store and ListInventoryStore,
+// which is simple enough to serve as the reference, comparing every answer along the way
+class InventoryStoreTest {
+    private static final int OPERATIONS = 300_000;
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"columnar", "disk"})
+    void matchesListStore(String kind) throws IOException {
+        InventoryStore reference = new ListInventoryStore();
+        // A tiny page cache, so the disk store evicts and reloads pages all the time
+        InventoryStore store = kind.equals("disk") ? new DiskInventoryStore(directory, 16 * 8192) : new ColumnarInventoryStore();
+        Random random = new Random(7);
+        List<String> ids = new ArrayList<>();
+        try {
+            for (int i = 0; i < OPERATIONS; i++) {
+                int op = random.nextInt(100);
+                if (op < 40 || reference.size() == 0) {
+                    String id = freshId(random, ids);
+                    if (reference.indexOf(id) >= 0) continue;
+                    InventoryItem item = item(random, id);
+                    assertEquals(reference.add(item), store.add(item), "add");
+                } else if (op < 60) {
+                    int row = random.nextInt(reference.size());
+                    // Same ID, the same ID in another case, or a new one
+                    String current = reference.getId(row);
+                    String id = switch (random.nextInt(3)) {
+                        case 0 -> current;
+                        case 1 -> swapCase(current);
+                        default -> freshId(random, ids);
+                    };
+                    int other = reference.indexOf(id);
+                    if (other >= 0 && other != row) continue;
+                    InventoryItem item = item(random, id);
+                    reference.set(row, item);
+                    store.set(row, item);
+                } else if (op < 75) {
+                    int row = random.nextInt(reference.size());
+                    assertEquals(reference.remove(row), store.remove(row), "moved row");
+                } else if (op < 99) {
+                    int row = random.nextInt(reference.size());
+                    int quantity = random.nextInt(1000);
+                    reference.setQuantity(row, quantity);
+                    store.setQuantity(row, quantity);
+                } else if (random.nextInt(20) == 0) {
+                    reference.clear();
+                    store.clear();
+                }
+                assertEquals(reference.size(), store.size());
+                if (reference.size() > 0) assertRow(reference, store, random.nextInt(reference.size()));
+                if (!ids.isEmpty()) {
+                    String id = ids.get(random.nextInt(ids.size()));
+                    if (random.nextBoolean()) id = swapCase(id);
+                    assertEquals(reference.indexOf(id), store.indexOf(id), "indexOf " + id);
+                }
+            }
+            for (int row = 0; row < reference.size(); row++) {
+                assertRow(reference, store, row);
+                assertEquals(row, store.indexOf(reference.getId(row)));
+            }
+        } finally {
+            if (store instanceof Closeable closeable) closeable.close();
+        }
+    }
+
+    // Rewriting spilled names over and over must not grow the overflow file without bound
+    @Test
+    void diskStoreReclaimsOverflow() throws IOException {
+        try (DiskInventoryStore store = new DiskInventoryStore(directory, 16 * 8192)) {
+            for (int i = 0; i < 1000; i++) store.add(new InventoryItem("SKU-" + i, spilledName(0, i), i, 1.0));
+            for (int round = 1; round <= 50; round++) {
+                for (int row = 0; row < store.size(); row++) {
+                    store.set(row, new InventoryItem(store.getId(row), spilledName(round, row), row, 1.0));
+                }
+                if (round % 10 == 0) store.remove(store.size() - 1);
+            }
+            // About 230 KB of names are live; 50 rounds without reclaiming would leave 12 MB
+            assertTrue(store.overflowBytes() < 4 << 20, "overflow file holds " + store.overflowBytes() + " bytes");
+            for (int row = 0; row < store.size(); row++) {
+                assertEquals(spilledName(50, row), store.getName(row));
+                assertEquals(row, store.indexOf("SKU-" + row));
+            }
+        }
+    }
+
+    private static String spilledName(int round, int row) {
+        return "Round " + round + " name of row " + row + " " + "x".repeat(200);
+    }
+
+    @Test
+    void lookupIgnoresCase() {
+        InventoryStore store = new ColumnarInventoryStore();
+        store.add(new InventoryItem("Sku-1", "Bolt", 1, 1.0));
+        assertEquals(0, store.indexOf("SKU-1"));
+        assertEquals(0, store.indexOf("sku-1"));
+        assertEquals(-1, store.indexOf("sku-2"));
+        assertEquals(-1, store.indexOf("Sku-10"));
+        assertEquals(-1, store.indexOf("Sku-"));
+    }
+
+    // IDs are compared in the arena; ones whose case folding isn't plain ASCII must still match
+    @Test
+    void lookupFoldsNonAscii() {
+        InventoryStore store = new ColumnarInventoryStore();
+        store.add(new InventoryItem("\u212A-1", "Kelvin sign", 1, 1.0));
+        store.add(new InventoryItem("k-2", "Bolt", 1, 1.0));
+        store.add(new InventoryItem("ÜBER-3", "Nut", 1, 1.0));
+        assertEquals(0, store.indexOf("k-1"));
+        assertEquals(0, store.indexOf("K-1"));
+        assertEquals(1, store.indexOf("\u212A-2"));
+        assertEquals(2, store.indexOf("über-3"));
+        assertEquals(-1, store.indexOf("uber-3"));
+    }
+
+    private static void assertRow(InventoryStore expected, InventoryStore actual, int row) {
+        assertEquals(expected.getId(row), actual.getId(row), "id of row " + row);
+        assertEquals(expected.getName(row), actual.getName(row), "name of row " + row);
+        assertEquals(expected.getQuantity(row), actual.getQuantity(row), "quantity of row " + row);
+        assertEquals(expected.getPriceCentavos(row), actual.getPriceCentavos(row), "price of row " + row);
+    }
+
+    // Mostly short IDs; some long or non-ASCII enough to spill out of the disk store's record
+    private static String freshId(Random random, List<String> ids) {
+        String id = switch (random.nextInt(10)) {
+            case 0 -> "Ünïcode-" + random.nextInt(50_000);
+            case 1 -> "LONG-" + "x".repeat(60 + random.nextInt(100)) + random.nextInt(50_000);
+            default -> "SKU-" + random.nextInt(50_000);
+        };
+        ids.add(id);
+        return id;
+    }
+
+    private static InventoryItem item(Random random, String id) {
+        String name = random.nextInt(8) == 0 ? "Very long name ".repeat(1 + random.nextInt(10)) : "Bolt " + random.nextInt(1000);
+        return new InventoryItem(id, name, random.nextInt(1000), random.nextInt(1_000_000) / 100.0);
+    }
+
+    private static String swapCase(String id) {
+        StringBuilder swapped = new StringBuilder(id.length());
+        for (char c : id.toCharArray()) {
+            swapped.append(Character.isUpperCase(c) ? Character.toLowerCase(c) : Character.toUpperCase(c));
+        }
+        return swapped.toString();
+    }
+}
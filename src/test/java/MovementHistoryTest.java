@@ -0,0 +1,146 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Records random movements of a few items over two months into small segments, then checks event
+// walks and daily flows against the same events kept in a list, before and after reopening
+class MovementHistoryTest {
+    private static final String[] IDS = {"SKU-1", "SKU-2", "Ünï-3", "LONG-" + "x".repeat(300)};
+    // 50 events per segment, so the history spans many sealed segments
+    private static final long SEGMENT_BYTES = 50L * MovementHistory.EVENT_BYTES;
+    private static final long START = Instant.parse("2026-03-01T08:00:00Z").toEpochMilli();
+
+    @TempDir
+    Path directory;
+
+    private final AtomicLong clock = new AtomicLong(START);
+    private final List<MovementHistory.Movement> recorded = new ArrayList<>();
+    private final Random random = new Random(19);
+
+    @Test
+    void answersFromIndexesAndSegments() throws IOException {
+        MovementHistory history = open();
+        record(history, 2000);
+        check(history);
+        history.close();
+
+        history = open();
+        check(history);
+        record(history, 300);
+        check(history);
+        history.close();
+    }
+
+    // Lost segment indexes are rebuilt by scanning, and a torn last event is cut off
+    @Test
+    void recoversFromMissingIndexesAndTornTail() throws IOException {
+        MovementHistory history = open();
+        record(history, 1000);
+        history.close();
+        try (DirectoryStream<Path> indexes = Files.newDirectoryStream(directory, "*.index")) {
+            for (Path index : indexes) Files.delete(index);
+        }
+        Path active;
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "*.events")) {
+            active = Collections.max(toList(segments));
+        }
+        Files.write(active, new byte[MovementHistory.EVENT_BYTES - 5], StandardOpenOption.APPEND);
+
+        history = open();
+        check(history);
+        record(history, 100);
+        check(history);
+        history.close();
+    }
+
+    @Test
+    void unknownItemsAndEmptyRangesAreEmpty() throws IOException {
+        MovementHistory history = open();
+        record(history, 10);
+        assertEquals(List.of(), history.movements("SKU-404", Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(List.of(), history.movements("SKU-1", START + 1000, START));
+        assertEquals(List.of(), history.flows("SKU-404", LocalDate.of(2026, 1, 1), LocalDate.of(2027, 1, 1)));
+        history.close();
+    }
+
+    private MovementHistory open() throws IOException {
+        MovementHistory history = new MovementHistory(directory, false, SEGMENT_BYTES, clock::get);
+        history.open();
+        history.catchUp();
+        return history;
+    }
+
+    // Up to six hours apart, so most days see a few events of each item
+    private void record(MovementHistory history, int count) {
+        for (int i = 0; i < count; i++) {
+            clock.addAndGet(random.nextInt(6 * 3600_000));
+            String id = IDS[random.nextInt(IDS.length)];
+            MovementHistory.Kind kind = MovementHistory.Kind.values()[random.nextInt(MovementHistory.Kind.values().length)];
+            int change = random.nextInt(21) - 10;
+            int quantity = random.nextInt(1000);
+            long price = random.nextInt(100_000);
+            history.record(random.nextBoolean() ? id : id.toUpperCase(Locale.ROOT), kind, change, quantity, price);
+            recorded.add(new MovementHistory.Movement(clock.get(), id, kind, change, quantity, price));
+        }
+    }
+
+    private void check(MovementHistory history) throws IOException {
+        assertEquals(recorded.size(), history.size());
+        for (String id : IDS) {
+            for (int i = 0; i < 5; i++) {
+                long from = START + (long) random.nextInt(70) * 86_400_000L, to = from + random.nextInt(20) * 86_400_000L;
+                List<MovementHistory.Movement> expected = new ArrayList<>();
+                for (MovementHistory.Movement m : recorded) {
+                    if (m.id().equals(id) && m.time() >= from && m.time() <= to) expected.add(m);
+                }
+                List<MovementHistory.Movement> actual = new ArrayList<>();
+                // Events carry the ID as first recorded, in whichever case that was
+                for (MovementHistory.Movement m : history.movements(id, from, to)) {
+                    assertTrue(m.id().equalsIgnoreCase(id), m.id());
+                    actual.add(new MovementHistory.Movement(m.time(), id, m.kind(), m.change(), m.quantity(), m.priceCentavos()));
+                }
+                assertEquals(expected, actual, id + " " + from + ".." + to);
+
+                LocalDate fromDay = day(from), toDay = day(to);
+                assertEquals(flows(id, fromDay, toDay), history.flows(id.toLowerCase(Locale.ROOT), fromDay, toDay), id + " flows");
+            }
+        }
+        LocalDate first = day(START), last = day(clock.get());
+        SortedMap<String, List<MovementHistory.Flow>> all = history.flows(first, last);
+        assertEquals(IDS.length, all.size());
+        for (String id : IDS) assertEquals(flows(id, first, last), all.get(id));
+    }
+
+    private List<MovementHistory.Flow> flows(String id, LocalDate from, LocalDate to) {
+        SortedMap<LocalDate, long[]> days = new TreeMap<>();
+        for (MovementHistory.Movement m : recorded) {
+            LocalDate day = day(m.time());
+            if (!m.id().equals(id) || day.isBefore(from) || day.isAfter(to)) continue;
+            long[] flow = days.computeIfAbsent(day, d -> new long[3]);
+            if (m.change() > 0) flow[0] += m.change(); else flow[1] -= m.change();
+            flow[2]++;
+        }
+        List<MovementHistory.Flow> flows = new ArrayList<>();
+        days.forEach((day, flow) -> flows.add(new MovementHistory.Flow(day, flow[0], flow[1], (int) flow[2])));
+        return flows;
+    }
+
+    private static LocalDate day(long time) {
+        return Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static List<Path> toList(DirectoryStream<Path> paths) {
+        List<Path> list = new ArrayList<>();
+        paths.forEach(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,76 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Keeps the sorted indexes in step with random edits the way InventoryService does, and checks
+// ranges and top-N against a scanning index over the same store
+class RangeIndexTest {
+    @Test
+    void matchesScan() {
+        InventoryStore store = new ListInventoryStore();
+        RangeIndex index = new RangeIndex(store);
+        RangeIndex scan = new RangeIndex(store, false);
+        Random random = new Random(13);
+        for (int i = 0; i < 20_000; i++) {
+            int op = random.nextInt(10);
+            if (op < 4 || store.size() == 0) {
+                String id = "SKU-" + random.nextInt(100_000);
+                if (store.indexOf(id) >= 0) continue;
+                index.add(store.add(item(random, id)));
+            } else if (op < 6) {
+                int row = random.nextInt(store.size());
+                index.remove(row);
+                store.set(row, item(random, store.getId(row)));
+                index.add(row);
+            } else if (op < 8) {
+                int row = random.nextInt(store.size());
+                int old = store.getQuantity(row);
+                store.setQuantity(row, random.nextInt(50));
+                index.quantityChanged(row, old);
+            } else {
+                int row = random.nextInt(store.size());
+                index.remove(row);
+                int moved = store.remove(row);
+                if (moved >= 0) index.move(moved, row);
+            }
+            if (i % 50 == 0) {
+                RangeIndex.Field field = RangeIndex.Field.values()[random.nextInt(3)];
+                long min = random.nextInt(2000) - 100, max = min + random.nextInt(3000);
+                assertEquals(scan.range(field, min, max), index.range(field, min, max), field + " " + min + ".." + max);
+                int n = random.nextInt(20);
+                boolean highest = random.nextBoolean();
+                assertEquals(values(store, scan.top(field, n, highest, row -> row % 3 != 0), field),
+                    values(store, index.top(field, n, highest, row -> row % 3 != 0), field), field + " top " + n);
+            }
+        }
+    }
+
+    @Test
+    void topReturnsBestRows() {
+        InventoryStore store = new ListInventoryStore();
+        RangeIndex index = new RangeIndex(store);
+        int[] quantities = {7, 3, 9, 1, 9, 5};
+        for (int i = 0; i < quantities.length; i++) index.add(store.add(new InventoryItem("SKU-" + i, "Item", quantities[i], 2.0)));
+        assertEquals(BitSet.valueOf(new long[]{0b010100}), index.top(RangeIndex.Field.QUANTITY, 2, true, row -> true));
+        assertEquals(BitSet.valueOf(new long[]{0b001010}), index.top(RangeIndex.Field.TOTAL, 2, false, row -> true));
+        assertEquals(BitSet.valueOf(new long[]{0b100001}), index.top(RangeIndex.Field.QUANTITY, 2, true, row -> quantities[row] < 9));
+        assertEquals(BitSet.valueOf(new long[]{0b100001}), index.range(RangeIndex.Field.QUANTITY, 5, 7));
+        assertEquals(BitSet.valueOf(new long[]{0b111111}), index.range(RangeIndex.Field.PRICE, 200, 200));
+        assertTrue(index.top(RangeIndex.Field.PRICE, 0, true, row -> true).isEmpty());
+        assertTrue(index.range(RangeIndex.Field.QUANTITY, 8, 2).isEmpty());
+    }
+
+    // Ties may be broken differently, so top-N answers are compared by their sorted values
+    private static List<Long> values(InventoryStore store, BitSet rows, RangeIndex.Field field) {
+        List<Long> values = new ArrayList<>();
+        rows.stream().forEach(row -> values.add(RangeIndex.value(store, row, field)));
+        Collections.sort(values);
+        return values;
+    }
+
+    private static InventoryItem item(Random random, String id) {
+        return new InventoryItem(id, "Item", random.nextInt(50), random.nextInt(4000) / 100.0);
+    }
+}
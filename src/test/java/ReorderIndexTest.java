@@ -0,0 +1,111 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Keeps the reorder index in step with random edits the way InventoryService does, checking the
+// count and the low-stock list against a scanning index and a direct count over the store
+class ReorderIndexTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void matchesScan() {
+        InventoryStore store = new ListInventoryStore();
+        ReorderIndex index = new ReorderIndex(store, 5, true);
+        ReorderIndex scan = new ReorderIndex(store, 5, false);
+        Random random = new Random(17);
+        for (int i = 0; i < 20_000; i++) {
+            int op = random.nextInt(10);
+            if (op < 3 || store.size() == 0) {
+                String id = "SKU-" + random.nextInt(100_000);
+                if (store.indexOf(id) >= 0) continue;
+                Integer threshold = random.nextBoolean() ? null : random.nextInt(20);
+                index.setThreshold(id, threshold);
+                scan.setThreshold(id, threshold);
+                int row = store.add(new InventoryItem(id, "Item", random.nextInt(30), 1.0));
+                index.add(row);
+                scan.add(row);
+            } else if (op < 6) {
+                int row = random.nextInt(store.size());
+                int old = store.getQuantity(row);
+                store.setQuantity(row, Math.max(0, old + random.nextInt(11) - 5));
+                boolean crossed = old > index.threshold(row) && store.getQuantity(row) <= index.threshold(row);
+                assertEquals(crossed, index.quantityChanged(row, old), "crossed at quantity change");
+                scan.quantityChanged(row, old);
+            } else if (op < 8) {
+                int row = random.nextInt(store.size());
+                Integer threshold = random.nextBoolean() ? null : random.nextInt(20);
+                boolean wasLow = index.isAtOrBelow(row);
+                boolean crossed = index.thresholdChanged(row, threshold);
+                scan.thresholdChanged(row, threshold);
+                assertEquals(!wasLow && index.isAtOrBelow(row), crossed, "crossed at threshold change");
+            } else {
+                int row = random.nextInt(store.size());
+                index.remove(row);
+                scan.remove(row);
+                int moved = store.remove(row);
+                if (moved >= 0) index.move(moved, row);
+            }
+            int low = 0;
+            for (int row = 0; row < store.size(); row++) if (store.getQuantity(row) <= index.threshold(row)) low++;
+            assertEquals(low, index.countAtOrBelow());
+            assertEquals(low, scan.countAtOrBelow());
+            if (i % 50 == 0) {
+                int limit = random.nextInt(40);
+                assertEquals(shortfalls(store, index, scan.atOrBelow(limit)), shortfalls(store, index, index.atOrBelow(limit)));
+            }
+        }
+    }
+
+    @Test
+    void listsFurthestBelowFirst() {
+        InventoryStore store = new ListInventoryStore();
+        ReorderIndex index = new ReorderIndex(store, 5, true);
+        index.setThreshold("B", 10);
+        int[] quantities = {2, 4, 6, 5};
+        for (int i = 0; i < quantities.length; i++) index.add(store.add(new InventoryItem(String.valueOf((char) ('A' + i)), "Item", quantities[i], 1.0)));
+        // Shortfalls: A -3, B -6, C +1, D 0
+        assertArrayEquals(new int[]{1, 0, 3}, index.atOrBelow(10));
+        assertArrayEquals(new int[]{1, 0}, index.atOrBelow(2));
+        assertEquals(3, index.countAtOrBelow());
+        assertEquals(10, index.threshold(1));
+        assertNull(index.explicitThreshold("A"));
+    }
+
+    @Test
+    void savesAndLoadsThresholds() throws IOException {
+        InventoryStore store = new ListInventoryStore();
+        ReorderIndex index = new ReorderIndex(store, 5, true);
+        index.setThreshold("SKU=1", 12);
+        index.setThreshold("Ünï code:2", 0);
+        index.setThreshold("#3", 7);
+        Path file = directory.resolve("inventory.reorder");
+        index.save(file);
+        Files.writeString(file, "junk=lots\n", StandardCharsets.UTF_8, java.nio.file.StandardOpenOption.APPEND);
+
+        ReorderIndex loaded = new ReorderIndex(store, 5, true);
+        loaded.setThreshold("stale", 1);
+        loaded.load(file);
+        assertEquals(12, loaded.explicitThreshold("SKU=1"));
+        assertEquals(0, loaded.explicitThreshold("Ünï code:2"));
+        assertEquals(7, loaded.explicitThreshold("#3"));
+        assertFalse(loaded.hasThreshold("junk"));
+        assertFalse(loaded.hasThreshold("stale"));
+        loaded.load(directory.resolve("missing.reorder"));
+        assertFalse(loaded.hasThreshold("SKU=1"));
+    }
+
+    // Ties may be listed in any order, so rows are compared by their shortfall, in list order
+    private static List<Long> shortfalls(InventoryStore store, ReorderIndex index, int[] rows) {
+        List<Long> shortfalls = new ArrayList<>();
+        for (int row : rows) shortfalls.add((long) store.getQuantity(row) - index.threshold(row));
+        return shortfalls;
+    }
+}
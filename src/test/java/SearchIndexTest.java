@@ -0,0 +1,92 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Keeps a trigram index in step with random edits the way InventoryService does, and checks
+// every answer against a scan of the same store
+class SearchIndexTest {
+    private static final String[] WORDS = {"bolt", "Nut", "WASHER", "hinge", "pipe", "Élan", "ß-clip", "x"};
+
+    @Test
+    void matchesScan() {
+        InventoryStore store = new ListInventoryStore();
+        SearchIndex index = new SearchIndex(store);
+        SearchIndex scan = new SearchIndex(store, false);
+        Random random = new Random(11);
+        for (int i = 0; i < 20_000; i++) {
+            int op = random.nextInt(10);
+            if (op < 5 || store.size() == 0) {
+                String id = "SKU-" + random.nextInt(100_000);
+                if (store.indexOf(id) >= 0) continue;
+                String name = name(random);
+                index.add(store.add(new InventoryItem(id, name, 1, 1.0)), id, name);
+            } else if (op < 7) {
+                int row = random.nextInt(store.size());
+                index.remove(row, store.getId(row), store.getName(row));
+                String name = name(random);
+                store.set(row, new InventoryItem(store.getId(row), name, 1, 1.0));
+                index.add(row, store.getId(row), name);
+            } else {
+                int row = random.nextInt(store.size());
+                index.remove(row, store.getId(row), store.getName(row));
+                int moved = store.remove(row);
+                if (moved >= 0) index.move(moved, row, store.getId(row), store.getName(row));
+            }
+            if (i % 50 == 0) {
+                String query = query(random);
+                assertEquals(scan.search(query), index.search(query), query);
+            }
+        }
+        for (String query : new String[]{"", "b", "sk", "SKU-1", "bolt nut", "OLT", "élan", "zzz"}) {
+            assertEquals(scan.search(query), index.search(query), query);
+        }
+    }
+
+    @Test
+    void rebuildMatchesIncremental() {
+        InventoryStore store = new ListInventoryStore();
+        SearchIndex index = new SearchIndex(store);
+        store.add(new InventoryItem("A-100", "Brass bolt", 1, 1.0));
+        store.add(new InventoryItem("B-200", "Steel nut", 1, 1.0));
+        index.rebuild();
+        assertEquals(BitSet.valueOf(new long[]{0b01}), index.search("BOLT"));
+        assertEquals(BitSet.valueOf(new long[]{0b10}), index.search("b-2"));
+        assertEquals(BitSet.valueOf(new long[]{0b11}), index.search("s"));
+        assertTrue(index.search("copper").isEmpty());
+    }
+
+    @Test
+    void intSetMatchesHashSet() {
+        SearchIndex.IntSet set = new SearchIndex.IntSet();
+        Set<Integer> reference = new HashSet<>();
+        Random random = new Random(5);
+        for (int i = 0; i < 100_000; i++) {
+            int value = random.nextInt(2000);
+            if (random.nextBoolean()) {
+                assertEquals(reference.add(value), set.add(value));
+            } else {
+                assertEquals(reference.remove(value), set.remove(value));
+            }
+            assertEquals(reference.size(), set.size());
+            int probe = random.nextInt(2000);
+            assertEquals(reference.contains(probe), set.contains(probe));
+        }
+        Set<Integer> seen = new HashSet<>();
+        set.forEach(seen::add);
+        assertEquals(reference, seen);
+    }
+
+    private static String name(Random random) {
+        return WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(100);
+    }
+
+    // Words, pieces of words in another case, and IDs
+    private static String query(Random random) {
+        String word = random.nextInt(4) == 0 ? "SKU-" + random.nextInt(1000) : WORDS[random.nextInt(WORDS.length)];
+        int start = random.nextInt(word.length());
+        String piece = word.substring(start, start + 1 + random.nextInt(word.length() - start));
+        return random.nextBoolean() ? piece.toUpperCase(Locale.ROOT) : piece;
+    }
+}